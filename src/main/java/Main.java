@@ -1,10 +1,9 @@
 import server.Server;
-import server.nonblocking.NonBlockingServer;
 
 public class Main {
 
     public static void main(String[] args) {
-        Server server = NonBlockingServer.init(args);
+        Server server = Server.init(args);
         server.startServer();
         server.stopServer();
     }
@@ -1,6 +1,9 @@
 package blocking.redis.internal;
 
 import protocol.Protocol;
+import redis.ByteString;
+import redis.CommandSpec;
+import redis.CommandTable;
 import redis.internal.RedisListCore;
 import redis.processor.RedisWriteProcessor;
 import stream.Writer;
@@ -42,19 +45,19 @@ public class BlockingRedisHandler {
 
     private void blpop(List<String> req) throws IOException {
         validateNumberOfArgs(req, 2);
-        var key = req.get(1);
+        var key = ByteString.of(req.get(1));
         var timeout = req.getLast();
         var resp = blockingRedisListCore.blpop(key, timeout);
         if (resp == null) {
             RedisWriteProcessor.sendNull(writer);
         } else {
-            RedisWriteProcessor.sendArray(writer, List.of(key, resp));
+            RedisWriteProcessor.sendBulkArray(writer, List.of(key, resp));
         }
     }
 
     private void lpop(List<String> req) throws IOException {
         validateNumberOfArgs(req, 2);
-        var key = req.get(1);
+        var key = ByteString.of(req.get(1));
         if (req.size() == 2) {
             lpopSingleElement(key);
         } else {
@@ -62,13 +65,13 @@ public class BlockingRedisHandler {
         }
     }
 
-    private void lpopMultipleElements(List<String> req, String key) throws IOException {
+    private void lpopMultipleElements(List<String> req, ByteString key) throws IOException {
         var nPop = Integer.parseInt(req.get(2));
         var deletedList = blockingRedisListCore.lpop(key, nPop);
-        RedisWriteProcessor.sendArray(writer, deletedList);
+        RedisWriteProcessor.sendBulkArray(writer, deletedList);
     }
 
-    private void lpopSingleElement(String key) throws IOException {
+    private void lpopSingleElement(ByteString key) throws IOException {
         var resp = blockingRedisListCore.lpop(key);
         if (resp == null) {
             RedisWriteProcessor.sendNull(writer);
@@ -79,32 +82,32 @@ public class BlockingRedisHandler {
 
     private void llen(List<String> req) throws IOException {
         validateNumberOfArgs(req, 2);
-        var key = req.get(1);
+        var key = ByteString.of(req.get(1));
         var len = blockingRedisListCore.size(key);
         RedisWriteProcessor.sendInt(writer, len);
     }
 
     private void lrange(List<String> req) throws IOException {
         validateNumberOfArgs(req, 4);
-        var key = req.get(1);
+        var key = ByteString.of(req.get(1));
         var startIdx = Integer.parseInt(req.get(2));
         var endIdx = Integer.parseInt(req.get(3));
         var resp = blockingRedisListCore.lrange(key, startIdx, endIdx);
-        RedisWriteProcessor.sendArray(writer, resp);
+        RedisWriteProcessor.sendBulkArray(writer, resp);
     }
 
     private void lpush(List<String> req) throws IOException {
         validateNumberOfArgs(req, 3);
-        var key = req.get(1);
-        var items = req.subList(2, req.size());
+        var key = ByteString.of(req.get(1));
+        var items = req.subList(2, req.size()).stream().map(ByteString::of).toList();
         var len = blockingRedisListCore.lpush(key, items);
         RedisWriteProcessor.sendInt(writer, len);
     }
 
     private void rpush(List<String> req) throws IOException {
         validateNumberOfArgs(req, 3);
-        var key = req.get(1);
-        var items = req.subList(2, req.size());
+        var key = ByteString.of(req.get(1));
+        var items = req.subList(2, req.size()).stream().map(ByteString::of).toList();
         var len = blockingRedisListCore.rpush(key, items);
         RedisWriteProcessor.sendInt(writer, len);
     }
@@ -145,7 +148,8 @@ public class BlockingRedisHandler {
     private Protocol.Command getCmd(List<String> req) {
         validateNumberOfArgs(req, 1);
         var command = req.getFirst();
-        return Optional.ofNullable(Protocol.Command.findCommand(command))
+        return Optional.ofNullable(CommandTable.getInstance().lookup(ByteString.of(command)))
+                .map(CommandSpec::command)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid command received: " + command));
     }
 
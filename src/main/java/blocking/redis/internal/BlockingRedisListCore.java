@@ -1,5 +1,6 @@
 package blocking.redis.internal;
 
+import redis.ByteString;
 import redis.internal.RedisListCore;
 import redis.internal.RedisValue;
 
@@ -17,10 +18,10 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 @Deprecated
 public class BlockingRedisListCore implements RedisListCore {
-    private static final ConcurrentHashMap<String, RedisValue<List<String>>> DATA = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, ConcurrentLinkedQueue<String>> REQUEST_QUEUE = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, Condition> CONDITIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ByteString, RedisValue<List<ByteString>>> DATA = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ByteString, ConcurrentLinkedQueue<String>> REQUEST_QUEUE = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ByteString, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ByteString, Condition> CONDITIONS = new ConcurrentHashMap<>();
 
     private static final RedisListCore INSTANCE = new BlockingRedisListCore();
 
@@ -34,21 +35,21 @@ public class BlockingRedisListCore implements RedisListCore {
      * <p>
      * Redis use Event Loop so they don't have to deal with this :(
      */
-    private ReentrantLock getLock(String key) {
+    private ReentrantLock getLock(ByteString key) {
         return LOCKS.computeIfAbsent(key, _ -> new ReentrantLock());
     }
 
-    private Condition getCondition(String key) {
+    private Condition getCondition(ByteString key) {
         return CONDITIONS.computeIfAbsent(key, _ -> getLock(key).newCondition());
     }
 
-    public int rpush(String key, List<String> items) {
+    public int rpush(ByteString key, List<ByteString> items) {
         ReentrantLock lock = getLock(key);
         lock.lock();
         try {
             var list = getValueInternal(key);
             list.addAll(items);
-            DATA.put(key, new RedisValue<>(list));
+            DATA.put(key, new RedisValue<>(RedisValue.Type.LIST, list));
 
             // Notify all waiting blpop operations
             getCondition(key).signalAll();
@@ -59,14 +60,14 @@ public class BlockingRedisListCore implements RedisListCore {
         }
     }
 
-    public int lpush(String key, List<String> items) {
+    public int lpush(ByteString key, List<ByteString> items) {
         ReentrantLock lock = getLock(key);
         lock.lock();
         try {
             var updatedList = new ArrayList<>(items.reversed());
             var list = getValueInternal(key);
             updatedList.addAll(list);
-            DATA.put(key, new RedisValue<>(updatedList));
+            DATA.put(key, new RedisValue<>(RedisValue.Type.LIST, updatedList));
 
             // Notify all waiting blpop operations
             getCondition(key).signalAll();
@@ -81,7 +82,7 @@ public class BlockingRedisListCore implements RedisListCore {
     /**
      * This method is for get-then-act operations to reduce lock and copy snapshot too many times
      */
-    List<String> getValueInternal(String key) {
+    List<ByteString> getValueInternal(ByteString key) {
         var redisValue = DATA.get(key);
         if (redisValue == null) {
             return new ArrayList<>();
@@ -103,7 +104,7 @@ public class BlockingRedisListCore implements RedisListCore {
      * <p>
      * Other get-then-act operations still need to be locked to avoid race condition
      */
-    public List<String> getValue(String key) {
+    public List<ByteString> getValue(ByteString key) {
         ReentrantLock lock = getLock(key);
         lock.lock();
         try {
@@ -114,7 +115,7 @@ public class BlockingRedisListCore implements RedisListCore {
         }
     }
 
-    public List<String> lrange(String key, int startIdx, int endIdx) {
+    public List<ByteString> lrange(ByteString key, int startIdx, int endIdx) {
         if (endIdx >= 0 && startIdx > endIdx) {
             return List.of();
         }
@@ -130,11 +131,11 @@ public class BlockingRedisListCore implements RedisListCore {
         return list.subList(start, end + 1);
     }
 
-    public int size(String key) {
+    public int size(ByteString key) {
         return getValue(key).size();
     }
 
-    public List<String> lpop(String key, int nPop) {
+    public List<ByteString> lpop(ByteString key, int nPop) {
         ReentrantLock lock = getLock(key);
         lock.lock();
         try {
@@ -147,14 +148,14 @@ public class BlockingRedisListCore implements RedisListCore {
                 return list;
             }
             var deletedList = list.subList(0, nPop);
-            DATA.put(key, new RedisValue<>(list.subList(nPop, list.size())));
+            DATA.put(key, new RedisValue<>(RedisValue.Type.LIST, list.subList(nPop, list.size())));
             return deletedList;
         } finally {
             lock.unlock();
         }
     }
 
-    public String lpop(String key) {
+    public ByteString lpop(ByteString key) {
         ReentrantLock lock = getLock(key);
         lock.lock();
         try {
@@ -165,7 +166,7 @@ public class BlockingRedisListCore implements RedisListCore {
         }
     }
 
-    public String blpop(String key, String timeoutSeconds) {
+    public ByteString blpop(ByteString key, String timeoutSeconds) {
         var queue = REQUEST_QUEUE.computeIfAbsent(key, _ -> new ConcurrentLinkedQueue<>());
         var requestId = UUID.randomUUID().toString();
 
@@ -215,7 +216,7 @@ public class BlockingRedisListCore implements RedisListCore {
         }
     }
 
-    private String removeFist(String key, List<String> list) {
+    private ByteString removeFist(ByteString key, List<ByteString> list) {
         if (list.isEmpty()) {
             return null;
         }
@@ -224,7 +225,7 @@ public class BlockingRedisListCore implements RedisListCore {
         if (list.isEmpty()) {
             DATA.remove(key);
         } else {
-            DATA.put(key, new RedisValue<>(list));
+            DATA.put(key, new RedisValue<>(RedisValue.Type.LIST, list));
         }
         return deleted;
     }
@@ -1,6 +1,7 @@
 package blocking.redis.internal;
 
 import redis.internal.RedisValue;
+import server.info.ServerClock;
 
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -18,11 +19,11 @@ public class BlockingRedisStringCore {
     }
 
     public void set(String key, String value) {
-        DATA.put(key, new RedisValue<>(value));
+        DATA.put(key, new RedisValue<>(RedisValue.Type.STRING, value));
     }
 
     public void set(String key, String value, long ttl) {
-        DATA.put(key, new RedisValue<>(value, ttl));
+        DATA.put(key, new RedisValue<>(RedisValue.Type.STRING, value, ServerClock.getInstance().millis() + ttl));
     }
 
     public String get(String key) {
@@ -4,15 +4,13 @@ import error.ClientDisconnectException;
 import error.ConnSleepException;
 import error.NotEnoughDataException;
 import redis.Command;
-import redis.RedisCoreHandler;
-import redis.Response;
-import redis.processor.RedisReadProcessor;
-import redis.processor.RedisWriteProcessor;
 import server.dto.Conn;
+import server.info.ServerClock;
+import server.info.ServerStats;
+import server.nonblocking.ClientRegistry;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.List;
 
 public class RedisHandler implements IConnHandler {
     private static final RedisHandler INSTANCE = new RedisHandler();
@@ -24,11 +22,41 @@ public class RedisHandler implements IConnHandler {
         return INSTANCE;
     }
 
+    /**
+     * Executes every complete request of the pipeline back to back, the replies accumulate in the output buffer
+     * and the caller flushes them once for the whole batch.
+     * <p>
+     * A batch ends when the connection's budget for the read event runs out, the rest of its pipeline is resumed
+     * from the pending queue after the other clients had their turn.
+     */
     @Override
     public void process(Conn conn) {
+        int batchSize = 0;
         try {
-            // due to multi-pipelining, we muse loop here
-            while (tryOneRequest(conn)) ;
+            // due to multi-pipelining, we muse loop here.
+            // Stop once the output is above the high watermark: the rest of the pipeline stays in the socket
+            // until the client reads its replies, instead of growing the output buffer without bound.
+            conn.setReadPaused(false);
+            var now = ServerClock.getInstance().millis();
+            // A request forwarded to another shard holds back the rest of the pipeline, so replies keep their order
+            while (!conn.isAwaitingRemote() && tryOneRequest(conn)) {
+                batchSize++;
+                if (ClientRegistry.getInstance().closeIfOutputBufferLimitReached(conn, now)) {
+                    return;
+                }
+                if (conn.isAboveOutputHighWatermark()) {
+                    conn.setReadPaused(true);
+                    return;
+                }
+                conn.incrEventCommands();
+                if (conn.isEventBudgetExhausted()) {
+                    ServerStats.getInstance().incrClientPreemptions();
+                    if (conn.hasBufferedRequests()) {
+                        ClientRegistry.getInstance().schedulePending(conn);
+                    }
+                    return;
+                }
+            }
 
         } catch (ClientDisconnectException eof) {
             System.out.println("Client disconnected");
@@ -39,28 +67,21 @@ public class RedisHandler implements IConnHandler {
         } catch (Exception e) { // Catch all other exceptions
             System.err.println("Read error: " + e.getMessage());
             conn.wantClose();
+        } finally {
+            ServerStats.getInstance().recordPipelineBatch(batchSize);
         }
     }
 
     private boolean tryOneRequest(Conn conn) throws NotEnoughDataException, IOException {
-        var reader = conn.getReader();
-        reader.mark();
         try {
-            var request = RedisReadProcessor.read(reader);
-            var redisHandler = new RedisCoreHandler(conn);
-            var responses = redisHandler.handleCommand(request);
-
-            // Send all responses
-            for (Response resp : responses) {
-                RedisWriteProcessor.sendResponse(conn.getWriter(), resp);
-            }
+            var request = conn.nextRequest();
+            // the reply goes straight into the output buffer
+            conn.getCommandHandler().handleCommand(request);
         } catch (NotEnoughDataException e) {
-            reader.reset();
-            return false;
+            return false; // the parser keeps the partial request, resume on next read event
         } catch (ConnSleepException e) {
             conn.wantWrite();
         }
-        reader.commit(); // Only when you handle successfully do you consume !!!
         return true;
     }
 }
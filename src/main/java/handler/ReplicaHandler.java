@@ -2,8 +2,6 @@ package handler;
 
 import error.ClientDisconnectException;
 import error.NotEnoughDataException;
-import redis.RedisCoreHandler;
-import redis.processor.RedisReadProcessor;
 import redis.processor.RedisWriteProcessor;
 import server.dto.Conn;
 import server.info.ServerInfo;
@@ -84,16 +82,18 @@ public class ReplicaHandler implements IConnHandler {
 
     private boolean ack(Conn conn) throws IOException {
         try {
-            var request = RedisReadProcessor.read(conn.getReader());
-            System.out.println("Request: " + request.stream().map(Object::toString).collect(Collectors.joining(" ")));
+            var request = conn.getReader().readCommand();
+            System.out.println("Request: " + request.stream().map(String::new).collect(Collectors.joining(" ")));
 
             if (isHandshakeOk()) {
                 System.out.println("Handshake OK");
-                var redisHandler = new RedisCoreHandler(conn);
-                redisHandler.handleCommand(request);
+                conn.getCommandHandler().handleCommand(request);
             } else {
                 ackProcess.getFirst().isSent = true;
-                verifyCurrentAck(request);
+                verifyCurrentAck(request.stream().map(String::new).toList());
+                if (isHandshakeOk()) {
+                    conn.getReader().expectRdbPayload(); // FULLRESYNC is followed by the RDB snapshot
+                }
 
                 var writer = conn.getWriter();
                 sendNewAckOperation(writer);
@@ -129,7 +129,7 @@ public class ReplicaHandler implements IConnHandler {
         }
     }
 
-    private void verifyCurrentAck(List<Object> request) {
+    private void verifyCurrentAck(List<String> request) {
         AckOperation currentOperation = null;
         for (AckOperation ack : ackProcess) {
             if (!ack.isReceived) {
@@ -145,7 +145,7 @@ public class ReplicaHandler implements IConnHandler {
         var isCorrectAckResponse = switch (currentOperation.getAckCommand()) {
             case PING -> request.contains("PONG");
             case FIRST_REPL, SECOND_REPL -> request.contains("OK");
-            case PSYNC -> !request.isEmpty() && request.getFirst().toString().contains("FULLRESYNC");
+            case PSYNC -> !request.isEmpty() && request.getFirst().contains("FULLRESYNC");
         };
 
         if (isCorrectAckResponse) {
@@ -0,0 +1,32 @@
+package helper;
+
+import java.util.Locale;
+
+public class MemoryUnits {
+    /**
+     * Parses a memory amount the way redis.conf does: {@code 1k} is 1000 bytes, {@code 1kb} is 1024 bytes,
+     * and the same for m/mb and g/gb. A plain number is in bytes.
+     */
+    public static long parse(String value) {
+        var str = value.trim().toLowerCase(Locale.ROOT);
+        var digits = str.length();
+        while (digits > 0 && !Character.isDigit(str.charAt(digits - 1))) {
+            digits--;
+        }
+        long multiplier = switch (str.substring(digits)) {
+            case "", "b" -> 1L;
+            case "k" -> 1000L;
+            case "kb" -> 1024L;
+            case "m" -> 1000L * 1000;
+            case "mb" -> 1024L * 1024;
+            case "g" -> 1000L * 1000 * 1000;
+            case "gb" -> 1024L * 1024 * 1024;
+            default -> throw new NumberFormatException("Invalid memory unit: " + value);
+        };
+        var amount = Long.parseLong(str.substring(0, digits));
+        if (amount < 0) {
+            throw new NumberFormatException("Negative memory amount: " + value);
+        }
+        return Math.multiplyExact(amount, multiplier);
+    }
+}
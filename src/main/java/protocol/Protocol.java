@@ -1,6 +1,6 @@
 package protocol;
 
-import java.util.Arrays;
+import java.util.Locale;
 
 public class Protocol {
 
@@ -13,6 +13,17 @@ public class Protocol {
         RDB_FILE('$'),
         ;
 
+        // indexed by the type byte; '$' resolves to BULK_STRING, the RDB payload is only told apart by context
+        private static final DataType[] BY_PREFIX = new DataType[256];
+
+        static {
+            for (var dt : values()) {
+                if (BY_PREFIX[dt.prefix] == null) {
+                    BY_PREFIX[dt.prefix] = dt;
+                }
+            }
+        }
+
         private final char prefix;
 
         DataType(char c) {
@@ -20,7 +31,7 @@ public class Protocol {
         }
 
         public static DataType findDataTypeByPrefix(char prefix) {
-            return Arrays.stream(DataType.values()).filter(dt -> dt.getPrefix() == prefix).findFirst().orElse(null);
+            return prefix < BY_PREFIX.length ? BY_PREFIX[prefix] : null;
         }
 
         public char getPrefix() {
@@ -46,10 +57,35 @@ public class Protocol {
         INFO,
         REPLCONF,
         PSYNC,
+        CLIENT,
+        COMMAND,
+        DEL,
+        EXISTS,
+        TYPE,
+        RENAME,
+        DBSIZE,
+        OBJECT,
+        GETEX,
+        EXPIRE,
+        PEXPIRE,
+        EXPIREAT,
+        PEXPIREAT,
+        TTL,
+        PTTL,
+        PERSIST,
+        MEMORY,
+        INCRBY,
+        DECR,
+        DECRBY,
+        INCRBYFLOAT,
+        SCAN,
+        KEYS,
         ;
 
-        public static Command findCommand(String command) {
-            return Arrays.stream(Command.values()).filter(cmd -> cmd.name().equalsIgnoreCase(command)).findFirst().orElse(null);
+        private final String lowerCaseName = name().toLowerCase(Locale.ROOT);
+
+        public String lowerCaseName() {
+            return lowerCaseName;
         }
     }
 }
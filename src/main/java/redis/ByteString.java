@@ -0,0 +1,189 @@
+package redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary-safe, immutable string used for keys, values and command arguments.
+ * <p>
+ * It holds exactly the bytes the client sent, no charset decoding happens unless {@link #toString()} is called.
+ */
+public final class ByteString implements Comparable<ByteString> {
+    public static final ByteString EMPTY = new ByteString(new byte[0]);
+
+    private final byte[] bytes;
+    private int hash;
+
+    private ByteString(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Wraps {@code bytes} without copying. The caller must not modify the array afterward.
+     */
+    public static ByteString wrap(byte[] bytes) {
+        return new ByteString(bytes);
+    }
+
+    public static ByteString of(String str) {
+        return new ByteString(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the backing array, which must not be modified.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public boolean isEmpty() {
+        return bytes.length == 0;
+    }
+
+    public byte byteAt(int index) {
+        return bytes[index];
+    }
+
+    /**
+     * Case-insensitive comparison against an ASCII string, e.g. a command name or an option.
+     */
+    public boolean equalsIgnoreCase(String ascii) {
+        if (ascii.length() != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (Character.toUpperCase((char) (bytes[i] & 0xFF)) != Character.toUpperCase(ascii.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the bytes are exactly how a long prints, so the string can be stored as the number and printed back
+     * unchanged. Unlike {@link #toLong()} it never throws, for checks on every written value.
+     */
+    public boolean isCanonicalLong() {
+        var len = bytes.length;
+        if (len == 0 || len > 20) {
+            return false;
+        }
+        var i = bytes[0] == '-' ? 1 : 0;
+        if (i == len || (bytes[i] == '0' && (len > i + 1 || i == 1))) {
+            return false; // leading zero or "-0"
+        }
+        for (; i < len; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        if (len < 19) {
+            return true;
+        }
+        try {
+            toLong();
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses the bytes as a signed 64-bit decimal integer, with the same strictness as Redis
+     * (no sign prefix other than '-', no leading zeros, no spaces).
+     */
+    public long toLong() {
+        var len = bytes.length;
+        if (len == 0 || len > 20) {
+            throw new NumberFormatException("value is not an integer");
+        }
+        var negative = bytes[0] == '-';
+        var i = negative ? 1 : 0;
+        if (i == len || (bytes[i] == '0' && len > i + 1)) {
+            throw new NumberFormatException("value is not an integer");
+        }
+        long value = 0;
+        for (; i < len; i++) {
+            var digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("value is not an integer");
+            }
+            // accumulate negatively so that Long.MIN_VALUE does not overflow
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("value is out of range");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw new NumberFormatException("value is out of range");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    public int toInt() {
+        var value = toLong();
+        if ((int) value != value) {
+            throw new NumberFormatException("value is out of range");
+        }
+        return (int) value;
+    }
+
+    public double toDouble() {
+        return Double.parseDouble(toString());
+    }
+
+    /**
+     * Parses the bytes as a finite decimal number, stricter than {@link #toDouble()}: no spaces, hexadecimal,
+     * type suffixes, infinities or NaN.
+     */
+    public double toFiniteDouble() {
+        if (bytes.length == 0) {
+            throw new NumberFormatException("value is not a valid float");
+        }
+        for (var b : bytes) {
+            if ((b < '0' || b > '9') && b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') {
+                throw new NumberFormatException("value is not a valid float");
+            }
+        }
+        var value = Double.parseDouble(toString());
+        if (Double.isInfinite(value)) {
+            throw new NumberFormatException("value is not a valid float");
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof ByteString other && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        var h = hash;
+        if (h == 0 && bytes.length > 0) {
+            h = Arrays.hashCode(bytes);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public int compareTo(ByteString o) {
+        return Arrays.compareUnsigned(bytes, o.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
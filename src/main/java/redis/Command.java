@@ -7,14 +7,18 @@ import java.util.Optional;
 
 public class Command {
     private final String connectionId;
-    private final List<String> request;
+    private final List<ByteString> request;
+    private CommandSpec spec; // resolved on first use
+    // what replicas execute, e.g. a relative EXPIRE as PEXPIREAT so that they agree on the deadline; null for nothing
+    private List<ByteString> propagatedRequest;
 
-    public Command(String connectionId, List<String> request) {
+    public Command(String connectionId, List<ByteString> request) {
         this.connectionId = connectionId;
         this.request = Optional.ofNullable(request).orElse(List.of());
+        this.propagatedRequest = this.request;
     }
 
-    public List<String> getRequest() {
+    public List<ByteString> getRequest() {
         return request;
     }
 
@@ -22,17 +26,45 @@ public class Command {
         return connectionId;
     }
 
+    /**
+     * @return the entry of the command table, or null for an unknown command
+     */
+    public CommandSpec getSpec() {
+        if (spec == null) {
+            spec = CommandTable.getInstance().lookup(request.getFirst());
+        }
+        return spec;
+    }
+
     public Protocol.Command getCmd() {
-        var command = request.getFirst();
-        return Optional.ofNullable(Protocol.Command.findCommand(command))
-                .orElseThrow(() -> new IllegalArgumentException("Invalid command received: " + command));
+        return Optional.ofNullable(getSpec())
+                .map(CommandSpec::command)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid command received: " + request.getFirst()));
+    }
+
+    /**
+     * The request replicas execute instead of this one, only for commands flagged to be propagated.
+     */
+    public List<ByteString> getPropagatedRequest() {
+        return propagatedRequest;
+    }
+
+    public void propagateAs(List<ByteString> request) {
+        this.propagatedRequest = request;
+    }
+
+    /**
+     * Nothing to propagate, e.g. a conditional write whose condition did not hold.
+     */
+    public void propagateNothing() {
+        this.propagatedRequest = null;
     }
 
-    public String getKey() {
+    public ByteString getKey() {
         return request.get(1);
     }
 
-    public List<String> getData() {
+    public List<ByteString> getData() {
         return request.subList(2, request.size());
     }
 }
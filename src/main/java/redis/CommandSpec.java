@@ -0,0 +1,114 @@
+package redis;
+
+import protocol.Protocol;
+import redis.processor.RespEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Static description of a command, as listed by {@code COMMAND}.
+ *
+ * @param arity    number of arguments including the command name, negative for "at least -arity"
+ * @param firstKey position of the first key argument, 0 if the command takes no key
+ * @param lastKey  position of the last key argument, negative counts from the end
+ * @param keyStep  distance between two key arguments
+ */
+public record CommandSpec(Protocol.Command command, int arity, Set<Flag> flags,
+                          int firstKey, int lastKey, int keyStep, Handler handler) {
+
+    public CommandSpec {
+        flags = flags.isEmpty() ? EnumSet.noneOf(Flag.class) : EnumSet.copyOf(flags);
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(RedisCoreHandler handler, Command command) throws IOException;
+    }
+
+    public enum Flag {
+        WRITE("write"),
+        READONLY("readonly"),
+        DENYOOM("denyoom"),
+        ADMIN("admin"),
+        BLOCKING("blocking"),
+        FAST("fast"),
+        // Internal flags, not reported by COMMAND
+        PROPAGATE(null), // sent to replicas once executed without error
+        TRANSACTION(null), // MULTI/EXEC/DISCARD run right away instead of being queued
+        ;
+
+        private final String replyName;
+
+        Flag(String replyName) {
+            this.replyName = replyName;
+        }
+
+        public String replyName() {
+            return replyName;
+        }
+    }
+
+    public static CommandSpec of(Protocol.Command command, int arity, Set<Flag> flags, Handler handler) {
+        return new CommandSpec(command, arity, flags, 0, 0, 0, handler);
+    }
+
+    public static CommandSpec withKeys(Protocol.Command command, int arity, Set<Flag> flags,
+                                       int firstKey, int lastKey, int keyStep, Handler handler) {
+        return new CommandSpec(command, arity, flags, firstKey, lastKey, keyStep, handler);
+    }
+
+    public String name() {
+        return command.lowerCaseName();
+    }
+
+    public boolean hasFlag(Flag flag) {
+        return flags.contains(flag);
+    }
+
+    public boolean isArityValid(int argc) {
+        return arity >= 0 ? argc == arity : argc >= -arity;
+    }
+
+    /**
+     * One entry of the {@code COMMAND} reply: name, arity, flags, first key, last key, key step and ACL categories.
+     */
+    public void writeTo(RespEncoder reply) throws IOException {
+        var flagNames = new ArrayList<String>();
+        for (var flag : flags) {
+            if (flag.replyName() != null) {
+                flagNames.add(flag.replyName());
+            }
+        }
+        var categories = aclCategories();
+
+        reply.arrayHeader(7);
+        reply.bulkString(name());
+        reply.integer(arity);
+        reply.arrayHeader(flagNames.size());
+        for (var flagName : flagNames) {
+            reply.simpleString(flagName);
+        }
+        reply.integer(firstKey);
+        reply.integer(lastKey);
+        reply.integer(keyStep);
+        reply.arrayHeader(categories.size());
+        for (var category : categories) {
+            reply.simpleString(category);
+        }
+    }
+
+    private List<String> aclCategories() {
+        var categories = new ArrayList<String>();
+        if (hasFlag(Flag.WRITE)) categories.add("@write");
+        if (hasFlag(Flag.READONLY)) categories.add("@read");
+        if (hasFlag(Flag.ADMIN)) categories.add("@admin");
+        categories.add(hasFlag(Flag.FAST) ? "@fast" : "@slow");
+        if (hasFlag(Flag.BLOCKING)) categories.add("@blocking");
+        if (hasFlag(Flag.ADMIN)) categories.add("@dangerous");
+        return categories;
+    }
+}
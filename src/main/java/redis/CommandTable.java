@@ -0,0 +1,140 @@
+package redis;
+
+import protocol.Protocol;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import static redis.CommandSpec.Flag.*;
+
+/**
+ * Every command the server knows, with its arity, flags, key positions and handler.
+ * <p>
+ * Requests are resolved straight from the bytes of their first argument, ignoring case, without decoding it.
+ */
+public class CommandTable {
+    // Singleton
+    // ------------------------------------------------------------------
+    private static final CommandTable INSTANCE = new CommandTable();
+
+    private CommandTable() {
+        register(CommandSpec.of(Protocol.Command.PING, -1, Set.of(FAST), RedisCoreHandler::ping));
+        register(CommandSpec.of(Protocol.Command.ECHO, 2, Set.of(FAST), RedisCoreHandler::echo));
+        register(CommandSpec.withKeys(Protocol.Command.SET, -3, Set.of(WRITE, DENYOOM, PROPAGATE), 1, 1, 1, RedisCoreHandler::set));
+        register(CommandSpec.withKeys(Protocol.Command.GET, 2, Set.of(READONLY, FAST), 1, 1, 1, RedisCoreHandler::get));
+        register(CommandSpec.withKeys(Protocol.Command.GETEX, -2, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::getex));
+        register(CommandSpec.withKeys(Protocol.Command.EXPIRE, -3, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::expire));
+        register(CommandSpec.withKeys(Protocol.Command.PEXPIRE, -3, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::pexpire));
+        register(CommandSpec.withKeys(Protocol.Command.EXPIREAT, -3, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::expireat));
+        register(CommandSpec.withKeys(Protocol.Command.PEXPIREAT, -3, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::pexpireat));
+        register(CommandSpec.withKeys(Protocol.Command.TTL, 2, Set.of(READONLY, FAST), 1, 1, 1, RedisCoreHandler::ttl));
+        register(CommandSpec.withKeys(Protocol.Command.PTTL, 2, Set.of(READONLY, FAST), 1, 1, 1, RedisCoreHandler::pttl));
+        register(CommandSpec.withKeys(Protocol.Command.PERSIST, 2, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::persist));
+        register(CommandSpec.withKeys(Protocol.Command.INCR, 2, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::incr));
+        register(CommandSpec.withKeys(Protocol.Command.INCRBY, 3, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::incrby));
+        register(CommandSpec.withKeys(Protocol.Command.DECR, 2, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::decr));
+        register(CommandSpec.withKeys(Protocol.Command.DECRBY, 3, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::decrby));
+        register(CommandSpec.withKeys(Protocol.Command.INCRBYFLOAT, 3, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::incrbyfloat));
+        register(CommandSpec.withKeys(Protocol.Command.RPUSH, -3, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::rpush));
+        register(CommandSpec.withKeys(Protocol.Command.LPUSH, -3, Set.of(WRITE, DENYOOM, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::lpush));
+        register(CommandSpec.withKeys(Protocol.Command.LRANGE, 4, Set.of(READONLY), 1, 1, 1, RedisCoreHandler::lrange));
+        register(CommandSpec.withKeys(Protocol.Command.LLEN, 2, Set.of(READONLY, FAST), 1, 1, 1, RedisCoreHandler::llen));
+        register(CommandSpec.withKeys(Protocol.Command.LPOP, -2, Set.of(WRITE, FAST, PROPAGATE), 1, 1, 1, RedisCoreHandler::lpop));
+        // a served BLPOP is propagated as the LPOP it performed; only BLPOP key timeout, a single key
+        register(CommandSpec.withKeys(Protocol.Command.BLPOP, 3, Set.of(WRITE, BLOCKING), 1, 1, 1, RedisCoreHandler::blpop));
+        register(CommandSpec.withKeys(Protocol.Command.DEL, -2, Set.of(WRITE, PROPAGATE), 1, -1, 1, RedisCoreHandler::del));
+        register(CommandSpec.withKeys(Protocol.Command.EXISTS, -2, Set.of(READONLY, FAST), 1, -1, 1, RedisCoreHandler::exists));
+        register(CommandSpec.withKeys(Protocol.Command.TYPE, 2, Set.of(READONLY, FAST), 1, 1, 1, RedisCoreHandler::type));
+        register(CommandSpec.withKeys(Protocol.Command.RENAME, 3, Set.of(WRITE, PROPAGATE), 1, 2, 1, RedisCoreHandler::rename));
+        register(CommandSpec.of(Protocol.Command.DBSIZE, 1, Set.of(READONLY, FAST), RedisCoreHandler::dbsize));
+        register(CommandSpec.of(Protocol.Command.SCAN, -2, Set.of(READONLY), RedisCoreHandler::scan));
+        register(CommandSpec.of(Protocol.Command.KEYS, 2, Set.of(READONLY), RedisCoreHandler::keys));
+        register(CommandSpec.withKeys(Protocol.Command.OBJECT, -2, Set.of(READONLY), 2, 2, 1, RedisCoreHandler::object));
+        register(CommandSpec.withKeys(Protocol.Command.MEMORY, -2, Set.of(READONLY), 2, 2, 1, RedisCoreHandler::memory));
+        register(CommandSpec.of(Protocol.Command.MULTI, 1, Set.of(FAST, TRANSACTION), RedisCoreHandler::multi));
+        register(CommandSpec.of(Protocol.Command.EXEC, 1, Set.of(TRANSACTION), RedisCoreHandler::exec));
+        register(CommandSpec.of(Protocol.Command.DISCARD, 1, Set.of(FAST, TRANSACTION), RedisCoreHandler::discard));
+        register(CommandSpec.of(Protocol.Command.INFO, -1, Set.of(), RedisCoreHandler::info));
+        register(CommandSpec.of(Protocol.Command.REPLCONF, -1, Set.of(ADMIN), RedisCoreHandler::replconf));
+        register(CommandSpec.of(Protocol.Command.PSYNC, -3, Set.of(ADMIN), RedisCoreHandler::psync));
+        register(CommandSpec.of(Protocol.Command.CLIENT, -2, Set.of(ADMIN), RedisCoreHandler::client));
+        register(CommandSpec.of(Protocol.Command.COMMAND, -1, Set.of(), RedisCoreHandler::command));
+    }
+
+    public static CommandTable getInstance() {
+        return INSTANCE;
+    }
+    // ------------------------------------------------------------------
+
+    private static final int SLOTS = 128; // power of two, at least twice the number of commands
+
+    private final Map<Protocol.Command, CommandSpec> specs = new EnumMap<>(Protocol.Command.class);
+    // open addressing over the lower-case name bytes
+    private final CommandSpec[] slots = new CommandSpec[SLOTS];
+    private final byte[][] slotNames = new byte[SLOTS][];
+
+    private void register(CommandSpec spec) {
+        specs.put(spec.command(), spec);
+        var name = spec.name().getBytes();
+        int slot = hashIgnoreCase(name) & (SLOTS - 1);
+        while (slots[slot] != null) {
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+        slots[slot] = spec;
+        slotNames[slot] = name;
+    }
+
+    /**
+     * @return the command named by {@code name} in any case, or null if there is none
+     */
+    public CommandSpec lookup(ByteString name) {
+        var bytes = name.getBytes();
+        int slot = hashIgnoreCase(bytes) & (SLOTS - 1);
+        while (slots[slot] != null) {
+            if (equalsIgnoreCase(slotNames[slot], bytes)) {
+                return slots[slot];
+            }
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+        return null;
+    }
+
+    public CommandSpec get(Protocol.Command command) {
+        return specs.get(command);
+    }
+
+    public Collection<CommandSpec> getAll() {
+        return Collections.unmodifiableCollection(specs.values());
+    }
+
+    public int size() {
+        return specs.size();
+    }
+
+    private static int hashIgnoreCase(byte[] bytes) {
+        int h = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            h = 31 * h + toLower(bytes[i]);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equalsIgnoreCase(byte[] lowerCase, byte[] bytes) {
+        if (lowerCase.length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (lowerCase[i] != toLower(bytes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
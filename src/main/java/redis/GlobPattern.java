@@ -0,0 +1,141 @@
+package redis;
+
+import java.util.ArrayList;
+
+/**
+ * A glob-style pattern of MATCH and KEYS, with Redis' syntax: {@code *}, {@code ?}, {@code [abc]}, {@code [^a-z]}
+ * and {@code \} to escape.
+ * <p>
+ * Compiled once per command into one set of accepted bytes per pattern position, so matching a key is a bit test
+ * per byte. A failed match only backtracks to the last {@code *}, a key costs at most its length times the pattern's.
+ */
+public final class GlobPattern {
+    // null marks a '*' in the compiled pattern, every other position is the bitset of the bytes it accepts
+    private final long[][] positions;
+    private final boolean matchesAll;
+
+    private GlobPattern(long[][] positions) {
+        this.positions = positions;
+        this.matchesAll = positions.length > 0 && allStars(positions);
+    }
+
+    public static GlobPattern compile(ByteString pattern) {
+        var positions = new ArrayList<long[]>();
+        int n = pattern.length();
+        for (int i = 0; i < n; i++) {
+            var c = pattern.byteAt(i);
+            switch (c) {
+                case '*' -> {
+                    // consecutive stars match the same as one
+                    if (positions.isEmpty() || positions.getLast() != null) {
+                        positions.add(null);
+                    }
+                }
+                case '?' -> positions.add(anyByte());
+                case '[' -> i = compileClass(pattern, i + 1, positions);
+                case '\\' -> positions.add(singleByte(i + 1 < n ? pattern.byteAt(++i) : c));
+                default -> positions.add(singleByte(c));
+            }
+        }
+        return new GlobPattern(positions.toArray(long[][]::new));
+    }
+
+    /**
+     * Whether the pattern is only stars, i.e. any key matches and keys need not be checked.
+     */
+    public boolean matchesAll() {
+        return matchesAll;
+    }
+
+    public boolean matches(ByteString key) {
+        if (matchesAll) {
+            return true;
+        }
+        int n = key.length();
+        int p = 0, k = 0;
+        // where to resume after the last star: the position after it and the key byte it swallowed up to
+        int starP = -1, starK = -1;
+        while (k < n) {
+            if (p < positions.length && positions[p] == null) {
+                starP = ++p;
+                starK = k;
+            } else if (p < positions.length && accepts(positions[p], key.byteAt(k))) {
+                p++;
+                k++;
+            } else if (starP >= 0) {
+                p = starP;
+                k = ++starK;
+            } else {
+                return false;
+            }
+        }
+        while (p < positions.length && positions[p] == null) {
+            p++;
+        }
+        return p == positions.length;
+    }
+
+    /**
+     * Compiles the class starting after its '[', Redis style: an unterminated class ends with the pattern.
+     *
+     * @return the index of the closing ']'
+     */
+    private static int compileClass(ByteString pattern, int i, ArrayList<long[]> positions) {
+        int n = pattern.length();
+        var set = new long[4];
+        boolean negate = i < n && pattern.byteAt(i) == '^';
+        if (negate) {
+            i++;
+        }
+        for (; i < n && pattern.byteAt(i) != ']'; i++) {
+            int c = pattern.byteAt(i) & 0xFF;
+            if (c == '\\' && i + 1 < n) {
+                add(set, pattern.byteAt(++i) & 0xFF);
+            } else if (i + 2 < n && pattern.byteAt(i + 1) == '-' && pattern.byteAt(i + 2) != ']') {
+                int end = pattern.byteAt(i + 2) & 0xFF;
+                // reversed ranges like [z-a] are accepted as well
+                for (int b = Math.min(c, end); b <= Math.max(c, end); b++) {
+                    add(set, b);
+                }
+                i += 2;
+            } else {
+                add(set, c);
+            }
+        }
+        if (negate) {
+            for (int w = 0; w < set.length; w++) {
+                set[w] = ~set[w];
+            }
+        }
+        positions.add(set);
+        return i;
+    }
+
+    private static boolean accepts(long[] set, byte b) {
+        int u = b & 0xFF;
+        return (set[u >>> 6] & (1L << u)) != 0;
+    }
+
+    private static long[] singleByte(byte b) {
+        var set = new long[4];
+        add(set, b & 0xFF);
+        return set;
+    }
+
+    private static long[] anyByte() {
+        return new long[]{-1L, -1L, -1L, -1L};
+    }
+
+    private static void add(long[] set, int b) {
+        set[b >>> 6] |= 1L << b;
+    }
+
+    private static boolean allStars(long[][] positions) {
+        for (var position : positions) {
+            if (position != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,196 +3,513 @@ package redis;
 import error.ConnSleepException;
 import error.DiscardNoMultiException;
 import error.ExecNoMultiException;
-import protocol.Protocol;
+import error.WrongTypeException;
+import redis.internal.Evictor;
 import redis.internal.NonBlockingRedisListCore;
 import redis.internal.NonBlockingRedisStringCore;
+import redis.internal.OffHeapString;
+import redis.internal.ReadView;
+import redis.internal.RedisDb;
+import redis.internal.RedisInteger;
 import redis.internal.RedisListCore;
+import redis.internal.RedisValue;
+import redis.internal.ReplyCache;
 import redis.internal.TransactionCore;
 import redis.processor.RedisWriteProcessor;
+import redis.processor.RespEncoder;
 import server.cron.ReplicateDataCron;
+import server.cron.ScanCron;
 import server.cron.TimeoutCron;
 import server.dto.Conn;
+import server.info.ServerClock;
 import server.info.ServerInfo;
+import server.info.ServerMode;
+import server.info.ServerStats;
+import server.nonblocking.ClientRegistry;
+import server.shard.RemoteReply;
+import server.shard.ShardCoordinator;
+import server.shard.ShardLocal;
+import server.shard.Shards;
 import stream.Writer;
 
 import java.io.IOException;
 import java.util.*;
 
 public class RedisCoreHandler {
-    private static final EnumSet<Protocol.Command> TRANSACTION_COMMANDS = EnumSet.of(
-            Protocol.Command.MULTI,
-            Protocol.Command.EXEC,
-            Protocol.Command.DISCARD
-    );
-    private static final HashMap<String, Queue<Request>> REQUEST_QUEUE = new HashMap<>();
-    private static final EnumSet<Protocol.Command> PROPAGATED_COMMANDS = EnumSet.of(
-            Protocol.Command.SET,
-            Protocol.Command.RPUSH,
-            Protocol.Command.LPUSH,
-            Protocol.Command.LPOP,
-            Protocol.Command.INCR
-    );
+    // clients blocked by BLPOP on each key, of the shard owning the key
+    private static final ShardLocal<HashMap<ByteString, Queue<Request>>> REQUEST_QUEUES = new ShardLocal<>(HashMap::new);
+    private static final ByteString LPOP = ByteString.of("LPOP");
+    private static final ByteString SET = ByteString.of("SET");
+    private static final ByteString DEL = ByteString.of("DEL");
+    private static final ByteString PXAT = ByteString.of("PXAT");
+    private static final ByteString PEXPIREAT = ByteString.of("PEXPIREAT");
+    private static final ByteString PERSIST = ByteString.of("PERSIST");
+    private static final ByteString KEEPTTL = ByteString.of("KEEPTTL");
+    private static final int DEFAULT_MEMORY_SAMPLES = 5;
+    private static final int DEFAULT_SCAN_COUNT = 10;
+    // keys looked at per SCAN step of KEYS, the time budget is checked between steps
+    private static final int KEYS_SCAN_COUNT = 100;
+    // with shards, a SCAN cursor holds the shard above the cursor of the shard's table
+    private static final int SHARD_CURSOR_SHIFT = 32;
+    private static final long SHARD_CURSOR_MASK = (1L << SHARD_CURSOR_SHIFT) - 1;
 
     private final NonBlockingRedisStringCore redisStringCore;
     private final RedisListCore redisListCore;
     private final TransactionCore transactionCore;
+    private final RedisDb db;
     private final Writer writer;
+    private final RespEncoder reply;
     private final Conn conn;
+    private boolean runningExec = false;
 
-    public RedisCoreHandler(Conn conn) {
+    public RedisCoreHandler(Conn conn, RespEncoder reply) {
+        this(conn, conn.getWriter(), reply);
+    }
+
+    /**
+     * A handler without connection, for a client of another shard: its commands come already checked by the
+     * client's own handler and the replies go back through the writer, see {@link RemoteReply}.
+     */
+    public RedisCoreHandler(Writer writer, RespEncoder reply) {
+        this(null, writer, reply);
+    }
+
+    private RedisCoreHandler(Conn conn, Writer writer, RespEncoder reply) {
         this.conn = conn;
-        this.writer = conn.getWriter();
+        this.writer = writer;
+        this.reply = reply;
         this.redisStringCore = NonBlockingRedisStringCore.getInstance();
         this.redisListCore = NonBlockingRedisListCore.getInstance();
         this.transactionCore = TransactionCore.getInstance();
+        this.db = RedisDb.getInstance();
     }
 
-    public List<Response> handleCommand(List<Object> request) throws IOException {
-        var req = request.stream().filter(Objects::nonNull).map(Object::toString).toList();
+    /**
+     * Executes the request, its reply is encoded straight into the connection's output buffer.
+     */
+    public void handleCommand(List<byte[]> request) throws IOException {
+        var req = new ArrayList<ByteString>(request.size());
+        for (var arg : request) {
+            req.add(ByteString.wrap(arg));
+        }
         var command = new Command(writer.getId(), req);
         validateNumberOfArgs(command, 1);
-        var responses = handleCommand(command);
-       replicateIfOk(responses, command);
-       return responses;
+        if (!ReadView.isEnabled()) {
+            executeAndReplicate(command);
+            return;
+        }
+        // the keys it changes are published to the concurrent readers before its reply can be sent
+        var readView = ReadView.getInstance();
+        readView.begin();
+        try {
+            executeAndReplicate(command);
+        } finally {
+            readView.end();
+        }
     }
 
-    private void replicateIfOk(List<Response> responses, Command command) {
-        if (responses.stream().noneMatch(response -> response.responseType() == Response.ResponseType.ERROR)) {
+    private void executeAndReplicate(Command command) throws IOException {
+        reply.resetError();
+        handleCommand(command);
+        if (!reply.hasError()) {
             replicateData(command);
         }
     }
 
-    private List<Response> handleCommand(Command command) throws IOException {
-        var cmd = command.getCmd();
-        if (!TRANSACTION_COMMANDS.contains(cmd) && transactionCore.queue(command)) {
-            return List.of(Response.queued());
-        }
-        return switch (cmd) {
-            case PING -> ping(command);
-            case ECHO -> echo(command);
-            case SET -> set(command);
-            case GET -> get(command);
-            case RPUSH -> rpush(command);
-            case LPUSH -> lpush(command);
-            case LRANGE -> lrange(command);
-            case LLEN -> llen(command);
-            case LPOP -> lpop(command);
-            case BLPOP -> blpop(command);
-            case INCR -> incr(command);
-            case MULTI -> multi(command);
-            case EXEC -> exec(command);
-            case DISCARD -> discard(command);
-            case INFO -> info(command);
-            case REPLCONF -> replconf(command);
-            case PSYNC -> psync(command);
-        };
+    private void handleCommand(Command command) throws IOException {
+        var spec = command.getSpec();
+        if (spec == null) {
+            reply.error(unknownCommandMessage(command));
+            return;
+        }
+        if (conn != null) {
+            conn.onCommand(spec.command(), ServerClock.getInstance().millis());
+        }
+        if (!spec.isArityValid(command.getRequest().size())) {
+            reply.error("wrong number of arguments for '" + spec.name() + "' command");
+            return;
+        }
+        if (Shards.isEnabled() && route(command, spec)) {
+            return;
+        }
+        if (!Evictor.getInstance().performEvictions() && spec.hasFlag(CommandSpec.Flag.DENYOOM)) {
+            ServerStats.getInstance().incrOomRejections();
+            reply.oom();
+            return;
+        }
+        if (!spec.hasFlag(CommandSpec.Flag.TRANSACTION) && transactionCore.queue(command)) {
+            reply.queued();
+            return;
+        }
+        try {
+            spec.handler().handle(this, command);
+        } catch (WrongTypeException e) {
+            reply.wrongType();
+        }
+    }
+
+    /**
+     * Sends the command to the shard owning its keys: a command on a single other shard is forwarded to its loop,
+     * one on keys of several shards runs with every shard parked, its handler switching to the owner of each key.
+     *
+     * @return false if the command runs right here: it takes no key, its keys are local, or it is queued by MULTI
+     */
+    private boolean route(Command command, CommandSpec spec) throws IOException {
+        if (spec.firstKey() == 0 || spec.hasFlag(CommandSpec.Flag.TRANSACTION) || transactionCore.isQueuing(command)) {
+            return false;
+        }
+        var request = command.getRequest();
+        var lastKey = spec.lastKey() < 0 ? request.size() + spec.lastKey() : spec.lastKey();
+        int owner = -1;
+        boolean spread = false;
+        for (int i = spec.firstKey(); i <= lastKey && i < request.size(); i += spec.keyStep()) {
+            var shardId = Shards.ownerOf(request.get(i));
+            if (owner < 0) {
+                owner = shardId;
+            } else if (shardId != owner) {
+                spread = true;
+            }
+        }
+        if (owner < 0 || (!spread && owner == Shards.current())) {
+            return false;
+        }
+        if (ShardCoordinator.isExclusive()) {
+            if (spread) {
+                return false;
+            }
+            var target = owner;
+            ShardCoordinator.withShard(target, () -> {
+                new RedisCoreHandler(writer, reply).handleCommand(command);
+                return null;
+            });
+            return true;
+        }
+        if (spread) {
+            ShardCoordinator.runExclusive(() -> handleCommand(command));
+            return true;
+        }
+        forward(command, owner);
+        return true;
+    }
+
+    /**
+     * Runs the command on the loop of the shard, the connection reads nothing more until the reply is back.
+     */
+    private void forward(Command command, int owner) {
+        var remote = new RemoteReply(conn, Shards.current());
+        conn.setAwaitingRemote(true);
+        Shards.post(owner, () -> {
+            var remoteReply = new RespEncoder(remote);
+            try {
+                new RedisCoreHandler(remote, remoteReply).executeAndReplicate(command);
+            } catch (ConnSleepException e) {
+                // blocked, the reply is written once served or timed out
+            } catch (IOException | RuntimeException e) {
+                try {
+                    remoteReply.error(String.valueOf(e.getMessage()));
+                } catch (IOException ignored) {
+                    // a RemoteReply does not fail
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the action in the context of the shard owning the key, when a command on keys of several shards runs
+     * with the other shards parked. Otherwise the key is local.
+     */
+    private static <T> T onOwner(ByteString key, ShardCoordinator.ShardFunction<T> action) throws IOException {
+        if (!ShardCoordinator.isExclusive()) {
+            return action.apply();
+        }
+        return ShardCoordinator.withShard(Shards.ownerOf(key), action);
+    }
+
+    private static String unknownCommandMessage(Command command) {
+        var message = new StringBuilder("unknown command '")
+                .append(command.getRequest().getFirst())
+                .append("', with args beginning with: ");
+        for (var arg : command.getRequest().subList(1, command.getRequest().size())) {
+            message.append('\'').append(arg).append("' ");
+        }
+        return message.toString();
     }
 
     private void replicateData(Command command) {
-        if (RedisCoreHandler.PROPAGATED_COMMANDS.contains(command.getCmd())) {
+        if (command.getSpec().hasFlag(CommandSpec.Flag.PROPAGATE) && command.getPropagatedRequest() != null) {
             ReplicateDataCron.getInstance().registerCommand(command);
         }
     }
 
-    private List<Response> psync(Command ignored) {
+    void psync(Command ignored) throws IOException {
+        if (rejectReplication()) {
+            return;
+        }
         var replId = ServerInfo.getInstance().get(ServerInfo.InfoKey.MASTER_REPL_ID);
         var replOffset = ServerInfo.getInstance().get(ServerInfo.InfoKey.MASTER_REPL_OFFSET);
-        var response = Response.simpleString(String.format("FULLRESYNC %s %s", replId, replOffset));
+        reply.simpleString(String.format("FULLRESYNC %s %s", replId, replOffset));
 
         byte[] contents = HexFormat.of().parseHex(
                 "524544495330303131fa0972656469732d76657205372e322e30fa0a72656469732d62697473c040fa056374696d65c26d08bc65fa08757365642d6d656dc2b0c41000fa08616f662d62617365c000fff06e3bfec0ff5aa2");
-        var rdbFileResponse = Response.rdbFile(contents);
-        // PSYNC might need to send RDB data as well - add additional responses here if needed
+        // PSYNC might need to send RDB data as well - add additional replies here if needed
+        reply.rdbFile(contents);
 
         ReplicateDataCron.getInstance().addReplica(conn);
-        return List.of(
-                response,
-                rdbFileResponse
-        );
+        conn.setClientClass(Conn.ClientClass.REPLICA); // replica output buffer limits from now on
     }
 
-    private List<Response> replconf(Command ignored) {
-        return List.of(Response.ok());
+    void replconf(Command ignored) throws IOException {
+        if (rejectReplication()) {
+            return;
+        }
+        reply.ok();
     }
 
-    private List<Response> info(Command command) {
-        Response response;
-        if (command.getRequest().contains("replication")) {
-            response = Response.bulkString(ServerInfo.getInstance().getAllInfo());
+    /**
+     * The replication stream is written by the single NIO event loop.
+     */
+    private boolean rejectReplication() throws IOException {
+        if (Shards.isEnabled()) {
+            reply.error("replication is not supported with shards");
+            return true;
+        }
+        if (ServerInfo.getInstance().getServerMode() != ServerMode.NIO) {
+            reply.error("replication is not supported with virtual threads");
+            return true;
+        }
+        return false;
+    }
+
+    void info(Command command) throws IOException {
+        var section = command.getRequest().size() > 1 ? command.getKey().toString() : null;
+        if (Shards.isEnabled()) {
+            // reads the other shards while they are parked
+            ShardCoordinator.runExclusive(() -> reply.bulkString(ServerInfo.getInstance().getInfo(section)));
+            return;
+        }
+        reply.bulkString(ServerInfo.getInstance().getInfo(section));
+    }
+
+    void client(Command command) throws IOException {
+        var subcommand = command.getKey();
+        if (subcommand.equalsIgnoreCase("LIST")) {
+            var now = ServerClock.getInstance().millis();
+            var lines = new StringBuilder();
+            if (Shards.isEnabled()) {
+                // the clients of every loop, read while the other loops are parked
+                ShardCoordinator.runExclusive(() -> {
+                    for (int shardId = 0; shardId < Shards.count(); shardId++) {
+                        ShardCoordinator.withShard(shardId, () -> appendClients(lines, now));
+                    }
+                    reply.bulkString(lines.toString());
+                });
+                return;
+            }
+            reply.bulkString(appendClients(lines, now).toString());
+        } else if (subcommand.equalsIgnoreCase("ID")) {
+            reply.integer(conn.getId());
         } else {
-            response = Response.bulkString(ServerInfo.getInstance().getAllInfo());
+            reply.error("unknown subcommand '" + subcommand + "'. Try CLIENT LIST or CLIENT ID.");
         }
-        return List.of(response);
     }
 
-    private List<Response> discard(Command command) {
+    private static StringBuilder appendClients(StringBuilder lines, long nowMillis) {
+        for (var client : ClientRegistry.getInstance().getClients()) {
+            lines.append(client.getClientInfo(nowMillis)).append('\n');
+        }
+        return lines;
+    }
+
+    /**
+     * COMMAND, COMMAND INFO [name ...], COMMAND COUNT and COMMAND LIST, backed by the {@link CommandTable}.
+     */
+    void command(Command command) throws IOException {
+        var table = CommandTable.getInstance();
+        if (command.getRequest().size() == 1) {
+            reply.arrayHeader(table.size());
+            for (var spec : table.getAll()) {
+                spec.writeTo(reply);
+            }
+            return;
+        }
+        var subcommand = command.getKey();
+        if (subcommand.equalsIgnoreCase("INFO")) {
+            reply.arrayHeader(command.getData().size());
+            for (var name : command.getData()) {
+                var spec = table.lookup(name);
+                if (spec == null) {
+                    reply.nullBulk();
+                } else {
+                    spec.writeTo(reply);
+                }
+            }
+        } else if (subcommand.equalsIgnoreCase("COUNT")) {
+            reply.integer(table.size());
+        } else if (subcommand.equalsIgnoreCase("LIST")) {
+            reply.arrayHeader(table.size());
+            for (var spec : table.getAll()) {
+                reply.bulkString(spec.name());
+            }
+        } else {
+            reply.error("unknown subcommand '" + subcommand + "'. Try COMMAND INFO, COMMAND COUNT or COMMAND LIST.");
+        }
+    }
+
+    void discard(Command command) throws IOException {
         try {
             transactionCore.discard(command);
-            return List.of(Response.ok());
+            setInTransaction(false);
+            reply.ok();
         } catch (DiscardNoMultiException e) {
-            return List.of(Response.error("DISCARD without MULTI"));
+            reply.error("DISCARD without MULTI");
         }
     }
 
-    private List<Response> exec(Command command) throws IOException {
+    void exec(Command command) throws IOException {
+        final Queue<Command> commandQueue;
+        try {
+            commandQueue = transactionCore.exec(command);
+            setInTransaction(false);
+        } catch (ExecNoMultiException e) {
+            reply.error("EXEC without MULTI");
+            return;
+        }
+        if (Shards.isEnabled() && !commandQueue.isEmpty()) {
+            // atomic across shards: every other shard is parked until the last command ran
+            ShardCoordinator.runExclusive(() -> execQueued(commandQueue));
+        } else {
+            execQueued(commandQueue);
+        }
+        reply.resetError(); // EXEC itself succeeded whatever its commands replied
+    }
+
+    private void execQueued(Queue<Command> commandQueue) throws IOException {
+        // one reply per queued command, each command is propagated on its own
+        reply.arrayHeader(commandQueue.size());
+        runningExec = true;
         try {
-            var commandQueue = transactionCore.exec(command);
-            var responses = new ArrayList<Response>();
             while (!commandQueue.isEmpty()) {
-                var queuedCommand = commandQueue.poll();
-                var commandResponses = handleCommand(queuedCommand);
-                replicateIfOk(commandResponses, queuedCommand);
-                responses.addAll(commandResponses); // Collect all responses from nested commands
+                executeAndReplicate(commandQueue.poll());
             }
-            return List.of(Response.arrayResponse(responses));
-        } catch (ExecNoMultiException e) {
-            return List.of(Response.error("EXEC without MULTI"));
+        } finally {
+            runningExec = false;
         }
     }
 
-    private List<Response> multi(Command command) {
+    void multi(Command command) throws IOException {
         transactionCore.multi(command);
-        return List.of(Response.ok());
+        setInTransaction(true);
+        reply.ok();
+    }
+
+    /**
+     * The connection's own thread leaves the reads of a transaction to be queued, see {@link Conn#serveReads()}.
+     */
+    private void setInTransaction(boolean inTransaction) {
+        if (conn != null) {
+            conn.setInTransaction(inTransaction);
+        }
+    }
+
+    void incr(Command command) throws IOException {
+        incrBy(command.getKey(), 1);
+    }
+
+    void decr(Command command) throws IOException {
+        incrBy(command.getKey(), -1);
     }
 
-    private List<Response> incr(Command command) {
-        validateNumberOfArgs(command, 2);
+    void incrby(Command command) throws IOException {
+        final long delta;
+        try {
+            delta = command.getData().getFirst().toLong();
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+            return;
+        }
+        incrBy(command.getKey(), delta);
+    }
+
+    void decrby(Command command) throws IOException {
+        final long delta;
+        try {
+            delta = command.getData().getFirst().toLong();
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+            return;
+        }
+        if (delta == Long.MIN_VALUE) {
+            reply.error("decrement would overflow");
+            return;
+        }
+        incrBy(command.getKey(), -delta);
+    }
+
+    private void incrBy(ByteString key, long delta) throws IOException {
+        try {
+            reply.integer(redisStringCore.incrBy(key, delta));
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+        } catch (ArithmeticException e) {
+            reply.error("increment or decrement would overflow");
+        }
+    }
+
+    void incrbyfloat(Command command) throws IOException {
         var key = command.getKey();
+        final ByteString result;
         try {
-            var resp = redisStringCore.incr(key);
-            return List.of(Response.intValue(resp));
+            var delta = command.getData().getFirst().toFiniteDouble();
+            result = redisStringCore.incrByFloat(key, delta);
         } catch (NumberFormatException e) {
-            return List.of(Response.error("value is not an integer or out of range"));
+            reply.error("value is not a valid float");
+            return;
+        } catch (ArithmeticException e) {
+            reply.error(e.getMessage());
+            return;
         }
+        // replicas store the result, float arithmetic may differ between versions
+        command.propagateAs(List.of(SET, key, result, KEEPTTL));
+        reply.bulkString(result);
     }
 
-    private List<Response> blpop(Command command) {
-        validateNumberOfArgs(command, 2);
+    void blpop(Command command) throws IOException {
         var key = command.getKey();
-        var timeoutSeconds = command.getData().getFirst();
+        final double timeoutSeconds;
+        try {
+            timeoutSeconds = command.getData().getFirst().toFiniteDouble();
+        } catch (NumberFormatException e) {
+            reply.error("timeout is not a float or out of range");
+            return;
+        }
+        if (timeoutSeconds < 0) {
+            reply.error("timeout is negative");
+            return;
+        }
 
         final Request request;
-        if ("0".equals(timeoutSeconds)) { // Wait indefinitely
+        if (timeoutSeconds == 0) { // Wait indefinitely
             request = new Request(writer);
         } else {
-            var timeoutMillis = (long) (Double.parseDouble(timeoutSeconds) * 1000L);
-            request = new Request(writer, timeoutMillis);
+            request = new Request(writer, (long) (timeoutSeconds * 1000L));
         }
 
         var resp = redisListCore.lpop(key);
         if (resp != null) {
-            return List.of(Response.arrayString(List.of(key, resp)));
+            reply.bulkArray(List.of(key, resp));
+            return;
         }
 
-        var queue = REQUEST_QUEUE.computeIfAbsent(key, _ -> new ArrayDeque<>());
+        var requestQueue = REQUEST_QUEUES.get();
+        var queue = requestQueue.computeIfAbsent(key, _ -> new ArrayDeque<>());
         queue.add(request);
 
         // register to serverCron to handle client timeout
         TimeoutCron.getInstance().registerTimeout(request.getTtlMillis(), () -> {
             try {
-                if (REQUEST_QUEUE.get(key).contains(request)) {
+                if (requestQueue.get(key).contains(request)) {
                     RedisWriteProcessor.sendNull(writer);
-                    REQUEST_QUEUE.get(key).remove(request);
+                    requestQueue.get(key).remove(request);
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -202,99 +519,644 @@ public class RedisCoreHandler {
         throw new ConnSleepException();
     }
 
-    private List<Response> lpop(Command command) {
-        validateNumberOfArgs(command, 2);
+    void lpop(Command command) throws IOException {
         var key = command.getKey();
         if (command.getData().isEmpty()) {
-            return lpopSingleElement(command);
+            reply.bulkOrNull(redisListCore.lpop(key));
         } else {
-            return lpopMultipleElements(command, key);
+            var nPop = command.getData().getFirst().toInt();
+            reply.bulkArray(redisListCore.lpop(key, nPop));
         }
     }
 
-    private List<Response> lpopMultipleElements(Command command, String key) {
-        var nPop = Integer.parseInt(command.getData().getFirst());
-        var deletedList = redisListCore.lpop(key, nPop);
-        return List.of(Response.arrayString(deletedList));
-    }
-
-    private List<Response> lpopSingleElement(Command command) {
-        var resp = redisListCore.lpop(command.getKey());
-        var response = resp == null
-                ? Response.nullValue()
-                : Response.bulkString(resp);
-        return List.of(response);
-    }
-
-    private List<Response> llen(Command command) {
-        validateNumberOfArgs(command, 2);
+    void llen(Command command) throws IOException {
         var key = command.getKey();
-        var len = redisListCore.size(key);
-        return List.of(Response.intValue(len));
+        reply.integer(redisListCore.size(key));
     }
 
-    private List<Response> lrange(Command command) {
-        validateNumberOfArgs(command, 4);
+    void lrange(Command command) throws IOException {
         var key = command.getKey();
         var data = command.getData();
-        var startIdx = Integer.parseInt(data.getFirst());
-        var endIdx = Integer.parseInt(data.get(1));
-        var resp = redisListCore.lrange(key, startIdx, endIdx);
-        return List.of(Response.arrayString(resp));
+        var startIdx = data.getFirst().toInt();
+        var endIdx = data.get(1).toInt();
+        reply.bulkArray(redisListCore.lrange(key, startIdx, endIdx));
     }
 
-    private List<Response> lpush(Command command) throws IOException {
-        validateNumberOfArgs(command, 3);
+    void lpush(Command command) throws IOException {
         var key = command.getKey();
         var items = command.getData();
         var len = redisListCore.lpush(key, items);
         tryBlop(key);
-        return List.of(Response.intValue(len));
+        reply.integer(len);
     }
 
-    private List<Response> rpush(Command command) throws IOException {
-        validateNumberOfArgs(command, 3);
+    void rpush(Command command) throws IOException {
         var key = command.getKey();
         var items = command.getData();
         var len = redisListCore.rpush(key, items);
         tryBlop(key);
-        return List.of(Response.intValue(len));
+        reply.integer(len);
     }
 
-    private List<Response> ping(Command ignored) {
-        return List.of(Response.simpleString("PONG"));
+    void del(Command command) throws IOException {
+        int deleted = 0;
+        for (var key : command.getRequest().subList(1, command.getRequest().size())) {
+            if (onOwner(key, () -> RedisDb.getInstance().delete(key))) {
+                deleted++;
+            }
+        }
+        reply.integer(deleted);
     }
 
-    private List<Response> get(Command command) {
-        validateNumberOfArgs(command, 2);
+    void exists(Command command) throws IOException {
+        int existing = 0;
+        for (var key : command.getRequest().subList(1, command.getRequest().size())) {
+            if (onOwner(key, () -> RedisDb.getInstance().exists(key))) {
+                existing++;
+            }
+        }
+        reply.integer(existing);
+    }
+
+    void type(Command command) throws IOException {
+        var value = db.lookup(command.getKey());
+        reply.simpleString(value != null ? value.getType().typeName() : "none");
+    }
+
+    void rename(Command command) throws IOException {
         var key = command.getKey();
-        var value = redisStringCore.get(key);
-        var response = Optional.ofNullable(value)
-                .map(Response::bulkString)
-                .orElseGet(Response::nullValue);
-        return List.of(response);
+        var newKey = command.getData().getFirst();
+        var renamed = ShardCoordinator.isExclusive() && Shards.ownerOf(key) != Shards.ownerOf(newKey)
+                ? moveToShard(key, newKey)
+                : db.rename(key, newKey);
+        if (renamed) {
+            reply.ok();
+        } else {
+            reply.error("no such key");
+        }
+    }
+
+    /**
+     * RENAME to a key of another shard: the value is copied into the new key's shard, with its expiry, and the old
+     * key deleted, since a value may hold memory of its own shard, e.g. an off-heap slot.
+     *
+     * @return false if {@code key} does not exist
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean moveToShard(ByteString key, ByteString newKey) throws IOException {
+        RedisValue<?> value = onOwner(key, () -> RedisDb.getInstance().lookup(key));
+        if (value == null) {
+            return false;
+        }
+        onOwner(newKey, () -> {
+            if (value.getType() == RedisValue.Type.STRING) {
+                NonBlockingRedisStringCore.getInstance().set(newKey, (ByteString) value.getValue(), value.getExpiresAt());
+            } else {
+                var items = new ArrayList<>((List<ByteString>) value.getValue());
+                RedisDb.getInstance().put(newKey, new RedisValue<>(value.getType(), items, value.getExpiresAt()));
+            }
+            return null;
+        });
+        return onOwner(key, () -> RedisDb.getInstance().delete(key));
+    }
+
+    void dbsize(Command ignored) throws IOException {
+        if (!Shards.isEnabled()) {
+            reply.integer(db.size());
+            return;
+        }
+        ShardCoordinator.runExclusive(() -> {
+            long size = 0;
+            for (int shardId = 0; shardId < Shards.count(); shardId++) {
+                size += ShardCoordinator.withShard(shardId, () -> RedisDb.getInstance().size());
+            }
+            reply.integer(size);
+        });
+    }
+
+    /**
+     * SCAN cursor [MATCH pattern] [COUNT count] [TYPE type], see {@link RedisDb#scan}.
+     */
+    void scan(Command command) throws IOException {
+        final long cursor;
+        try {
+            cursor = command.getKey().toLong();
+        } catch (NumberFormatException e) {
+            reply.error("invalid cursor");
+            return;
+        }
+        // the table cursor is 32 bits, the shard, or 0 without shards, is above it
+        if (cursor < 0 || cursor >>> SHARD_CURSOR_SHIFT >= Shards.count()) {
+            reply.error("invalid cursor");
+            return;
+        }
+        var data = command.getData();
+        GlobPattern pattern = null;
+        RedisValue.Type type = null;
+        int count = DEFAULT_SCAN_COUNT;
+        try {
+            for (int i = 0; i < data.size(); i += 2) {
+                var option = data.get(i);
+                if (i + 1 == data.size()) {
+                    reply.error("syntax error");
+                    return;
+                }
+                var value = data.get(i + 1);
+                if (option.equalsIgnoreCase("MATCH")) {
+                    pattern = GlobPattern.compile(value);
+                } else if (option.equalsIgnoreCase("COUNT")) {
+                    count = value.toInt();
+                    if (count < 1) {
+                        reply.error("syntax error");
+                        return;
+                    }
+                } else if (option.equalsIgnoreCase("TYPE")) {
+                    type = RedisValue.Type.findByTypeName(value.toString());
+                    if (type == null) {
+                        reply.error("unknown type name '" + value + "'");
+                        return;
+                    }
+                } else {
+                    reply.error("syntax error");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+            return;
+        }
+        if (pattern != null && pattern.matchesAll()) {
+            pattern = null;
+        }
+
+        var keys = new ArrayList<ByteString>();
+        var next = scanKeys(cursor, count, pattern, type, keys);
+        reply.arrayHeader(2);
+        reply.bulkString(ByteString.of(Long.toUnsignedString(next)));
+        reply.bulkArray(keys);
+    }
+
+    /**
+     * One SCAN step. With shards the shards are scanned one after the other, the cursor holds the shard in its high
+     * bits; a shard done before {@code count} keys were found goes on with the next one.
+     */
+    private long scanKeys(long cursor, int count, GlobPattern pattern, RedisValue.Type type, List<ByteString> keys)
+            throws IOException {
+        if (!Shards.isEnabled()) {
+            return db.scan(cursor, count, pattern, type, keys);
+        }
+        var next = new long[]{cursor};
+        ShardCoordinator.runExclusive(() -> {
+            do {
+                var shardId = (int) (next[0] >>> SHARD_CURSOR_SHIFT);
+                var shardCursor = next[0] & SHARD_CURSOR_MASK;
+                var nextInShard = ShardCoordinator.withShard(shardId,
+                        () -> RedisDb.getInstance().scan(shardCursor, count, pattern, type, keys));
+                if (nextInShard != 0) {
+                    next[0] = (long) shardId << SHARD_CURSOR_SHIFT | nextInShard;
+                } else {
+                    next[0] = shardId + 1 < Shards.count() ? (long) (shardId + 1) << SHARD_CURSOR_SHIFT : 0;
+                }
+            } while (next[0] != 0 && (next[0] & SHARD_CURSOR_MASK) == 0 && keys.size() < count);
+        });
+        return next[0];
+    }
+
+    /**
+     * KEYS pattern, as SCAN steps within the client time budget. What is left once the budget is spent is run by
+     * {@link ScanCron}, a slice per event loop iteration, while the rest of the client's pipeline waits as for a
+     * request forwarded to another shard. Unlike Redis' KEYS the keys are not taken at one point in time: a key
+     * added or deleted meanwhile may or may not be returned. Inside EXEC it runs to the end at once.
+     */
+    void keys(Command command) throws IOException {
+        var scan = new KeysScan(GlobPattern.compile(command.getKey()));
+        // inside EXEC the reply is part of EXEC's, the client can't wait for it alone
+        var mayWait = conn != null && !runningExec;
+        while (!scan.runSlice()) {
+            if (mayWait) {
+                conn.setAwaitingRemote(true);
+                ScanCron.getInstance().submit(() -> resumeKeys(scan));
+                return;
+            }
+        }
+        reply.bulkArray(scan.keys());
+    }
+
+    /**
+     * Runs the next slice of a waiting KEYS, once done replies and resumes the client's pipeline.
+     *
+     * @return whether the KEYS is over
+     */
+    private boolean resumeKeys(KeysScan scan) {
+        if (conn.isWantClose() || !conn.getChannel().isOpen()) {
+            return true;
+        }
+        try {
+            if (!scan.runSlice()) {
+                return false;
+            }
+            reply.bulkArray(scan.keys());
+        } catch (IOException e) {
+            ClientRegistry.getInstance().closeAsync(conn);
+            return true;
+        }
+        conn.setAwaitingRemote(false);
+        ClientRegistry.getInstance().schedulePending(conn);
+        return true;
     }
 
-    private List<Response> set(Command command) {
-        validateNumberOfArgs(command, 3);
+    /**
+     * A KEYS between its slices.
+     */
+    private final class KeysScan {
+        private final GlobPattern pattern;
+        // a resize may return a key twice
+        private final Set<ByteString> keys = new LinkedHashSet<>();
+        private final List<ByteString> step = new ArrayList<>();
+        private long cursor = 0;
+        private boolean done = false;
+
+        private KeysScan(GlobPattern pattern) {
+            this.pattern = pattern.matchesAll() ? null : pattern;
+        }
+
+        /**
+         * @return whether the whole keyspace was walked
+         */
+        private boolean runSlice() throws IOException {
+            if (!done) {
+                if (Shards.isEnabled()) {
+                    // the other shards stay parked for the slice rather than once per step
+                    ShardCoordinator.runExclusive(this::scanSlice);
+                } else {
+                    scanSlice();
+                }
+            }
+            return done;
+        }
+
+        private void scanSlice() throws IOException {
+            var budgetMicros = ServerInfo.getInstance().getClientTimeBudgetMicros();
+            var deadlineNanos = System.nanoTime() + budgetMicros * 1000;
+            do {
+                cursor = scanKeys(cursor, KEYS_SCAN_COUNT, pattern, null, step);
+                keys.addAll(step);
+                step.clear();
+            } while (cursor != 0 && (budgetMicros == 0 || System.nanoTime() < deadlineNanos));
+            done = cursor == 0;
+        }
+
+        private List<ByteString> keys() {
+            return new ArrayList<>(keys);
+        }
+    }
+
+    /**
+     * OBJECT ENCODING key.
+     */
+    void object(Command command) throws IOException {
+        var subcommand = command.getKey();
+        if (!subcommand.equalsIgnoreCase("ENCODING") || command.getData().size() != 1) {
+            reply.error("unknown subcommand or wrong number of arguments for '" + subcommand + "'. Try OBJECT ENCODING.");
+            return;
+        }
+        var value = db.lookup(command.getData().getFirst());
+        if (value == null) {
+            reply.nullBulk();
+        } else {
+            reply.bulkString(value.getEncoding().encodingName());
+        }
+    }
+
+    /**
+     * MEMORY USAGE key [SAMPLES count]
+     */
+    void memory(Command command) throws IOException {
+        var subcommand = command.getKey();
+        var data = command.getData();
+        if (!subcommand.equalsIgnoreCase("USAGE") || data.isEmpty()) {
+            reply.error("unknown subcommand or wrong number of arguments for '" + subcommand + "'. Try MEMORY USAGE.");
+            return;
+        }
+        int samples = DEFAULT_MEMORY_SAMPLES;
+        if (data.size() == 3 && data.get(1).equalsIgnoreCase("SAMPLES")) {
+            try {
+                samples = data.get(2).toInt();
+            } catch (NumberFormatException e) {
+                reply.error("value is not an integer or out of range");
+                return;
+            }
+            if (samples < 0) {
+                reply.error("value is out of range, must be positive");
+                return;
+            }
+        } else if (data.size() != 1) {
+            reply.error("syntax error");
+            return;
+        }
+        var usage = db.memoryUsage(data.getFirst(), samples);
+        if (usage < 0) {
+            reply.nullBulk();
+        } else {
+            reply.integer(usage);
+        }
+    }
+
+    void ping(Command ignored) throws IOException {
+        reply.pong();
+    }
+
+    void get(Command command) throws IOException {
+        var value = redisStringCore.getValue(command.getKey());
+        if (value == null) {
+            reply.nullBulk();
+            return;
+        }
+        if (value instanceof RedisInteger integer) {
+            reply.bulkLong(integer.longValue()); // changes in place, nothing to cache
+            return;
+        }
+        if (value instanceof OffHeapString string) {
+            reply.bulkString(string.getSegment()); // kept off the heap, not cached either
+            return;
+        }
+        var frame = ReplyCache.getInstance().getOrEncode(value);
+        if (frame != null) {
+            reply.preEncoded(frame);
+        } else {
+            reply.bulkString(value.getValue());
+        }
+    }
+
+    /**
+     * SET key value [NX | XX] [GET] [EX seconds | PX milliseconds | EXAT unix-seconds | PXAT unix-milliseconds | KEEPTTL]
+     */
+    void set(Command command) throws IOException {
         var key = command.getKey();
         var data = command.getData();
         var value = data.getFirst();
-        int pxIdx = findStringIgnoreCase(data, "px", 1);
-        if (pxIdx == -1) {
-            redisStringCore.set(key, value);
+        boolean nx = false, xx = false, get = false, keepTtl = false, hasExpiry = false;
+        long expiresAt = RedisValue.NO_EXPIRY;
+        try {
+            for (int i = 1; i < data.size(); i++) {
+                var option = data.get(i);
+                if (option.equalsIgnoreCase("NX") && !xx) {
+                    nx = true;
+                } else if (option.equalsIgnoreCase("XX") && !nx) {
+                    xx = true;
+                } else if (option.equalsIgnoreCase("GET")) {
+                    get = true;
+                } else if (option.equalsIgnoreCase("KEEPTTL") && !hasExpiry) {
+                    keepTtl = true;
+                } else if (isExpiryOption(option) && !hasExpiry && !keepTtl && i + 1 < data.size()) {
+                    hasExpiry = true;
+                    expiresAt = toExpiresAt(option, data.get(++i), "set");
+                } else {
+                    reply.error("syntax error");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+            return;
+        } catch (IllegalArgumentException e) {
+            reply.error(e.getMessage());
+            return;
+        }
+
+        var current = db.lookup(key);
+        if (get && current != null && current.getType() != RedisValue.Type.STRING) {
+            throw new WrongTypeException();
+        }
+        var previous = get && current != null ? (ByteString) current.getValue() : null;
+        if ((nx && current != null) || (xx && current == null)) {
+            command.propagateNothing();
+            if (get) {
+                reply.bulkOrNull(previous);
+            } else {
+                reply.nullBulk();
+            }
+            return;
+        }
+        if (keepTtl && current != null) {
+            expiresAt = current.getExpiresAt();
+        }
+        redisStringCore.set(key, value, expiresAt);
+
+        // replicas apply the outcome: no condition to check again and an absolute deadline
+        if (expiresAt == RedisValue.NO_EXPIRY) {
+            command.propagateAs(List.of(SET, key, value));
+        } else {
+            command.propagateAs(List.of(SET, key, value, PXAT, ByteString.of(String.valueOf(expiresAt))));
+        }
+        if (get) {
+            reply.bulkOrNull(previous);
+        } else {
+            reply.ok();
+        }
+    }
+
+    /**
+     * GETEX key [EX seconds | PX milliseconds | EXAT unix-seconds | PXAT unix-milliseconds | PERSIST]
+     */
+    void getex(Command command) throws IOException {
+        var key = command.getKey();
+        var data = command.getData();
+        boolean persist = false, hasExpiry = false;
+        long expiresAt = RedisValue.NO_EXPIRY;
+        try {
+            for (int i = 0; i < data.size(); i++) {
+                var option = data.get(i);
+                if (option.equalsIgnoreCase("PERSIST") && !hasExpiry) {
+                    persist = true;
+                } else if (isExpiryOption(option) && !hasExpiry && !persist && i + 1 < data.size()) {
+                    hasExpiry = true;
+                    expiresAt = toExpiresAt(option, data.get(++i), "getex");
+                } else {
+                    reply.error("syntax error");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+            return;
+        } catch (IllegalArgumentException e) {
+            reply.error(e.getMessage());
+            return;
+        }
+
+        var value = redisStringCore.getValue(key);
+        command.propagateNothing();
+        if (value == null) {
+            reply.nullBulk();
+            return;
+        }
+        reply.bulkString(value.getValue());
+        if (hasExpiry) {
+            applyExpiry(command, key, value, expiresAt);
+        } else if (persist && value.isVolatile()) {
+            db.setExpiry(key, value, RedisValue.NO_EXPIRY);
+            command.propagateAs(List.of(PERSIST, key));
+        }
+    }
+
+    void expire(Command command) throws IOException {
+        expireGeneric(command, 1000, true);
+    }
+
+    void pexpire(Command command) throws IOException {
+        expireGeneric(command, 1, true);
+    }
+
+    void expireat(Command command) throws IOException {
+        expireGeneric(command, 1000, false);
+    }
+
+    void pexpireat(Command command) throws IOException {
+        expireGeneric(command, 1, false);
+    }
+
+    /**
+     * [P]EXPIRE[AT] key time [NX | XX | GT | LT]
+     */
+    private void expireGeneric(Command command, long unitMillis, boolean relative) throws IOException {
+        var key = command.getKey();
+        var data = command.getData();
+        boolean nx = false, xx = false, gt = false, lt = false;
+        for (var option : data.subList(1, data.size())) {
+            if (option.equalsIgnoreCase("NX")) {
+                nx = true;
+            } else if (option.equalsIgnoreCase("XX")) {
+                xx = true;
+            } else if (option.equalsIgnoreCase("GT")) {
+                gt = true;
+            } else if (option.equalsIgnoreCase("LT")) {
+                lt = true;
+            } else {
+                reply.error("Unsupported option " + option);
+                return;
+            }
+        }
+        if (nx && (xx || gt || lt)) {
+            reply.error("NX and XX, GT or LT options at the same time are not compatible");
+            return;
+        }
+        if (gt && lt) {
+            reply.error("GT and LT options at the same time are not compatible");
+            return;
+        }
+
+        long expiresAt;
+        try {
+            var amount = data.getFirst().toLong();
+            expiresAt = Math.multiplyExact(amount, unitMillis);
+            if (relative) {
+                expiresAt = Math.addExact(expiresAt, ServerClock.getInstance().millis());
+            }
+        } catch (NumberFormatException e) {
+            reply.error("value is not an integer or out of range");
+            return;
+        } catch (ArithmeticException e) {
+            reply.error("invalid expire time in '" + command.getSpec().name() + "' command");
+            return;
+        }
+
+        command.propagateNothing();
+        var value = db.lookup(key);
+        if (value == null) {
+            reply.integer(0);
+            return;
+        }
+        // a key without TTL counts as an infinite TTL for GT and LT
+        var current = value.isVolatile() ? value.getExpiresAt() : Long.MAX_VALUE;
+        if ((nx && value.isVolatile()) || (xx && !value.isVolatile())
+                || (gt && expiresAt <= current) || (lt && expiresAt >= current)) {
+            reply.integer(0);
+            return;
+        }
+        applyExpiry(command, key, value, expiresAt);
+        reply.integer(1);
+    }
+
+    /**
+     * Sets an absolute expiry, a deadline already past deletes the key. Replicas get the absolute deadline.
+     */
+    private void applyExpiry(Command command, ByteString key, RedisValue<?> value, long expiresAt) {
+        if (expiresAt <= ServerClock.getInstance().millis()) {
+            db.delete(key);
+            command.propagateAs(List.of(DEL, key));
         } else {
-            redisStringCore.set(key, value, Long.parseLong(data.get(pxIdx + 1)));
+            db.setExpiry(key, value, expiresAt);
+            command.propagateAs(List.of(PEXPIREAT, key, ByteString.of(String.valueOf(expiresAt))));
+        }
+    }
+
+    void ttl(Command command) throws IOException {
+        reply.integer(remainingMillis(command.getKey(), 1000));
+    }
+
+    void pttl(Command command) throws IOException {
+        reply.integer(remainingMillis(command.getKey(), 1));
+    }
+
+    /**
+     * The remaining time to live in the unit, rounded, -1 for a key without TTL and -2 for a missing key.
+     */
+    private long remainingMillis(ByteString key, long unitMillis) {
+        var value = db.lookup(key);
+        if (value == null) {
+            return -2;
+        }
+        if (!value.isVolatile()) {
+            return -1;
+        }
+        var remaining = Math.max(0, value.getExpiresAt() - ServerClock.getInstance().millis());
+        return (remaining + unitMillis / 2) / unitMillis;
+    }
+
+    void persist(Command command) throws IOException {
+        var key = command.getKey();
+        var value = db.lookup(key);
+        if (value == null || !value.isVolatile()) {
+            command.propagateNothing();
+            reply.integer(0);
+            return;
+        }
+        db.setExpiry(key, value, RedisValue.NO_EXPIRY);
+        reply.integer(1);
+    }
+
+    private static boolean isExpiryOption(ByteString option) {
+        return option.equalsIgnoreCase("EX") || option.equalsIgnoreCase("PX")
+                || option.equalsIgnoreCase("EXAT") || option.equalsIgnoreCase("PXAT");
+    }
+
+    /**
+     * The absolute expiry in milliseconds for EX, PX, EXAT or PXAT and its argument.
+     *
+     * @throws NumberFormatException    if the argument is not an integer
+     * @throws IllegalArgumentException if the time is not positive or overflows
+     */
+    private static long toExpiresAt(ByteString option, ByteString argument, String commandName) {
+        var amount = argument.toLong();
+        var seconds = option.equalsIgnoreCase("EX") || option.equalsIgnoreCase("EXAT");
+        var relative = option.equalsIgnoreCase("EX") || option.equalsIgnoreCase("PX");
+        try {
+            if (amount <= 0) {
+                throw new ArithmeticException();
+            }
+            var millis = seconds ? Math.multiplyExact(amount, 1000) : amount;
+            return relative ? Math.addExact(millis, ServerClock.getInstance().millis()) : millis;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("invalid expire time in '" + commandName + "' command");
         }
-        return List.of(Response.ok());
     }
 
-    private List<Response> echo(Command command) {
-        validateNumberOfArgs(command, 2);
-        return List.of(Response.bulkString(command.getKey()));
+    void echo(Command command) throws IOException {
+        reply.bulkString(command.getKey());
     }
 
-    public int findStringIgnoreCase(List<String> list, String str, int startIdx) {
+    public int findStringIgnoreCase(List<ByteString> list, String str, int startIdx) {
         for (int i = startIdx; i < list.size(); i++) {
             if (list.get(i).equalsIgnoreCase(str)) {
                 return i;
@@ -309,8 +1171,8 @@ public class RedisCoreHandler {
         }
     }
 
-    private void tryBlop(String key) throws IOException {
-        var queue = REQUEST_QUEUE.get(key);
+    private void tryBlop(ByteString key) throws IOException {
+        var queue = REQUEST_QUEUES.get().get(key);
         if (queue == null) {
             return;
         }
@@ -330,10 +1192,10 @@ public class RedisCoreHandler {
                 break;
             }
 
-            RedisWriteProcessor.sendArray(writer, List.of(key, value));
+            RedisWriteProcessor.sendBulkArray(writer, List.of(key, value));
             queue.poll();
 
-            replicateData(new Command(writer.getId(), List.of("LPOP", key)));
+            replicateData(new Command(writer.getId(), List.of(LPOP, key)));
         }
     }
 }
\ No newline at end of file
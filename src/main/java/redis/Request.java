@@ -1,5 +1,6 @@
 package redis;
 
+import server.info.ServerClock;
 import stream.Writer;
 
 public class Request {
@@ -11,20 +12,20 @@ public class Request {
 
     public Request(Writer writer, long ttlMillis) {
         this.writer = writer;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = ServerClock.getInstance().millis();
         this.ttlMillis = ttlMillis;
         this.deadline = timestamp + ttlMillis;
     }
 
     public Request(Writer writer) {
         this.writer = writer;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = ServerClock.getInstance().millis();
         this.ttlMillis = DEFAULT_TIMEOUT;
         this.deadline = this.timestamp + DEFAULT_TIMEOUT;
     }
 
     public boolean isTimeout() {
-        return System.currentTimeMillis() >= this.deadline;
+        return ServerClock.getInstance().millis() >= this.deadline;
     }
 
     public Writer getWriter() {
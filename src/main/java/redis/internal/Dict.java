@@ -0,0 +1,388 @@
+package redis.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Hash table of the keyspace: open addressing with linear probing over parallel arrays, so an entry costs a few
+ * array slots instead of a {@code HashMap.Node}.
+ * <p>
+ * Growing or shrinking never copies the whole table at once. Like Redis' dict, a resize allocates the new table and
+ * keeps the old one around while its entries are moved over a few slots at a time: by every operation on the table
+ * and by {@link #rehashUntil(long)} from the cron. Until then lookups check both tables.
+ * <p>
+ * Not thread safe, only used from the event loop.
+ */
+public class Dict<K, V> {
+    private static final int INITIAL_CAPACITY = 16;
+    // old-table slots moved by each operation while rehashing, a resize is done long before the new table fills up
+    private static final int REHASH_STEP = 16;
+    // the old table only ever loses entries, a migrated or deleted slot becomes a tombstone to keep probe chains intact
+    private static final Object TOMBSTONE = new Object();
+    // a random key looks at most this many slots from each of at most that many random slots
+    private static final int RANDOM_PROBES = 16;
+    private static final int RANDOM_ATTEMPTS = 16;
+
+    // where entries are added, the only table unless rehashing
+    private Table main = new Table(INITIAL_CAPACITY);
+    // the table being drained into main, null unless rehashing
+    private Table old;
+    private int rehashIdx;
+    private int size;
+
+    private long resizes;
+    private long rehashedEntries;
+
+    public V get(K key) {
+        rehashStep();
+        int hash = hash(key);
+        int slot = main.find(key, hash);
+        if (slot >= 0) {
+            return main.valueAt(slot);
+        }
+        if (old != null) {
+            slot = old.find(key, hash);
+            if (slot >= 0) {
+                return old.valueAt(slot);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the previous value, or null
+     */
+    public V put(K key, V value) {
+        rehashStep();
+        int hash = hash(key);
+        int slot = main.find(key, hash);
+        if (slot >= 0) {
+            V previous = main.valueAt(slot);
+            main.values[slot] = value;
+            return previous;
+        }
+        V previous = null;
+        if (old != null) {
+            slot = old.find(key, hash);
+            if (slot >= 0) {
+                previous = old.valueAt(slot);
+                old.bury(slot);
+                size--;
+            }
+        }
+        if (main.isFull()) {
+            grow();
+        }
+        main.insert(key, hash, value);
+        size++;
+        return previous;
+    }
+
+    /**
+     * @return the removed value, or null
+     */
+    public V remove(K key) {
+        rehashStep();
+        int hash = hash(key);
+        int slot = main.find(key, hash);
+        if (slot >= 0) {
+            V previous = main.valueAt(slot);
+            main.delete(slot);
+            size--;
+            return previous;
+        }
+        if (old != null) {
+            slot = old.find(key, hash);
+            if (slot >= 0) {
+                V previous = old.valueAt(slot);
+                old.bury(slot);
+                size--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A key picked at random, or null if empty. Keys after long runs of empty slots are more likely, which is good
+     * enough for sampling.
+     * <p>
+     * The cost is bounded: while rehashing, the table is picked by the share of entries it holds and the old one is
+     * only probed from {@code rehashIdx} on, the slots before are drained. A table so sparse that no key is found
+     * within a few hundred slots returns null as well, until the cron shrinks it.
+     */
+    @SuppressWarnings("unchecked")
+    public K randomKey() {
+        if (size == 0) {
+            return null;
+        }
+        rehashStep();
+        var random = ThreadLocalRandom.current();
+        int oldEntries = old != null ? size - main.used : 0;
+        for (int attempt = 0; attempt < RANDOM_ATTEMPTS; attempt++) {
+            var key = random.nextInt(size) < oldEntries
+                    ? old.randomKey(random, rehashIdx, RANDOM_PROBES)
+                    : main.randomKey(random, 0, RANDOM_PROBES);
+            if (key != null) {
+                return (K) key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands the keys of one bucket to the consumer, like Redis' dictScan: a bucket is every entry whose home slot,
+     * its hash masked by the table size, is the cursor's. Linear probing keeps such entries in the run of used slots
+     * starting at the home slot, whatever was deleted since.
+     * <p>
+     * The cursor counts over the home slots with its bits reversed, the highest bit of the mask first. Resizing only
+     * adds or drops high bits of the home slots, so the buckets already visited map onto buckets before the cursor
+     * in the resized table: a key present during the whole scan is returned at least once however the table is
+     * resized in between, possibly more than once after a shrink. While rehashing, the smaller table's bucket is
+     * visited together with every bucket of the larger table it splits into.
+     * <p>
+     * Reads only, the table must not change while the consumer runs.
+     *
+     * @return the next cursor, 0 once every bucket was visited
+     */
+    @SuppressWarnings("unchecked")
+    public int scan(int cursor, Consumer<? super K> consumer) {
+        if (size == 0) {
+            return 0;
+        }
+        var keyConsumer = (Consumer<Object>) consumer;
+        if (old == null) {
+            main.forEachHomedAt(cursor & main.mask, keyConsumer);
+            return nextCursor(cursor, main.mask);
+        }
+        var small = old.mask < main.mask ? old : main;
+        var large = small == old ? main : old;
+        small.forEachHomedAt(cursor & small.mask, keyConsumer);
+        do {
+            large.forEachHomedAt(cursor & large.mask, keyConsumer);
+            cursor = nextCursor(cursor, large.mask);
+            // the buckets of the larger table the smaller one's bucket splits into differ in the bits between masks
+        } while ((cursor & (small.mask ^ large.mask)) != 0);
+        return cursor;
+    }
+
+    /**
+     * Increments the reversed bits of the cursor under the mask, 0 after the last bucket.
+     */
+    private static int nextCursor(int cursor, int mask) {
+        cursor |= ~mask;
+        return Integer.reverse(Integer.reverse(cursor) + 1);
+    }
+
+    public boolean isRehashing() {
+        return old != null;
+    }
+
+    /**
+     * Slots of the tables, i.e. the memory they hold whatever the number of entries.
+     */
+    public long capacity() {
+        return main.keys.length + (old != null ? old.keys.length : 0);
+    }
+
+    public long getResizes() {
+        return resizes;
+    }
+
+    public long getRehashedEntries() {
+        return rehashedEntries;
+    }
+
+    /**
+     * Starts shrinking the table once it is mostly empty, e.g. after many deletes. Called from the cron so that a
+     * burst of deletes does not start and finish a resize on its own.
+     */
+    public void tryShrink() {
+        if (old == null && main.keys.length > INITIAL_CAPACITY && size < main.keys.length / 8) {
+            startRehash(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) << 2));
+        }
+    }
+
+    /**
+     * Moves entries to the new table until the resize is done or the deadline passes.
+     *
+     * @return whether a resize is still in progress
+     */
+    public boolean rehashUntil(long deadlineNanos) {
+        while (old != null && System.nanoTime() < deadlineNanos) {
+            for (int i = 0; i < 100 && old != null; i++) {
+                rehashStep();
+            }
+        }
+        return old != null;
+    }
+
+    private void grow() {
+        if (old != null) {
+            // the new table filled up before the old one was drained, e.g. a flood of inserts right after a shrink
+            // started: finish at once into a table that holds both
+            var target = new Table(Math.max(main.keys.length * 2, Integer.highestOneBit(size) << 2));
+            main.moveTo(target);
+            old.moveTo(target);
+            main = target;
+            old = null;
+            resizes++;
+            return;
+        }
+        startRehash(main.keys.length * 2);
+    }
+
+    private void startRehash(int capacity) {
+        old = main;
+        main = new Table(capacity);
+        rehashIdx = 0;
+        resizes++;
+    }
+
+    private void rehashStep() {
+        if (old == null) {
+            return;
+        }
+        int end = Math.min(rehashIdx + REHASH_STEP, old.keys.length);
+        for (; rehashIdx < end; rehashIdx++) {
+            var key = old.keys[rehashIdx];
+            if (key != null && key != TOMBSTONE) {
+                if (main.isFull()) {
+                    grow(); // finishes the resize
+                    return;
+                }
+                main.insert(key, old.hashes[rehashIdx], old.valueAt(rehashIdx));
+                old.bury(rehashIdx);
+                rehashedEntries++;
+            }
+        }
+        if (rehashIdx == old.keys.length) {
+            old = null;
+        }
+    }
+
+    private static int hash(Object key) {
+        // spread the bits, linear probing clusters badly on sequential hash codes
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Table {
+        private final Object[] keys;
+        private final Object[] values;
+        private final int[] hashes;
+        private final int mask;
+        private int used;
+
+        private Table(int capacity) {
+            keys = new Object[capacity];
+            values = new Object[capacity];
+            hashes = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private boolean isFull() {
+            // load factor 0.75
+            return (used + 1) * 4L > keys.length * 3L;
+        }
+
+        private int find(Object key, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                var k = keys[slot];
+                if (k == null) {
+                    return -1;
+                }
+                if (k != TOMBSTONE && hashes[slot] == hash && k.equals(key)) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * Adds a key known to be absent.
+         */
+        private void insert(Object key, int hash, Object value) {
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            hashes[slot] = hash;
+            used++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> V valueAt(int slot) {
+            return (V) values[slot];
+        }
+
+        /**
+         * Deletes by shifting the rest of the probe chain back, so the table never accumulates tombstones.
+         */
+        private void delete(int slot) {
+            int hole = slot;
+            for (int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+                int home = hashes[next] & mask;
+                // the entry may fill the hole if its home slot is not between the hole and its current slot
+                boolean movable = hole <= next
+                        ? home <= hole || home > next
+                        : home <= hole && home > next;
+                if (movable) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hashes[hole] = hashes[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = null;
+            values[hole] = null;
+            used--;
+        }
+
+        /**
+         * The first key from a random slot of {@code [from, capacity)} on, wrapping around within that range, or null
+         * if none is found within {@code probes} slots.
+         */
+        private Object randomKey(ThreadLocalRandom random, int from, int probes) {
+            int span = keys.length - from;
+            int slot = from + random.nextInt(span);
+            for (int i = Math.min(probes, span); i > 0; i--) {
+                var key = keys[slot];
+                if (key != null && key != TOMBSTONE) {
+                    return key;
+                }
+                slot = slot + 1 < keys.length ? slot + 1 : from;
+            }
+            return null;
+        }
+
+        /**
+         * The keys whose home slot is {@code home}. A run always ends on an empty slot, the load factor leaves some.
+         */
+        private void forEachHomedAt(int home, Consumer<Object> consumer) {
+            for (int slot = home; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] != TOMBSTONE && (hashes[slot] & mask) == home) {
+                    consumer.accept(keys[slot]);
+                }
+            }
+        }
+
+        private void moveTo(Table target) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null && keys[slot] != TOMBSTONE) {
+                    target.insert(keys[slot], hashes[slot], values[slot]);
+                }
+            }
+        }
+
+        private void bury(int slot) {
+            keys[slot] = TOMBSTONE;
+            values[slot] = null;
+        }
+    }
+}
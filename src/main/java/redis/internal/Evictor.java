@@ -0,0 +1,199 @@
+package redis.internal;
+
+import redis.ByteString;
+import server.info.MaxMemoryPolicy;
+import server.info.ServerClock;
+import server.info.ServerInfo;
+import server.info.ServerStats;
+import server.shard.Shards;
+import server.shard.ShardLocal;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Evicts keys while the dataset is above {@code maxmemory}, with Redis' approximations:
+ * <ul>
+ *     <li>every value keeps 24 bits of access data, the last access in seconds for LRU policies, or the last
+ *     decrement time in minutes (16 bits) and a logarithmic access counter (8 bits) for LFU policies;</li>
+ *     <li>each eviction samples a few keys into a small pool sorted by idleness, the idlest key of the pool is
+ *     evicted, so good candidates found by earlier samples are kept.</li>
+ * </ul>
+ */
+public class Evictor {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<Evictor> INSTANCE = new ShardLocal<>(Evictor::new);
+
+    private Evictor() {
+    }
+
+    public static Evictor getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private static final int LRU_CLOCK_MAX = (1 << 24) - 1;
+    private static final long LRU_CLOCK_RESOLUTION_MILLIS = 1000;
+    private static final int LFU_INIT_VAL = 5;
+    private static final int LFU_COUNTER_MAX = 255;
+    private static final int LFU_MINUTES_MAX = 65535;
+    private static final int POOL_SIZE = 16;
+
+    // sorted by ascending idleness, the best candidate is the rightmost
+    private final long[] poolIdle = new long[POOL_SIZE];
+    private final ByteString[] poolKeys = new ByteString[POOL_SIZE];
+    private int poolSize = 0;
+
+    /**
+     * The access data of a new value.
+     */
+    static int initialLru() {
+        return isLfu() ? (lfuMinutes() << 8) | LFU_INIT_VAL : lruClock();
+    }
+
+    /**
+     * Records an access to the value.
+     */
+    static void touch(RedisValue<?> value) {
+        if (isLfu()) {
+            var counter = logIncr(decrAndGet(value.getLru()));
+            value.setLru((lfuMinutes() << 8) | counter);
+        } else {
+            value.setLru(lruClock());
+        }
+    }
+
+    /**
+     * Evicts keys until the dataset is back under {@code maxmemory}.
+     *
+     * @return false if it is still above because the policy forbids evicting or no candidate is left
+     */
+    public boolean performEvictions() {
+        var info = ServerInfo.getInstance();
+        var db = RedisDb.getInstance();
+        // with shards, each one keeps its data under its share of the limit
+        var maxMemory = info.getMaxMemory() / Shards.count();
+        // a replica ignores maxmemory, its keys go with the DEL its master propagates for each eviction
+        if (maxMemory == 0 || info.isReplica() || db.usedMemory() <= maxMemory) {
+            return true;
+        }
+        var policy = info.getMaxMemoryPolicy();
+        if (policy == MaxMemoryPolicy.NOEVICTION) {
+            return false;
+        }
+        while (db.usedMemory() > maxMemory) {
+            var key = policy.isRandom()
+                    ? db.randomKey(policy.isVolatileOnly())
+                    : bestCandidate(db, policy, info.getMaxMemorySamples());
+            if (key == null) {
+                return false;
+            }
+            db.evict(key);
+            ServerStats.getInstance().incrEvictedKeys();
+        }
+        return true;
+    }
+
+    private ByteString bestCandidate(RedisDb db, MaxMemoryPolicy policy, int samples) {
+        for (int i = 0; i < samples; i++) {
+            var key = db.randomKey(policy.isVolatileOnly());
+            if (key == null) {
+                break;
+            }
+            var value = db.peek(key);
+            addToPool(key, idleness(value, policy));
+        }
+        // the idlest pooled key that still exists, it may have been deleted since it was pooled
+        while (poolSize > 0) {
+            var key = poolKeys[--poolSize];
+            poolKeys[poolSize] = null;
+            if (db.peek(key) != null) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private void addToPool(ByteString key, long idle) {
+        for (int i = 0; i < poolSize; i++) {
+            if (poolKeys[i].equals(key)) {
+                return; // sampled again
+            }
+        }
+        int pos = 0;
+        while (pos < poolSize && poolIdle[pos] < idle) {
+            pos++;
+        }
+        if (poolSize == POOL_SIZE) {
+            if (pos == 0) {
+                return; // less idle than every pooled key
+            }
+            // drop the least idle key to make room
+            System.arraycopy(poolIdle, 1, poolIdle, 0, pos - 1);
+            System.arraycopy(poolKeys, 1, poolKeys, 0, pos - 1);
+            pos--;
+        } else {
+            System.arraycopy(poolIdle, pos, poolIdle, pos + 1, poolSize - pos);
+            System.arraycopy(poolKeys, pos, poolKeys, pos + 1, poolSize - pos);
+            poolSize++;
+        }
+        poolIdle[pos] = idle;
+        poolKeys[pos] = key;
+    }
+
+    /**
+     * The higher, the better a candidate for eviction.
+     */
+    private static long idleness(RedisValue<?> value, MaxMemoryPolicy policy) {
+        if (policy == MaxMemoryPolicy.VOLATILE_TTL) {
+            return Long.MAX_VALUE - value.getExpiresAt(); // the sooner it expires
+        }
+        if (policy.isLfu()) {
+            return LFU_COUNTER_MAX - decrAndGet(value.getLru()); // the less frequently used
+        }
+        var clock = lruClock();
+        var lru = value.getLru();
+        var elapsed = clock >= lru ? clock - lru : clock + (LRU_CLOCK_MAX - lru); // the clock wrapped around
+        return elapsed * LRU_CLOCK_RESOLUTION_MILLIS;
+    }
+
+    private static boolean isLfu() {
+        return ServerInfo.getInstance().getMaxMemoryPolicy().isLfu();
+    }
+
+    private static int lruClock() {
+        return (int) ((ServerClock.getInstance().millis() / LRU_CLOCK_RESOLUTION_MILLIS) & LRU_CLOCK_MAX);
+    }
+
+    private static int lfuMinutes() {
+        return (int) ((ServerClock.getInstance().millis() / 60_000) & LFU_MINUTES_MAX);
+    }
+
+    /**
+     * The counter decremented by one per {@code lfu-decay-time} minutes since it was last decremented.
+     */
+    private static int decrAndGet(int lru) {
+        var lastMinutes = lru >>> 8;
+        var counter = lru & 0xFF;
+        var decayTime = ServerInfo.getInstance().getLfuDecayTime();
+        if (decayTime == 0) {
+            return counter;
+        }
+        var now = lfuMinutes();
+        var elapsed = now >= lastMinutes ? now - lastMinutes : LFU_MINUTES_MAX - lastMinutes + now;
+        var periods = elapsed / decayTime;
+        return periods > counter ? 0 : counter - periods;
+    }
+
+    /**
+     * Increments the counter with a probability that falls as it grows, so 8 bits count up to millions of accesses.
+     */
+    private static int logIncr(int counter) {
+        if (counter == LFU_COUNTER_MAX) {
+            return counter;
+        }
+        var base = Math.max(0, counter - LFU_INIT_VAL);
+        var p = 1.0 / (base * ServerInfo.getInstance().getLfuLogFactor() + 1);
+        return ThreadLocalRandom.current().nextDouble() < p ? counter + 1 : counter;
+    }
+}
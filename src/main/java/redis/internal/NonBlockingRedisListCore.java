@@ -1,74 +1,84 @@
 package redis.internal;
 
+import redis.ByteString;
+import server.shard.ShardLocal;
+
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
+/**
+ * Lists are mutable {@link ArrayList}s updated in place, so a push or pop costs one keyspace lookup and keeps the
+ * key's expiry.
+ */
 public class NonBlockingRedisListCore implements RedisListCore {
-    private static final HashMap<String, RedisValue<List<String>>> DATA = new HashMap<>();
+    private static final ShardLocal<RedisListCore> INSTANCE = new ShardLocal<>(NonBlockingRedisListCore::new);
 
-    private static final RedisListCore INSTANCE = new NonBlockingRedisListCore();
+    private final RedisDb db = RedisDb.getInstance();
 
     public static RedisListCore getInstance() {
-        return INSTANCE;
+        return INSTANCE.get();
     }
 
     @Override
-    public int rpush(String key, List<String> items) {
-        var list = getValueInternal(key);
+    public int rpush(ByteString key, List<ByteString> items) {
+        var list = getOrCreate(key);
         list.addAll(items);
-        DATA.put(key, new RedisValue<>(list));
-        return size(key);
+        db.adjustDatasetMemory(ObjectSize.ofElements(items));
+        db.modified(key);
+        return list.size();
     }
 
     @Override
-    public int lpush(String key, List<String> items) {
-        var updatedList = new ArrayList<>(items.reversed());
-        var list = getValueInternal(key);
-        updatedList.addAll(list);
-        DATA.put(key, new RedisValue<>(updatedList));
-        return size(key);
+    public int lpush(ByteString key, List<ByteString> items) {
+        var list = getOrCreate(key);
+        list.addAll(0, items.reversed());
+        db.adjustDatasetMemory(ObjectSize.ofElements(items));
+        db.modified(key);
+        return list.size();
     }
 
-
-    List<String> getValueInternal(String key) {
-        var redisValue = DATA.get(key);
-        if (redisValue == null) {
-            return new ArrayList<>();
-        }
-
-        if (redisValue.isExpired()) {
-            DATA.remove(key);
-            return new ArrayList<>();
+    private List<ByteString> getOrCreate(ByteString key) {
+        var list = getValueInternal(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            db.put(key, new RedisValue<>(RedisValue.Type.LIST, list));
         }
+        return list;
+    }
 
-        return redisValue.getValue();
+    /**
+     * The stored list itself, or null if the key does not exist.
+     */
+    List<ByteString> getValueInternal(ByteString key) {
+        RedisValue<List<ByteString>> redisValue = db.lookup(key, RedisValue.Type.LIST);
+        return redisValue != null ? redisValue.getValue() : null;
     }
 
+    @Override
+    public List<ByteString> getValue(ByteString key) {
+        var list = getValueInternal(key);
+        return list != null ? List.copyOf(list) : new ArrayList<>();
+    }
 
     @Override
-    public List<String> getValue(String key) {
-        var redisValue = DATA.get(key);
-        if (redisValue == null) {
-            return new ArrayList<>();
+    public List<ByteString> lrange(ByteString key, int startIdx, int endIdx) {
+        var list = getValueInternal(key);
+        if (list == null) {
+            return List.of();
         }
-
-        if (redisValue.isExpired()) {
-            DATA.remove(key);
-            return new ArrayList<>();
+        if (ReadView.isEnabled()) {
+            ReadView.getInstance().captureList(key); // the next LRANGE can be answered by a reader thread
         }
-        return List.copyOf(redisValue.getValue());
+        return range(list, startIdx, endIdx);
     }
 
-    @Override
-    public List<String> lrange(String key, int startIdx, int endIdx) {
+    /**
+     * The elements from {@code startIdx} to {@code endIdx} included, negative indexes counting from the end.
+     */
+    static List<ByteString> range(List<ByteString> list, int startIdx, int endIdx) {
         if (endIdx >= 0 && startIdx > endIdx) {
             return List.of();
         }
-        var list = getValueInternal(key);
-        if (list.isEmpty()) {
-            return List.of();
-        }
         var start = (startIdx >= 0) ? startIdx : Math.max(0, list.size() + startIdx);
         var end = (endIdx >= 0) ? Math.min(list.size() - 1, endIdx) : Math.max(0, list.size() + endIdx);
         if (start > end) {
@@ -78,47 +88,46 @@ public class NonBlockingRedisListCore implements RedisListCore {
     }
 
     @Override
-    public int size(String key) {
-        return getValueInternal(key).size();
+    public int size(ByteString key) {
+        var list = getValueInternal(key);
+        return list != null ? list.size() : 0;
     }
 
     @Override
-    public List<String> lpop(String key, int nPop) {
+    public List<ByteString> lpop(ByteString key, int nPop) {
         var list = getValueInternal(key);
-        if (list.isEmpty()) {
+        if (list == null) {
             return List.of();
         }
         if (nPop >= list.size()) {
-            DATA.remove(key);
+            db.delete(key);
             return list;
         }
-        var deletedList = list.subList(0, nPop);
-        DATA.put(key, new RedisValue<>(list.subList(nPop, list.size())));
+        var head = list.subList(0, nPop);
+        var deletedList = List.copyOf(head);
+        head.clear();
+        db.adjustDatasetMemory(-ObjectSize.ofElements(deletedList));
+        db.modified(key);
         return deletedList;
     }
 
     @Override
-    public String lpop(String key) {
+    public ByteString lpop(ByteString key) {
         var list = getValueInternal(key);
-        return removeFist(key, list);
-    }
-
-    private String removeFist(String key, List<String> list) {
-        if (list.isEmpty()) {
+        if (list == null) {
             return null;
         }
-
         var deleted = list.removeFirst();
+        db.adjustDatasetMemory(-ObjectSize.ofElement(deleted));
+        db.modified(key);
         if (list.isEmpty()) {
-            DATA.remove(key);
-        } else {
-            DATA.put(key, new RedisValue<>(list));
+            db.delete(key); // an empty list does not exist
         }
         return deleted;
     }
 
     @Override
-    public String blpop(String key, String timeoutSeconds) {
+    public ByteString blpop(ByteString key, String timeoutSeconds) {
         throw new UnsupportedOperationException();
     }
 
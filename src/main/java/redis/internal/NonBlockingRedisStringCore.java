@@ -1,47 +1,112 @@
 package redis.internal;
 
-import java.util.HashMap;
+import redis.ByteString;
+import server.info.ServerInfo;
+import server.info.StorageEngine;
+import server.shard.ShardLocal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
 
 public class NonBlockingRedisStringCore {
-    private static final HashMap<String, RedisValue<String>> DATA = new HashMap<>();
+    private static final ShardLocal<NonBlockingRedisStringCore> INSTANCE = new ShardLocal<>(NonBlockingRedisStringCore::new);
 
-    private static final NonBlockingRedisStringCore INSTANCE = new NonBlockingRedisStringCore();
+    private final RedisDb db = RedisDb.getInstance();
 
     private NonBlockingRedisStringCore() {
     }
 
     public static NonBlockingRedisStringCore getInstance() {
-        return INSTANCE;
+        return INSTANCE.get();
     }
 
-    public void set(String key, String value) {
-        DATA.put(key, new RedisValue<>(value));
+    public void set(ByteString key, ByteString value) {
+        set(key, value, RedisValue.NO_EXPIRY);
     }
 
-    public void set(String key, String value, long ttl) {
-        DATA.put(key, new RedisValue<>(value, ttl));
+    /**
+     * @param expiresAt the absolute expiry in milliseconds, or {@link RedisValue#NO_EXPIRY}
+     */
+    public void set(ByteString key, ByteString value, long expiresAt) {
+        db.put(key, newValue(value, expiresAt));
     }
 
-    public String get(String key) {
-        var redisValue = DATA.get(key);
-        if (redisValue == null) {
-            return null;
+    /**
+     * The value for a written string: integer-encoded when it prints back unchanged, else kept by the storage engine.
+     */
+    private static RedisValue<ByteString> newValue(ByteString value, long expiresAt) {
+        if (value.isCanonicalLong()) {
+            return new RedisInteger(value.toLong(), expiresAt);
+        }
+        if (ServerInfo.getInstance().getStorageEngine() == StorageEngine.OFF_HEAP) {
+            return new OffHeapString(value, expiresAt);
         }
+        return new RedisValue<>(RedisValue.Type.STRING, value, expiresAt);
+    }
+
+    public ByteString get(ByteString key) {
+        var redisValue = getValue(key);
+        return redisValue != null ? redisValue.getValue() : null;
+    }
 
-        if (redisValue.isExpired()) {
-            DATA.remove(key);
-            return null;
+    /**
+     * The live value with its metadata, e.g. the cached reply frame, or null if missing or expired.
+     *
+     * @throws error.WrongTypeException if the key holds a list
+     */
+    public RedisValue<ByteString> getValue(ByteString key) {
+        return db.lookup(key, RedisValue.Type.STRING);
+    }
+
+    /**
+     * Adds {@code delta} to the integer at the key, a missing key counts as 0. An integer-encoded value is updated in
+     * place and keeps its TTL.
+     *
+     * @throws NumberFormatException   if the value is not a 64-bit integer
+     * @throws ArithmeticException     if the result overflows
+     * @throws error.WrongTypeException if the key holds a list
+     */
+    public long incrBy(ByteString key, long delta) {
+        var current = getValue(key);
+        if (current instanceof RedisInteger integer) {
+            var incremented = Math.addExact(integer.longValue(), delta);
+            integer.setLongValue(incremented);
+            db.modified(key);
+            return incremented;
         }
-        return redisValue.getValue();
+        var incremented = current != null ? Math.addExact(current.getValue().toLong(), delta) : delta;
+        db.put(key, new RedisInteger(incremented, current != null ? current.getExpiresAt() : RedisValue.NO_EXPIRY));
+        return incremented;
     }
 
-    public String incr(String key) {
-        var value = get(key);
-        if (value != null) {
-            set(key, String.valueOf(Integer.parseInt(value) + 1));
-        } else {
-            set(key, "1");
+    /**
+     * Adds {@code delta} to the number at the key, a missing key counts as 0. The result is stored as a string and
+     * the key keeps its TTL.
+     *
+     * @return the new value as stored
+     * @throws NumberFormatException   if the value is not a number
+     * @throws ArithmeticException     if the result is NaN or infinite
+     * @throws error.WrongTypeException if the key holds a list
+     */
+    public ByteString incrByFloat(ByteString key, double delta) {
+        var current = getValue(key);
+        var value = current == null ? 0 : current instanceof RedisInteger integer
+                ? integer.longValue()
+                : current.getValue().toFiniteDouble();
+        var incremented = value + delta;
+        if (Double.isNaN(incremented) || Double.isInfinite(incremented)) {
+            throw new ArithmeticException("increment would produce NaN or Infinity");
         }
-        return get(key);
+        var result = ByteString.of(formatDouble(incremented));
+        set(key, result, current != null ? current.getExpiresAt() : RedisValue.NO_EXPIRY);
+        return result;
+    }
+
+    /**
+     * Plain notation without trailing zeros, like Redis prints INCRBYFLOAT results: 10.5, 3, 0.1.
+     */
+    private static String formatDouble(double value) {
+        var plain = new BigDecimal(value, MathContext.DECIMAL64).stripTrailingZeros().toPlainString();
+        return plain.equals("-0") ? "0" : plain;
     }
 }
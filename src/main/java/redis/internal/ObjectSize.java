@@ -0,0 +1,103 @@
+package redis.internal;
+
+import redis.ByteString;
+
+import java.util.List;
+
+/**
+ * Estimated heap footprint of the dataset's objects on a 64-bit JVM with compressed references: 12 byte object
+ * headers, 16 byte array headers, 4 byte references and 8 byte alignment.
+ * <p>
+ * The estimates only need to be consistent, they are added when data is written and subtracted when it is removed.
+ */
+public final class ObjectSize {
+    // header, 3 references, expiresAt, lru
+    public static final long VALUE = align(12 + 3 * 4 + 8 + 4 + 4 + 4);
+    // a value plus the number, holds no ByteString
+    public static final long INTEGER = align(12 + 3 * 4 + 8 + 4 + 4 + 4 + 8);
+    // a value plus the handle, the bytes are off-heap
+    public static final long OFF_HEAP_STRING = align(12 + 3 * 4 + 8 + 4 + 4 + 4 + 8);
+    // header, bytes reference, cached hash
+    public static final long BYTE_STRING = align(12 + 4 + 4);
+    // header, size, modCount, elementData reference, plus the header of elementData
+    public static final long ARRAY_LIST = align(12 + 4 + 4 + 4) + 16;
+    // key, value and hash slots of the tables
+    public static final long DICT_SLOT = 3 * 4;
+    // a ReadView entry: the ConcurrentHashMap node, the entry and its table slot
+    public static final long READ_VIEW_ENTRY = align(12 + 4 + 3 * 4) + align(12 + 2 * 4 + 4 + 8) + 4;
+
+    private ObjectSize() {
+    }
+
+    /**
+     * A copy of a list's elements from {@code List.copyOf}: the list and its array of references, not the elements.
+     */
+    public static long ofListCopy(int size) {
+        return align(12 + 4 + 1) + align(16L + 4L * size);
+    }
+
+    public static long ofBytes(int length) {
+        return align(16L + length);
+    }
+
+    public static long of(ByteString string) {
+        return BYTE_STRING + ofBytes(string.length());
+    }
+
+    /**
+     * A list element: its reference in the list and the string.
+     */
+    public static long ofElement(ByteString element) {
+        return 4 + of(element);
+    }
+
+    public static long ofElements(List<ByteString> elements) {
+        long size = 0;
+        for (var element : elements) {
+            size += ofElement(element);
+        }
+        return size;
+    }
+
+    /**
+     * The value and what it holds, O(n) for a list.
+     */
+    @SuppressWarnings("unchecked")
+    public static long of(RedisValue<?> value) {
+        if (value instanceof RedisInteger) {
+            return INTEGER;
+        }
+        if (value instanceof OffHeapString string) {
+            return OFF_HEAP_STRING + string.footprint();
+        }
+        return VALUE + switch (value.getType()) {
+            case STRING -> of((ByteString) value.getValue());
+            case LIST -> ARRAY_LIST + ofElements((List<ByteString>) value.getValue());
+        };
+    }
+
+    /**
+     * Like {@link #of(RedisValue)}, but a list of more than {@code samples} elements is extrapolated from
+     * {@code samples} elements spread over it. 0 samples measures every element.
+     */
+    @SuppressWarnings("unchecked")
+    public static long estimate(RedisValue<?> value, int samples) {
+        if (value.getType() != RedisValue.Type.LIST) {
+            return of(value);
+        }
+        var list = (List<ByteString>) value.getValue();
+        if (samples == 0 || list.size() <= samples) {
+            return of(value);
+        }
+        long sampled = 0;
+        var step = list.size() / samples;
+        for (int i = 0; i < samples; i++) {
+            sampled += ofElement(list.get(i * step));
+        }
+        return VALUE + ARRAY_LIST + sampled * list.size() / samples;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
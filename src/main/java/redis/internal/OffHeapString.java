@@ -0,0 +1,44 @@
+package redis.internal;
+
+import redis.ByteString;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * A string value of the {@code offheap} storage engine: its bytes live in a {@link SlabAllocator} slot and the heap
+ * only holds the handle. GET writes straight from the slot, {@link #getValue()} copies the bytes onto the heap for
+ * the commands that need a {@link ByteString}.
+ */
+public class OffHeapString extends RedisValue<ByteString> {
+    private final long handle;
+
+    public OffHeapString(ByteString value, long expiresAt) {
+        super(Type.STRING, Encoding.OFF_HEAP, null, expiresAt);
+        this.handle = SlabAllocator.getInstance().allocate(value);
+    }
+
+    @Override
+    public ByteString getValue() {
+        return ByteString.wrap(getSegment().toArray(ValueLayout.JAVA_BYTE));
+    }
+
+    /**
+     * The bytes in place, valid until the value leaves the keyspace.
+     */
+    public MemorySegment getSegment() {
+        return SlabAllocator.getInstance().get(handle);
+    }
+
+    /**
+     * The off-heap memory held, the whole slot.
+     */
+    long footprint() {
+        return SlabAllocator.getInstance().footprint(handle);
+    }
+
+    @Override
+    void free() {
+        SlabAllocator.getInstance().free(handle);
+    }
+}
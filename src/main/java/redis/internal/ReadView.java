@@ -0,0 +1,340 @@
+package redis.internal;
+
+import protocol.Protocol;
+import redis.ByteString;
+import redis.Command;
+import redis.processor.RespEncoder;
+import server.info.ServerClock;
+import server.info.ServerInfo;
+import server.shard.ShardLocal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A read-only copy of the keyspace for {@code --concurrent-reads}: GET, LLEN, LRANGE and EXISTS are answered from it
+ * by the threads doing the connections' I/O, without going through the event loop. Writes still run on the event
+ * loop one at a time.
+ * <p>
+ * The event loop is the only writer. {@link RedisDb} reports every key a command changes, and once the outermost
+ * command is done the view replaces the entries of these keys with immutable ones, all in one step guarded by a
+ * sequence number that is odd while the entries are being replaced, like a seqlock. A reader reads its entries
+ * between two equal even sequence numbers, or reads again: it sees the keyspace as it was between two commands,
+ * never half of a command or of a MULTI/EXEC, and a write is visible before its reply is sent. Readers never block
+ * the event loop.
+ * <p>
+ * What the view can't answer is left to the event loop, in order with the connection's other requests: wrong types,
+ * invalid arguments, off-heap strings, and lists whose elements were not captured since they last changed. The first
+ * LRANGE of such a list on the event loop captures them.
+ * <p>
+ * The access data of the values, for eviction, is only ever written by the event loop: readers record one access in
+ * {@value #ACCESS_SAMPLE_RATE}, picked at random per thread, in a ring that the event loop applies before each command.
+ * Eviction only compares keys by their accesses, so a sample keeps the hot keys hot, while the readers rarely touch
+ * the ring's shared counter. The ring is lossy too, under a read burst the oldest accesses are dropped.
+ * <p>
+ * The view costs an index entry per key on top of the keyspace, and a copy of the elements of captured lists. It is
+ * counted in the keyspace overhead, so against {@code maxmemory}.
+ */
+public class ReadView {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ReadView> INSTANCE = new ShardLocal<>(ReadView::new);
+
+    private ReadView() {
+    }
+
+    public static ReadView getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    // returned by the lookups when the event loop must answer
+    private static final Object DEFER = new Object();
+    // accesses recorded by the readers until the event loop applies them, a power of two
+    private static final int ACCESS_RING_SIZE = 4096;
+    // one read in this many is recorded as an access
+    private static final int ACCESS_SAMPLE_RATE = 16;
+
+    private final ConcurrentHashMap<ByteString, Entry> entries = new ConcurrentHashMap<>();
+    // odd while the event loop replaces entries
+    private volatile long sequence = 0;
+
+    // Event loop only: the keys changed by the running command, and the lists to capture the elements of
+    private final Set<ByteString> changed = new HashSet<>();
+    private final Set<ByteString> capturedLists = new HashSet<>();
+    private int depth = 0;
+    private long usedMemory = 0;
+
+    // written by the readers, drained by the event loop
+    private final AtomicReferenceArray<RedisValue<?>> accesses = new AtomicReferenceArray<>(ACCESS_RING_SIZE);
+    private final AtomicLong accessesRecorded = new AtomicLong();
+    private long accessesApplied = 0;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+
+    public static boolean isEnabled() {
+        return ServerInfo.getInstance().isConcurrentReads();
+    }
+
+    // Writer side, on the event loop
+    // ------------------------------------------------------------------
+
+    /**
+     * Starts a command, the keys it changes are published when the outermost command ends. The accesses of the
+     * readers are applied first, so that eviction sees them.
+     */
+    public void begin() {
+        if (depth++ == 0) {
+            applyAccesses();
+        }
+    }
+
+    public void end() {
+        if (--depth == 0 && !changed.isEmpty()) {
+            publish();
+        }
+    }
+
+    /**
+     * The key was written, deleted or its TTL changed. Published right away outside of a command, e.g. by the cron.
+     */
+    void changed(ByteString key) {
+        changed.add(key);
+        if (depth == 0) {
+            publish();
+        }
+    }
+
+    /**
+     * Has the next publication copy the elements of the list, so that LRANGE can be answered from the view.
+     */
+    void captureList(ByteString key) {
+        capturedLists.add(key);
+        changed(key);
+    }
+
+    private void publish() {
+        var db = RedisDb.getInstance();
+        sequence++;
+        try {
+            for (var key : changed) {
+                var value = db.peek(key);
+                var entry = value == null ? null : entryOf(key, value);
+                var previous = entry == null ? entries.remove(key) : entries.put(key, entry);
+                usedMemory += sizeOf(entry) - sizeOf(previous);
+            }
+        } finally {
+            sequence++;
+            changed.clear();
+            capturedLists.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry entryOf(ByteString key, RedisValue<?> value) {
+        return switch (value) {
+            case OffHeapString string -> new Entry(string, null, -1, string.getExpiresAt());
+            case RedisInteger integer -> new Entry(integer, integer.getValue(), -1, integer.getExpiresAt());
+            default -> {
+                if (value.getType() == RedisValue.Type.STRING) {
+                    yield new Entry(value, value.getValue(), -1, value.getExpiresAt());
+                }
+                var list = (List<ByteString>) value.getValue();
+                yield new Entry(value, capturedLists.contains(key) ? List.copyOf(list) : null, list.size(),
+                        value.getExpiresAt());
+            }
+        };
+    }
+
+    private void applyAccesses() {
+        var recorded = accessesRecorded.get();
+        // past a full ring the oldest were overwritten
+        for (var i = Math.max(accessesApplied, recorded - ACCESS_RING_SIZE); i < recorded; i++) {
+            var value = accesses.getAndSet((int) i & (ACCESS_RING_SIZE - 1), null);
+            if (value != null) {
+                Evictor.touch(value);
+            }
+        }
+        accessesApplied = recorded;
+    }
+
+    /**
+     * What the view holds besides the keyspace's own objects: the index entries, the strings of integers and the
+     * copies of captured lists.
+     */
+    private static long sizeOf(Entry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        long size = ObjectSize.READ_VIEW_ENTRY;
+        if (entry.source() instanceof RedisInteger) {
+            size += ObjectSize.of(entry.string());
+        } else if (entry.isList() && entry.elements() != null) {
+            size += ObjectSize.ofListCopy(entry.size());
+        }
+        return size;
+    }
+
+    // Reader side, on any thread
+    // ------------------------------------------------------------------
+
+    /**
+     * Answers the request from the view if it is a read the view can answer.
+     *
+     * @return false if the event loop must run it, nothing was written then
+     */
+    public boolean tryServe(List<byte[]> request, RespEncoder reply) throws IOException {
+        var args = new ArrayList<ByteString>(request.size());
+        for (var arg : request) {
+            args.add(ByteString.wrap(arg));
+        }
+        var spec = new Command(null, args).getSpec();
+        if (spec == null || !spec.isArityValid(args.size()) || !isServed(spec.command())) {
+            return false;
+        }
+
+        Object result;
+        while (true) {
+            var before = sequence;
+            if ((before & 1) != 0) {
+                retried.increment();
+                Thread.yield(); // the event loop is publishing
+                continue;
+            }
+            result = read(spec.command(), args);
+            if (sequence == before) {
+                break;
+            }
+            retried.increment();
+        }
+        if (result == DEFER) {
+            deferred.increment();
+            return false;
+        }
+        writeReply(result, reply);
+        served.increment();
+        return true;
+    }
+
+    private static boolean isServed(Protocol.Command command) {
+        return switch (command) {
+            case GET, LLEN, LRANGE, EXISTS -> true;
+            default -> false;
+        };
+    }
+
+    private Object read(Protocol.Command command, List<ByteString> args) {
+        var now = ServerClock.getInstance().millis();
+        var entry = live(args.get(1), now);
+        return switch (command) {
+            case GET -> entry == null ? null
+                    : entry.isString() && entry.string() != null ? entry.string() : DEFER;
+            case LLEN -> entry == null ? 0L : entry.isList() ? (long) entry.size() : DEFER;
+            case LRANGE -> {
+                if (entry != null && (!entry.isList() || entry.elements() == null)) {
+                    yield DEFER;
+                }
+                try {
+                    var start = args.get(2).toInt();
+                    var end = args.get(3).toInt();
+                    yield entry == null ? List.of() : NonBlockingRedisListCore.range(entry.elements(), start, end);
+                } catch (NumberFormatException e) {
+                    yield DEFER; // invalid, handled by the event loop as without the view
+                }
+            }
+            case EXISTS -> {
+                long existing = entry != null ? 1 : 0;
+                for (int i = 2; i < args.size(); i++) {
+                    if (live(args.get(i), now) != null) {
+                        existing++;
+                    }
+                }
+                yield existing;
+            }
+            default -> DEFER;
+        };
+    }
+
+    /**
+     * The entry of the key, or null if missing or expired. Like a lookup on the event loop it counts as an access
+     * for eviction, sampled and recorded for the event loop to apply; the expired key itself is removed by the event
+     * loop.
+     */
+    private Entry live(ByteString key, long now) {
+        var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() != RedisValue.NO_EXPIRY && entry.expiresAt() < now) {
+            return null;
+        }
+        if (ThreadLocalRandom.current().nextInt(ACCESS_SAMPLE_RATE) == 0) {
+            accesses.set((int) accessesRecorded.getAndIncrement() & (ACCESS_RING_SIZE - 1), entry.source());
+        }
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeReply(Object result, RespEncoder reply) throws IOException {
+        switch (result) {
+            case null -> reply.nullBulk();
+            case ByteString string -> reply.bulkString(string);
+            case Long number -> reply.integer(number);
+            case List<?> list -> reply.bulkArray((List<ByteString>) list);
+            default -> throw new IllegalStateException("unexpected read result " + result);
+        }
+    }
+
+    /**
+     * The estimated memory of the view, for the overhead estimate. Event loop only.
+     */
+    long usedMemory() {
+        return usedMemory;
+    }
+
+    public String getInfo() {
+        return String.join("\n",
+                "concurrent_reads_served:" + served.sum(),
+                "concurrent_reads_deferred:" + deferred.sum(),
+                "concurrent_reads_retried:" + retried.sum(),
+                "concurrent_reads_used_memory:" + usedMemory
+        );
+    }
+
+    /**
+     * The state of a key as of the last publication.
+     *
+     * @param source the value it was taken from, for its type and to record accesses for eviction
+     * @param data   the bytes of a string, null if only the event loop can read them (off-heap), or the elements
+     *               of a list, null unless captured
+     * @param size   the length of a list, -1 for a string
+     */
+    private record Entry(RedisValue<?> source, Object data, int size, long expiresAt) {
+        boolean isString() {
+            return source.getType() == RedisValue.Type.STRING;
+        }
+
+        boolean isList() {
+            return source.getType() == RedisValue.Type.LIST;
+        }
+
+        ByteString string() {
+            return (ByteString) data;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<ByteString> elements() {
+            return (List<ByteString>) data;
+        }
+    }
+}
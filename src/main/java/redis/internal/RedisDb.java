@@ -0,0 +1,330 @@
+package redis.internal;
+
+import error.WrongTypeException;
+import redis.ByteString;
+import redis.Command;
+import redis.GlobPattern;
+import server.cron.ReplicateDataCron;
+import server.info.ServerStats;
+import server.shard.ShardLocal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The keyspace: every key maps to one typed value, so a key is either a string or a list and each command resolves
+ * its key with a single lookup.
+ * <p>
+ * Keys with a TTL are also indexed in {@code expires}. An expired key is removed when it is looked up, or by
+ * {@link #activeExpire(int)} sampling the index from the cron, and a DEL is propagated to the replicas either way.
+ * The tables resize incrementally, see {@link Dict}.
+ */
+public class RedisDb {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<RedisDb> INSTANCE = new ShardLocal<>(RedisDb::new);
+
+    private RedisDb() {
+    }
+
+    public static RedisDb getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private static final ByteString DEL = ByteString.of("DEL");
+
+    private final Dict<ByteString, RedisValue<?>> data = new Dict<>();
+    // the volatile keys only, to the same values as in data
+    private final Dict<ByteString, RedisValue<?>> expires = new Dict<>();
+    private final ReadView readView = ReadView.getInstance();
+    // estimated footprint of the keys and values, see ObjectSize
+    private long datasetMemory = 0;
+
+    /**
+     * The live value of the key whatever its type, or null if missing or expired.
+     */
+    public RedisValue<?> lookup(ByteString key) {
+        var value = data.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (value.isExpired()) {
+            expire(key);
+            return null;
+        }
+        Evictor.touch(value);
+        return value;
+    }
+
+    /**
+     * The value without checking its expiry or recording an access, for sampling.
+     */
+    RedisValue<?> peek(ByteString key) {
+        return data.get(key);
+    }
+
+    /**
+     * A random key, of any key or only of the keys with a TTL, or null if there is none or the table is too sparse to
+     * find one quickly.
+     */
+    ByteString randomKey(boolean volatileOnly) {
+        return volatileOnly ? expires.randomKey() : data.randomKey();
+    }
+
+    /**
+     * The live value of the key, or null if missing or expired.
+     *
+     * @throws WrongTypeException if the key holds another type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RedisValue<T> lookup(ByteString key, RedisValue.Type type) {
+        var value = lookup(key);
+        if (value != null && value.getType() != type) {
+            throw new WrongTypeException();
+        }
+        return (RedisValue<T>) value;
+    }
+
+    /**
+     * Sets the key to the value, replacing whatever it held.
+     */
+    public void put(ByteString key, RedisValue<?> value) {
+        var previous = data.put(key, value);
+        ReplyCache.getInstance().release(previous);
+        datasetMemory += ObjectSize.of(value) - (previous != null ? ObjectSize.of(previous) : 0);
+        if (previous == null) {
+            datasetMemory += ObjectSize.of(key);
+        } else if (previous != value) {
+            previous.free();
+        }
+        if (value.isVolatile()) {
+            expires.put(key, value);
+        } else if (previous != null && previous.isVolatile()) {
+            expires.remove(key);
+        }
+        modified(key);
+    }
+
+    /**
+     * Reports a change to the key, including a value changed in place like a pushed list or an incremented
+     * counter, for the readers of {@link ReadView}.
+     */
+    void modified(ByteString key) {
+        if (ReadView.isEnabled()) {
+            readView.changed(key);
+        }
+    }
+
+    /**
+     * Changes the expiry of the live value of a key, {@link RedisValue#NO_EXPIRY} makes the key persistent.
+     */
+    public void setExpiry(ByteString key, RedisValue<?> value, long expiresAt) {
+        value.setExpiresAt(expiresAt);
+        if (value.isVolatile()) {
+            expires.put(key, value);
+        } else {
+            expires.remove(key);
+        }
+        modified(key);
+    }
+
+    /**
+     * @return whether the key existed
+     */
+    public boolean delete(ByteString key) {
+        var value = remove(key);
+        return value != null && !value.isExpired();
+    }
+
+    private RedisValue<?> remove(ByteString key) {
+        var value = unlink(key);
+        if (value != null) {
+            value.free();
+        }
+        return value;
+    }
+
+    /**
+     * Removes the key but leaves its value alive, e.g. to move it to another key.
+     */
+    private RedisValue<?> unlink(ByteString key) {
+        var value = data.remove(key);
+        if (value != null) {
+            ReplyCache.getInstance().release(value);
+            datasetMemory -= ObjectSize.of(key) + ObjectSize.of(value);
+            if (value.isVolatile()) {
+                expires.remove(key);
+            }
+            modified(key);
+        }
+        return value;
+    }
+
+    private void expire(ByteString key) {
+        remove(key);
+        ServerStats.getInstance().incrExpiredKeys();
+        // replicas never expire keys on their own, they wait for this DEL
+        ReplicateDataCron.getInstance().registerCommand(new Command(null, List.of(DEL, key)));
+    }
+
+    /**
+     * Removes a key to free memory, replicas get a DEL.
+     */
+    void evict(ByteString key) {
+        remove(key);
+        ReplicateDataCron.getInstance().registerCommand(new Command(null, List.of(DEL, key)));
+    }
+
+    /**
+     * Accounts for a value changed in place, e.g. elements pushed to a list.
+     */
+    void adjustDatasetMemory(long delta) {
+        datasetMemory += delta;
+    }
+
+    /**
+     * The estimated memory of the keyspace, what maxmemory is checked against: the dataset and its overhead.
+     */
+    public long usedMemory() {
+        return datasetMemory + overheadMemory();
+    }
+
+    /**
+     * Keys and values, kept up to date on every write.
+     */
+    public long datasetMemory() {
+        return datasetMemory;
+    }
+
+    /**
+     * What the keyspace holds besides the data: table slots, used or not, cached replies and the read view.
+     */
+    public long overheadMemory() {
+        return (data.capacity() + expires.capacity()) * ObjectSize.DICT_SLOT
+                + ReplyCache.getInstance().getUsedMemory()
+                + readView.usedMemory();
+    }
+
+    /**
+     * The estimated memory of the key, its value and its table slots, or -1 if missing.
+     *
+     * @param samples list elements to extrapolate from, 0 for all, see {@link ObjectSize#estimate}
+     */
+    public long memoryUsage(ByteString key, int samples) {
+        var value = lookup(key);
+        if (value == null) {
+            return -1;
+        }
+        return ObjectSize.of(key) + ObjectSize.estimate(value, samples)
+                + ObjectSize.DICT_SLOT * (value.isVolatile() ? 2 : 1);
+    }
+
+    /**
+     * Checks {@code samples} random volatile keys and removes the expired ones.
+     *
+     * @return how many keys expired, so the caller can go on while a high share of the samples is expired
+     */
+    public int activeExpire(int samples) {
+        samples = Math.min(samples, expires.size());
+        int expired = 0;
+        for (int i = 0; i < samples; i++) {
+            var key = expires.randomKey();
+            if (key == null) {
+                break; // nothing found quickly, the table is about to shrink
+            }
+            if (expires.get(key).isExpired()) {
+                expire(key);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public int volatileSize() {
+        return expires.size();
+    }
+
+    public boolean exists(ByteString key) {
+        return lookup(key) != null;
+    }
+
+    /**
+     * Moves the value of {@code key}, with its expiry, to {@code newKey}, replacing whatever {@code newKey} held.
+     *
+     * @return false if {@code key} does not exist
+     */
+    public boolean rename(ByteString key, ByteString newKey) {
+        var value = lookup(key);
+        if (value == null) {
+            return false;
+        }
+        if (key.equals(newKey)) {
+            return true;
+        }
+        unlink(key);
+        put(newKey, value);
+        return true;
+    }
+
+    /**
+     * One step of SCAN, see {@link Dict#scan}: visits buckets from the cursor until {@code count} keys were found or
+     * ten times as many buckets were visited, like Redis, then keeps the keys matching the pattern and the type.
+     * Expired keys are removed instead of returned. Looking at the keys does not count as an access for eviction.
+     *
+     * @param cursor  0 to start, else a cursor returned before, below 2^32
+     * @param pattern only the keys it matches, null for all
+     * @param type    only the keys of this type, null for all
+     * @return the cursor to continue from, 0 once the whole keyspace was visited
+     */
+    public long scan(long cursor, int count, GlobPattern pattern, RedisValue.Type type, List<ByteString> keys) {
+        var found = new ArrayList<ByteString>(count);
+        var next = (int) cursor;
+        long maxBuckets = count * 10L;
+        do {
+            next = data.scan(next, found::add);
+        } while (next != 0 && found.size() < count && --maxBuckets > 0);
+
+        for (var key : found) {
+            if (pattern != null && !pattern.matches(key)) {
+                continue;
+            }
+            var value = data.get(key);
+            if (value.isExpired()) {
+                expire(key);
+            } else if (type == null || value.getType() == type) {
+                keys.add(key);
+            }
+        }
+        return Integer.toUnsignedLong(next);
+    }
+
+    /**
+     * The number of keys, including expired keys not removed yet.
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Resizes the table a little more, from the cron, so it shrinks and finishes resizing even without commands.
+     *
+     * @return whether a resize is still in progress
+     */
+    public boolean rehashUntil(long deadlineNanos) {
+        data.tryShrink();
+        expires.tryShrink();
+        return data.rehashUntil(deadlineNanos) | expires.rehashUntil(deadlineNanos);
+    }
+
+    public String getInfo() {
+        return String.join("\n",
+                "# Keyspace",
+                "db0:keys=" + data.size() + ",expires=" + expires.size(),
+                "keyspace_table_slots:" + data.capacity(),
+                "keyspace_rehashing:" + (data.isRehashing() ? 1 : 0),
+                "keyspace_resizes:" + data.getResizes(),
+                "keyspace_rehashed_entries:" + data.getRehashedEntries()
+        );
+    }
+}
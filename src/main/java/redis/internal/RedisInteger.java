@@ -0,0 +1,30 @@
+package redis.internal;
+
+import redis.ByteString;
+
+/**
+ * A string value that looks like a 64-bit integer, kept as a primitive long: counters are updated in place instead
+ * of being parsed and replaced on every INCR. The bytes are only built for the commands that need the string,
+ * GET replies straight from the number.
+ */
+public class RedisInteger extends RedisValue<ByteString> {
+    private long number;
+
+    public RedisInteger(long number, long expiresAt) {
+        super(Type.STRING, Encoding.INT, null, expiresAt);
+        this.number = number;
+    }
+
+    @Override
+    public ByteString getValue() {
+        return ByteString.of(Long.toString(number));
+    }
+
+    public long longValue() {
+        return number;
+    }
+
+    void setLongValue(long number) {
+        this.number = number;
+    }
+}
@@ -1,23 +1,25 @@
 package redis.internal;
 
+import redis.ByteString;
+
 import java.io.IOException;
 import java.util.List;
 
 public interface RedisListCore {
-    int rpush(String key, List<String> items) throws IOException;
+    int rpush(ByteString key, List<ByteString> items) throws IOException;
 
-    int lpush(String key, List<String> items) throws IOException;
+    int lpush(ByteString key, List<ByteString> items) throws IOException;
 
-    List<String> getValue(String key);
+    List<ByteString> getValue(ByteString key);
 
-    List<String> lrange(String key, int startIdx, int endIdx);
+    List<ByteString> lrange(ByteString key, int startIdx, int endIdx);
 
-    int size(String key);
+    int size(ByteString key);
 
-    List<String> lpop(String key, int nPop);
+    List<ByteString> lpop(ByteString key, int nPop);
 
-    String lpop(String key);
+    ByteString lpop(ByteString key);
 
-    String blpop(String key, String timeoutSeconds);
+    ByteString blpop(ByteString key, String timeoutSeconds);
 
 }
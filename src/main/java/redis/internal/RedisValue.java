@@ -1,34 +1,147 @@
 package redis.internal;
 
+import server.info.ServerClock;
+
 public class RedisValue<T> {
+    public static final long NO_EXPIRY = -1;
+
+    private final Type type;
+    private final Encoding encoding;
     private final T value;
-    private final long timestamp;
-    private final long ttl;
-    private final boolean willExpire;
+    // absolute time on the ServerClock, changed only through RedisDb which keeps the expires index in sync
+    private long expiresAt;
+    // access data for eviction, see Evictor: the LRU clock, or the LFU decrement time and counter
+    private int lru;
+    // RESP frame of the value for GET, see ReplyCache. The value never changes, a write replaces the whole RedisValue.
+    private byte[] encodedReply;
 
-    public RedisValue(T value) {
-        this.value = value;
-        this.timestamp = System.currentTimeMillis();
-        this.ttl = 0;
-        this.willExpire = false;
+    public RedisValue(Type type, T value) {
+        this(type, value, NO_EXPIRY);
+    }
+
+    /**
+     * @param expiresAt the absolute expiry in milliseconds, or {@link #NO_EXPIRY}
+     */
+    public RedisValue(Type type, T value, long expiresAt) {
+        this(type, type.defaultEncoding, value, expiresAt);
     }
 
-    public RedisValue(T value, long ttl) {
+    /**
+     * For the specialized representations of a type, see {@link RedisInteger}.
+     */
+    RedisValue(Type type, Encoding encoding, T value, long expiresAt) {
+        this.type = type;
+        this.encoding = encoding;
         this.value = value;
-        this.timestamp = System.currentTimeMillis();
-        this.ttl = ttl;
-        this.willExpire = true;
+        this.expiresAt = expiresAt;
+        this.lru = Evictor.initialLru();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
     }
 
     public T getValue() {
         return value;
     }
 
-    public long getExpiryTime() {
-        return timestamp + ttl;
+    /**
+     * Whether the value has a TTL, i.e. its key is in the expires index.
+     */
+    public boolean isVolatile() {
+        return expiresAt != NO_EXPIRY;
+    }
+
+    /**
+     * The absolute expiry in milliseconds, or {@link #NO_EXPIRY}.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    int getLru() {
+        return lru;
+    }
+
+    void setLru(int lru) {
+        this.lru = lru;
+    }
+
+    public byte[] getEncodedReply() {
+        return encodedReply;
+    }
+
+    void setEncodedReply(byte[] encodedReply) {
+        this.encodedReply = encodedReply;
+    }
+
+    /**
+     * Called once the value left the keyspace, to free what it holds outside the heap.
+     */
+    void free() {
     }
 
     public boolean isExpired() {
-        return willExpire && getExpiryTime() < System.currentTimeMillis();
+        // the clock is read once per event loop iteration, this is only a field read
+        return expiresAt != NO_EXPIRY && expiresAt < ServerClock.getInstance().millis();
+    }
+
+    /**
+     * The data type a key holds, as reported by TYPE.
+     */
+    public enum Type {
+        STRING("string", Encoding.RAW),
+        LIST("list", Encoding.ARRAY_LIST),
+        ;
+
+        private final String typeName;
+        private final Encoding defaultEncoding;
+
+        Type(String typeName, Encoding defaultEncoding) {
+            this.typeName = typeName;
+            this.defaultEncoding = defaultEncoding;
+        }
+
+        public String typeName() {
+            return typeName;
+        }
+
+        public static Type findByTypeName(String name) {
+            for (var type : values()) {
+                if (type.typeName.equalsIgnoreCase(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * How a value is represented in memory, as reported by OBJECT ENCODING.
+     */
+    public enum Encoding {
+        RAW("raw"),
+        INT("int"),
+        OFF_HEAP("offheap"),
+        ARRAY_LIST("arraylist"),
+        ;
+
+        private final String encodingName;
+
+        Encoding(String encodingName) {
+            this.encodingName = encodingName;
+        }
+
+        public String encodingName() {
+            return encodingName;
+        }
     }
 }
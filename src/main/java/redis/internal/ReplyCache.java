@@ -0,0 +1,74 @@
+package redis.internal;
+
+import redis.ByteString;
+import redis.processor.RespEncoder;
+import server.info.ServerInfo;
+import server.shard.ShardLocal;
+
+/**
+ * Keeps the RESP frame of string values that were read, so reading the same value again appends one pre-built
+ * array to the output instead of encoding it.
+ * <p>
+ * The frame lives on the {@link RedisValue} itself: a write replaces the value and the frame goes with it. The
+ * frames together stay under {@code --reply-cache-max-memory}, a value that does not fit is encoded on every read.
+ */
+public class ReplyCache {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ReplyCache> INSTANCE = new ShardLocal<>(ReplyCache::new);
+
+    private ReplyCache() {
+    }
+
+    public static ReplyCache getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private long usedMemory = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * The frame of the value, encoded and cached on the first read, or null if the cache is full or disabled.
+     */
+    public byte[] getOrEncode(RedisValue<ByteString> value) {
+        var frame = value.getEncodedReply();
+        if (frame != null) {
+            hits++;
+            return frame;
+        }
+        misses++;
+        var size = RespEncoder.bulkStringSize(value.getValue());
+        if (usedMemory + size > ServerInfo.getInstance().getReplyCacheMaxMemory()) {
+            return null;
+        }
+        frame = RespEncoder.encodeBulkString(value.getValue());
+        value.setEncodedReply(frame);
+        usedMemory += frame.length;
+        return frame;
+    }
+
+    /**
+     * Gives back the memory of the frame of a value that was overwritten or deleted.
+     */
+    public void release(RedisValue<?> value) {
+        if (value != null && value.getEncodedReply() != null) {
+            usedMemory -= value.getEncodedReply().length;
+            value.setEncodedReply(null);
+        }
+    }
+
+    public long getUsedMemory() {
+        return usedMemory;
+    }
+
+    public String getInfo() {
+        return String.join("\n",
+                "reply_cache_hits:" + hits,
+                "reply_cache_misses:" + misses,
+                "reply_cache_used_memory:" + usedMemory,
+                "reply_cache_max_memory:" + ServerInfo.getInstance().getReplyCacheMaxMemory()
+        );
+    }
+}
@@ -0,0 +1,208 @@
+package redis.internal;
+
+import redis.ByteString;
+import server.shard.ShardLocal;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Off-heap memory for the string values of the {@code offheap} storage engine, so the bulk of the data is out of the
+ * GC's view: the heap only holds a small value object with a handle per key.
+ * <p>
+ * Like memcached's slab allocator, memory comes in 1MB pages, each carved into slots of one size class, the classes
+ * growing by a factor of 1.25. A freed slot goes to the free list of its class and is reused as is, pages are never
+ * returned. A slot holds the length of the string followed by its bytes. Strings too large for a page get a
+ * segment of their own, reclaimed once freed and unreachable.
+ * <p>
+ * A handle is the page index in the upper 32 bits and the offset of the slot in the lower 32 bits.
+ * <p>
+ * Not thread safe, only used from the event loop.
+ */
+public class SlabAllocator {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<SlabAllocator> INSTANCE = new ShardLocal<>(SlabAllocator::new);
+
+    private SlabAllocator() {
+        var sizes = new int[64];
+        int count = 0;
+        for (int size = MIN_SLOT_SIZE; size < PAGE_SIZE / 2; size = align((int) (size * GROWTH_FACTOR))) {
+            sizes[count++] = size;
+        }
+        sizes[count++] = PAGE_SIZE;
+        slotSizes = Arrays.copyOf(sizes, count);
+        freeSlots = new long[count][];
+        freeCounts = new int[count];
+        currentPages = new int[count];
+        Arrays.fill(currentPages, -1);
+        nextOffsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            freeSlots[i] = new long[16];
+        }
+    }
+
+    public static SlabAllocator getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private static final int PAGE_SIZE = 1024 * 1024;
+    private static final int MIN_SLOT_SIZE = 64;
+    private static final double GROWTH_FACTOR = 1.25;
+    private static final int LENGTH_PREFIX = Integer.BYTES;
+    // size class of a page holding a single large string
+    private static final int LARGE = -1;
+
+    private final Arena arena = Arena.ofShared();
+    private final int[] slotSizes;
+    // per size class: handles of freed slots, and the page being carved with its next unused offset
+    private final long[][] freeSlots;
+    private final int[] freeCounts;
+    private final int[] currentPages;
+    private final int[] nextOffsets;
+
+    private MemorySegment[] pages = new MemorySegment[64];
+    private int[] pageClasses = new int[64];
+    private int pageCount = 0;
+    // indexes of the pages of freed large strings, reused for the next one
+    private int[] freePageIds = new int[16];
+    private int freePageCount = 0;
+
+    private long slabBytes = 0;
+    private long largeBytes = 0;
+    private long usedBytes = 0;
+
+    /**
+     * Copies the string into a slot.
+     *
+     * @return the handle of the slot
+     */
+    public long allocate(ByteString value) {
+        var need = LENGTH_PREFIX + value.length();
+        var sizeClass = sizeClassOf(need);
+        final long handle;
+        if (sizeClass < 0) {
+            handle = allocateLarge(need);
+        } else {
+            handle = allocateSlot(sizeClass);
+            usedBytes += slotSizes[sizeClass];
+        }
+        var page = pages[(int) (handle >>> 32)];
+        var offset = (int) handle;
+        page.set(ValueLayout.JAVA_INT_UNALIGNED, offset, value.length());
+        MemorySegment.copy(value.getBytes(), 0, page, ValueLayout.JAVA_BYTE, offset + LENGTH_PREFIX, value.length());
+        return handle;
+    }
+
+    /**
+     * The bytes of the string, a view of off-heap memory valid until the slot is freed.
+     */
+    public MemorySegment get(long handle) {
+        var page = pages[(int) (handle >>> 32)];
+        var offset = (int) handle;
+        var length = page.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+        return page.asSlice(offset + LENGTH_PREFIX, length);
+    }
+
+    public int length(long handle) {
+        return pages[(int) (handle >>> 32)].get(ValueLayout.JAVA_INT_UNALIGNED, (int) handle);
+    }
+
+    /**
+     * The memory the handle holds, its whole slot.
+     */
+    public long footprint(long handle) {
+        var pageId = (int) (handle >>> 32);
+        var sizeClass = pageClasses[pageId];
+        return sizeClass == LARGE ? pages[pageId].byteSize() : slotSizes[sizeClass];
+    }
+
+    public void free(long handle) {
+        var pageId = (int) (handle >>> 32);
+        var sizeClass = pageClasses[pageId];
+        if (sizeClass == LARGE) {
+            largeBytes -= pages[pageId].byteSize();
+            pages[pageId] = null;
+            freePageIds = grow(freePageIds, freePageCount);
+            freePageIds[freePageCount++] = pageId;
+            return;
+        }
+        usedBytes -= slotSizes[sizeClass];
+        freeSlots[sizeClass] = grow(freeSlots[sizeClass], freeCounts[sizeClass]);
+        freeSlots[sizeClass][freeCounts[sizeClass]++] = handle;
+    }
+
+    public String getInfo() {
+        return String.join("\n",
+                "offheap_slab_pages:" + slabBytes / PAGE_SIZE,
+                "offheap_slab_bytes:" + slabBytes,
+                "offheap_used_slot_bytes:" + usedBytes,
+                "offheap_large_bytes:" + largeBytes
+        );
+    }
+
+    private long allocateSlot(int sizeClass) {
+        if (freeCounts[sizeClass] > 0) {
+            return freeSlots[sizeClass][--freeCounts[sizeClass]];
+        }
+        var slotSize = slotSizes[sizeClass];
+        if (currentPages[sizeClass] < 0 || nextOffsets[sizeClass] + slotSize > PAGE_SIZE) {
+            currentPages[sizeClass] = addPage(arena.allocate(PAGE_SIZE, Long.BYTES), sizeClass);
+            nextOffsets[sizeClass] = 0;
+            slabBytes += PAGE_SIZE;
+        }
+        var offset = nextOffsets[sizeClass];
+        nextOffsets[sizeClass] += slotSize;
+        return handle(currentPages[sizeClass], offset);
+    }
+
+    private long allocateLarge(int size) {
+        // an automatic arena frees the memory once the segment is unreachable, i.e. freed and dropped from pages
+        var segment = Arena.ofAuto().allocate(size, Long.BYTES);
+        largeBytes += size;
+        if (freePageCount > 0) {
+            var pageId = freePageIds[--freePageCount];
+            pages[pageId] = segment;
+            pageClasses[pageId] = LARGE;
+            return handle(pageId, 0);
+        }
+        return handle(addPage(segment, LARGE), 0);
+    }
+
+    private int addPage(MemorySegment page, int sizeClass) {
+        if (pageCount == pages.length) {
+            pages = Arrays.copyOf(pages, pageCount * 2);
+            pageClasses = Arrays.copyOf(pageClasses, pageCount * 2);
+        }
+        pages[pageCount] = page;
+        pageClasses[pageCount] = sizeClass;
+        return pageCount++;
+    }
+
+    private int sizeClassOf(int size) {
+        if (size > PAGE_SIZE) {
+            return -1;
+        }
+        var i = Arrays.binarySearch(slotSizes, size);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private static long handle(int pageId, int offset) {
+        return ((long) pageId << 32) | offset;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, size * 2);
+    }
+
+    private static long[] grow(long[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, size * 2);
+    }
+}
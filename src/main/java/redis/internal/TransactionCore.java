@@ -3,25 +3,26 @@ package redis.internal;
 import error.DiscardNoMultiException;
 import error.ExecNoMultiException;
 import redis.Command;
+import server.shard.ShardLocal;
 
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Queue;
 
 public class TransactionCore {
-    // Singleton
+    // Singleton, one per shard
     // ------------------------------------------------------------------
-    private static final TransactionCore INSTANCE = new TransactionCore();
+    private static final ShardLocal<TransactionCore> INSTANCE = new ShardLocal<>(TransactionCore::new);
 
     private TransactionCore() {
     }
 
     public static TransactionCore getInstance() {
-        return INSTANCE;
+        return INSTANCE.get();
     }
     // ------------------------------------------------------------------
 
-    private static final HashMap<String, Queue<Command>> TRANSACTION_QUEUE = new HashMap<>();
+    private final HashMap<String, Queue<Command>> TRANSACTION_QUEUE = new HashMap<>();
 
     public void multi(Command command) {
         TRANSACTION_QUEUE.putIfAbsent(command.getConnectionId(), new ArrayDeque<>());
@@ -45,6 +46,13 @@ public class TransactionCore {
         return false;
     }
 
+    /**
+     * Whether the connection of the command is between MULTI and EXEC, i.e. the command is going to be queued.
+     */
+    public boolean isQueuing(Command command) {
+        return TRANSACTION_QUEUE.containsKey(command.getConnectionId());
+    }
+
     public void discard(Command command) {
         var queue = TRANSACTION_QUEUE.get(command.getConnectionId());
         if (queue == null) {
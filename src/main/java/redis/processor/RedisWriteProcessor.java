@@ -1,74 +1,53 @@
 package redis.processor;
 
-import protocol.Protocol;
-import redis.Response;
+import redis.ByteString;
 import stream.Writer;
 
 import java.io.IOException;
 import java.util.List;
 
+/**
+ * One-off replies to a {@link Writer} that has no {@link RespEncoder} at hand, e.g. the blocking server, the
+ * replication handshake and clients woken up by another connection's command.
+ */
 public class RedisWriteProcessor {
-    protected static final String CRLF = "\r\n";
-    private static final String NULL_VALUE = "$-1";
-
     public static void sendError(Writer writer, String errorMessage) throws IOException {
-        sendMessage(writer, String.format("%sERR %s", Protocol.DataType.ERROR.getPrefix(), errorMessage));
+        new RespEncoder(writer).error(errorMessage);
     }
 
     public static void sendNull(Writer writer) throws IOException {
-        sendMessage(writer, NULL_VALUE);
+        new RespEncoder(writer).nullBulk();
     }
 
     public static void sendString(Writer writer, String message) throws IOException {
-        sendMessage(writer, Protocol.DataType.SIMPLE_STRING.getPrefix() + message);
+        new RespEncoder(writer).simpleString(message);
     }
 
     public static void sendInt(Writer writer, int message) throws IOException {
-        sendMessage(writer, Protocol.DataType.INTEGER.getPrefix() + String.valueOf(message));
+        new RespEncoder(writer).integer(message);
     }
 
     public static void sendBulkString(Writer writer, String message) throws IOException {
-        sendMessage(writer, Protocol.DataType.BULK_STRING.getPrefix() + String.valueOf(message.length()));
-        sendMessage(writer, message);
+        new RespEncoder(writer).bulkString(message);
+    }
+
+    public static void sendBulkString(Writer writer, ByteString message) throws IOException {
+        new RespEncoder(writer).bulkString(message);
     }
 
     public static void sendArray(Writer writer, List<String> messages) throws IOException {
-        sendMessage(writer, Protocol.DataType.ARRAY.getPrefix() + String.valueOf(messages.size()));
+        var encoder = new RespEncoder(writer);
+        encoder.arrayHeader(messages.size());
         for (String message : messages) {
-            sendBulkString(writer, message);
+            encoder.bulkString(message);
         }
     }
 
-    public static void sendRdbFile(Writer writer, byte[] message) throws IOException {
-        sendMessage(writer, Protocol.DataType.RDB_FILE.getPrefix() + String.valueOf(message.length));
-        sendMessage(writer, message);
-    }
-
-    private static void sendMessage(Writer writer, String message) throws IOException {
-        writer.write(message + CRLF);
-    }
-
-    private static void sendMessage(Writer writer, byte[] message) throws IOException {
-        writer.write(message);
+    public static void sendBulkArray(Writer writer, List<ByteString> messages) throws IOException {
+        new RespEncoder(writer).bulkArray(messages);
     }
 
-    public static void sendResponse(Writer writer, Response response) throws IOException {
-        switch (response.responseType()) {
-            case STRING -> RedisWriteProcessor.sendString(writer, (String) response.message());
-            case ERROR -> RedisWriteProcessor.sendError(writer, (String) response.message());
-            case INTEGER -> RedisWriteProcessor.sendInt(writer, (int) response.message());
-            case BULK_STRING -> RedisWriteProcessor.sendBulkString(writer, (String) response.message());
-            // TODO: Handle unchecked cast later
-            case ARRAY_STRING -> RedisWriteProcessor.sendArray(writer, (List<String>) response.message());
-            case ARRAY_RESPONSE -> {
-                var responses = (List<Response>) response.message();
-                RedisWriteProcessor.sendMessage(writer, Protocol.DataType.ARRAY.getPrefix() + String.valueOf(responses.size()));
-                for (var resp : responses) {
-                    sendResponse(writer, resp);
-                }
-            }
-            case RDF_FILE -> RedisWriteProcessor.sendRdbFile(writer, (byte[]) response.message());
-            case NULL -> RedisWriteProcessor.sendNull(writer);
-        }
+    public static void sendRdbFile(Writer writer, byte[] message) throws IOException {
+        new RespEncoder(writer).rdbFile(message);
     }
 }
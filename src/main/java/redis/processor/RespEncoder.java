@@ -0,0 +1,301 @@
+package redis.processor;
+
+import redis.ByteString;
+import stream.Writer;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes replies straight into a connection's output buffer.
+ * <p>
+ * Frequent replies, small integers and short {@code *N}/{@code $N} headers come from shared pre-encoded arrays,
+ * other numbers are formatted into a per-encoder scratch array, so encoding a reply allocates nothing.
+ * <p>
+ * The encoder remembers whether an error reply was written since {@link #resetError()}, which tells the command
+ * handler whether the command may be propagated.
+ */
+public final class RespEncoder {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] PLUS = {'+'};
+    private static final byte[] OK = shared("+OK\r\n");
+    private static final byte[] QUEUED = shared("+QUEUED\r\n");
+    private static final byte[] PONG = shared("+PONG\r\n");
+    private static final byte[] NULL_BULK = shared("$-1\r\n");
+    private static final byte[] ERR_PREFIX = shared("-ERR ");
+    private static final byte[] WRONGTYPE = shared("-WRONGTYPE Operation against a key holding the wrong kind of value\r\n");
+    private static final byte[] OOM = shared("-OOM command not allowed when used memory > 'maxmemory'.\r\n");
+
+    private static final int SHARED_INTEGERS = 10_000;
+    private static final int SHARED_HEADERS = 1024;
+    private static final byte[][] INTEGERS = new byte[SHARED_INTEGERS][];
+    private static final byte[][] BULK_INTEGERS = new byte[SHARED_INTEGERS][];
+    private static final byte[][] ARRAY_HEADERS = new byte[SHARED_HEADERS][];
+    private static final byte[][] BULK_HEADERS = new byte[SHARED_HEADERS][];
+
+    static {
+        for (int i = 0; i < SHARED_INTEGERS; i++) {
+            INTEGERS[i] = shared(":" + i + "\r\n");
+            BULK_INTEGERS[i] = shared("$" + String.valueOf(i).length() + "\r\n" + i + "\r\n");
+        }
+        for (int i = 0; i < SHARED_HEADERS; i++) {
+            ARRAY_HEADERS[i] = shared("*" + i + "\r\n");
+            BULK_HEADERS[i] = shared("$" + i + "\r\n");
+        }
+    }
+
+    // prefix, sign, up to 19 digits and CRLF
+    private final byte[] scratch = new byte[24];
+    private final Writer writer;
+    private boolean errorWritten = false;
+
+    public RespEncoder(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * An encoder that drops everything, for the link to our master which must never be answered.
+     */
+    public static RespEncoder discarding() {
+        return new RespEncoder(new DiscardingWriter());
+    }
+
+    private static byte[] shared(String reply) {
+        return reply.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public Writer getWriter() {
+        return writer;
+    }
+
+    public void resetError() {
+        errorWritten = false;
+    }
+
+    public boolean hasError() {
+        return errorWritten;
+    }
+
+    public void ok() throws IOException {
+        writer.write(OK);
+    }
+
+    public void queued() throws IOException {
+        writer.write(QUEUED);
+    }
+
+    public void pong() throws IOException {
+        writer.write(PONG);
+    }
+
+    public void nullBulk() throws IOException {
+        writer.write(NULL_BULK);
+    }
+
+    public void simpleString(String message) throws IOException {
+        writer.write(PLUS);
+        writer.write(message.getBytes(StandardCharsets.UTF_8));
+        writer.write(CRLF);
+    }
+
+    /**
+     * An {@code -ERR} reply.
+     */
+    public void error(String message) throws IOException {
+        errorWritten = true;
+        writer.write(ERR_PREFIX);
+        writer.write(message.getBytes(StandardCharsets.UTF_8));
+        writer.write(CRLF);
+    }
+
+    public void wrongType() throws IOException {
+        errorWritten = true;
+        writer.write(WRONGTYPE);
+    }
+
+    public void oom() throws IOException {
+        errorWritten = true;
+        writer.write(OOM);
+    }
+
+    public void integer(long value) throws IOException {
+        if (value >= 0 && value < SHARED_INTEGERS) {
+            writer.write(INTEGERS[(int) value]);
+        } else {
+            writeNumberLine((byte) ':', value);
+        }
+    }
+
+    public void arrayHeader(int size) throws IOException {
+        if (size >= 0 && size < SHARED_HEADERS) {
+            writer.write(ARRAY_HEADERS[size]);
+        } else {
+            writeNumberLine((byte) '*', size);
+        }
+    }
+
+    public void bulkString(ByteString value) throws IOException {
+        var length = value.length();
+        if (length < SHARED_HEADERS) {
+            writer.write(BULK_HEADERS[length]);
+        } else {
+            writeNumberLine((byte) '$', length);
+        }
+        writer.writeReference(value.getBytes()); // values are immutable, large ones are not copied
+        writer.write(CRLF);
+    }
+
+    /**
+     * A bulk string from off-heap memory, copied straight into the output buffer.
+     */
+    public void bulkString(MemorySegment value) throws IOException {
+        var length = value.byteSize();
+        if (length < SHARED_HEADERS) {
+            writer.write(BULK_HEADERS[(int) length]);
+        } else {
+            writeNumberLine((byte) '$', length);
+        }
+        writer.write(value);
+        writer.write(CRLF);
+    }
+
+    /**
+     * The decimal digits of {@code value} as a bulk string, e.g. an integer-encoded string value, without allocating.
+     */
+    public void bulkLong(long value) throws IOException {
+        if (value >= 0 && value < SHARED_INTEGERS) {
+            writer.write(BULK_INTEGERS[(int) value]);
+            return;
+        }
+        int start = fillNumberLine(value);
+        writer.write(BULK_HEADERS[scratch.length - start - CRLF.length]);
+        writer.write(scratch, start, scratch.length - start);
+    }
+
+    /**
+     * A reply encoded beforehand, e.g. by {@link #encodeBulkString(ByteString)}. It is appended as is and must
+     * not be modified afterward.
+     */
+    public void preEncoded(byte[] frame) throws IOException {
+        writer.writeReference(frame);
+    }
+
+    /**
+     * The whole {@code $len\r\n...\r\n} frame of a bulk string in one array, for replies that are sent many times.
+     */
+    public static byte[] encodeBulkString(ByteString value) {
+        var header = ("$" + value.length() + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        var frame = new byte[header.length + value.length() + CRLF.length];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(value.getBytes(), 0, frame, header.length, value.length());
+        System.arraycopy(CRLF, 0, frame, frame.length - CRLF.length, CRLF.length);
+        return frame;
+    }
+
+    /**
+     * The length of {@link #encodeBulkString(ByteString)}, without encoding it.
+     */
+    public static int bulkStringSize(ByteString value) {
+        return 1 + stringSize(value.length()) + CRLF.length + value.length() + CRLF.length;
+    }
+
+    private static int stringSize(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    public void bulkString(String value) throws IOException {
+        bulkString(ByteString.of(value));
+    }
+
+    /**
+     * A bulk string or, for null, the null bulk string.
+     */
+    public void bulkOrNull(ByteString value) throws IOException {
+        if (value == null) {
+            nullBulk();
+        } else {
+            bulkString(value);
+        }
+    }
+
+    public void bulkArray(List<ByteString> values) throws IOException {
+        arrayHeader(values.size());
+        for (var value : values) {
+            bulkString(value);
+        }
+    }
+
+    /**
+     * The RDB snapshot of a full resync: a bulk string without the trailing CRLF.
+     */
+    public void rdbFile(byte[] contents) throws IOException {
+        writeNumberLine((byte) '$', contents.length);
+        writer.write(contents);
+    }
+
+    /**
+     * Writes {@code prefix}, the decimal digits of {@code value} and CRLF as one write, without allocating.
+     */
+    private void writeNumberLine(byte prefix, long value) throws IOException {
+        int start = fillNumberLine(value);
+        scratch[--start] = prefix;
+        writer.write(scratch, start, scratch.length - start);
+    }
+
+    /**
+     * Fills the end of the scratch buffer with the decimal digits of {@code value} and CRLF.
+     *
+     * @return where the digits start, leaving room for a prefix
+     */
+    private int fillNumberLine(long value) {
+        int end = scratch.length;
+        scratch[--end] = '\n';
+        scratch[--end] = '\r';
+        // work on the negative value so Long.MIN_VALUE needs no special case
+        boolean negative = value < 0;
+        long remaining = negative ? value : -value;
+        do {
+            scratch[--end] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            scratch[--end] = '-';
+        }
+        return end;
+    }
+
+    private static final class DiscardingWriter extends Writer {
+        @Override
+        public void write(String str) {
+        }
+
+        @Override
+        public void write(byte[] bytes) {
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+        }
+
+        @Override
+        public int flush() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean hasRemaining() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package redis.processor;
+
+import protocol.Protocol;
+import server.dto.Buffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resumable RESP request parser.
+ * <p>
+ * Unlike {@link RedisReadProcessor#read}, the parser keeps its progress (array length, current argument,
+ * bytes still needed) between read events, so a request split over many TCP segments is scanned only once.
+ * Bytes are consumed from the {@link Buffer} as soon as they are parsed.
+ * <p>
+ * A bulk string is copied into an array sized from its declared length, up to {@code 32KB} or what is already
+ * buffered, and grown as the rest arrives, like Redis does for big arguments: a header alone can't make the server
+ * allocate the 512MB a bulk string may declare.
+ */
+public class RespParser {
+    private static final int MAX_LINE_LENGTH = 64 * 1024; // 64KB, for headers and simple strings
+    private static final int MAX_ARRAY_LENGTH = 1024 * 1024;
+    private static final int MAX_BULK_LENGTH = 512 * 1024 * 1024; // 512MB, same as Redis proto-max-bulk-len
+    private static final int BULK_PREALLOC_LIMIT = 32 * 1024; // same as Redis PROTO_MBULK_BIG_ARG
+    private static final long NEED_MORE = Long.MIN_VALUE;
+
+    private enum State {
+        TYPE,
+        ARRAY_LENGTH,
+        ARG_TYPE,
+        BULK_LENGTH,
+        BULK_PAYLOAD,
+        BULK_CRLF,
+        SIMPLE_STRING,
+    }
+
+    private State state = State.TYPE;
+    private List<byte[]> argv;
+    private int argsRemaining;
+    private byte[] bulk;
+    private int bulkLength;
+    private int bulkRead;
+    private boolean topLevelBulk = false;
+    private boolean rdbPayload = false;
+
+    /**
+     * The next top-level bulk string is an RDB file, which is not terminated by CRLF.
+     * Loading snapshots is not supported, so the payload is skipped.
+     */
+    public void expectRdbPayload() {
+        this.rdbPayload = true;
+    }
+
+    /**
+     * Parses as much of {@code in} as possible.
+     *
+     * @return the arguments of the next complete request, or {@code null} if more data is needed
+     */
+    public List<byte[]> parse(Buffer in) throws IOException {
+        try {
+            while (true) {
+                switch (state) {
+                    case TYPE -> {
+                        if (!in.hasAtLeast(1)) {
+                            return null;
+                        }
+                        var prefix = (char) in.get();
+                        var dataType = Protocol.DataType.findDataTypeByPrefix(prefix);
+                        if (dataType == null) {
+                            throw new IOException("Protocol error: invalid data type '" + prefix + "'");
+                        }
+                        switch (dataType) {
+                            case ARRAY -> {
+                                topLevelBulk = false;
+                                state = State.ARRAY_LENGTH;
+                            }
+                            case BULK_STRING -> {
+                                topLevelBulk = true;
+                                startArgs(1);
+                                state = State.BULK_LENGTH;
+                            }
+                            case SIMPLE_STRING -> state = State.SIMPLE_STRING;
+                            default -> throw new IOException("Data type not supported for now: " + dataType.name());
+                        }
+                    }
+                    case ARRAY_LENGTH -> {
+                        var len = readLength(in, MAX_ARRAY_LENGTH);
+                        if (len == NEED_MORE) {
+                            return null;
+                        }
+                        if (len <= 0) { // null or empty array, nothing to execute
+                            state = State.TYPE;
+                            continue;
+                        }
+                        startArgs((int) len);
+                        state = State.ARG_TYPE;
+                    }
+                    case ARG_TYPE -> {
+                        if (!in.hasAtLeast(1)) {
+                            return null;
+                        }
+                        var prefix = in.get();
+                        if (prefix != Protocol.DataType.BULK_STRING.getPrefix()) {
+                            throw new IOException("Protocol error: expected '$', got '" + (char) prefix + "'");
+                        }
+                        state = State.BULK_LENGTH;
+                    }
+                    case BULK_LENGTH -> {
+                        var len = readLength(in, MAX_BULK_LENGTH);
+                        if (len == NEED_MORE) {
+                            return null;
+                        }
+                        if (len < 0) {
+                            throw new IOException("Protocol error: invalid bulk length");
+                        }
+                        bulkLength = (int) len;
+                        bulk = new byte[Math.min(bulkLength, Math.max(BULK_PREALLOC_LIMIT, in.remaining()))];
+                        bulkRead = 0;
+                        state = State.BULK_PAYLOAD;
+                    }
+                    case BULK_PAYLOAD -> {
+                        var n = Math.min(bulkLength - bulkRead, in.remaining());
+                        if (bulkRead + n > bulk.length) {
+                            bulk = Arrays.copyOf(bulk, Math.min(bulkLength, Math.max(bulkRead + n, 2 * bulk.length)));
+                        }
+                        in.get(bulk, bulkRead, n);
+                        in.consume(in.getPosition());
+                        bulkRead += n;
+                        if (bulkRead < bulkLength) {
+                            return null;
+                        }
+                        if (rdbPayload && topLevelBulk) {
+                            rdbPayload = false;
+                            bulk = null;
+                            argv = null;
+                            state = State.TYPE;
+                            continue;
+                        }
+                        state = State.BULK_CRLF;
+                    }
+                    case BULK_CRLF -> {
+                        if (!in.hasAtLeast(2)) {
+                            return null;
+                        }
+                        if (in.get() != '\r' || in.get() != '\n') {
+                            throw new IOException("Protocol error: expected CRLF after bulk string");
+                        }
+                        in.consume(in.getPosition());
+                        var done = completeArg();
+                        if (done != null) {
+                            return done;
+                        }
+                    }
+                    case SIMPLE_STRING -> {
+                        var line = readLine(in);
+                        if (line == null) {
+                            return null;
+                        }
+                        state = State.TYPE;
+                        return List.of(line);
+                    }
+                }
+            }
+        } finally {
+            in.consume(in.getPosition());
+        }
+    }
+
+    private void startArgs(int count) {
+        argv = new ArrayList<>(count);
+        argsRemaining = count;
+    }
+
+    private List<byte[]> completeArg() {
+        argv.add(bulk);
+        bulk = null;
+        if (--argsRemaining > 0) {
+            state = State.ARG_TYPE;
+            return null;
+        }
+        state = State.TYPE;
+        var done = argv;
+        argv = null;
+        return done;
+    }
+
+    /**
+     * Reads a CRLF-terminated decimal length, or returns {@link #NEED_MORE} without consuming anything.
+     */
+    private static long readLength(Buffer in, int max) throws IOException {
+        var end = findLineEnd(in);
+        if (end < 0) {
+            return NEED_MORE;
+        }
+        if (end == 0 || (end == 1 && in.getByte(in.getPosition()) == '-')) {
+            throw new IOException("Protocol error: invalid length"); // no digits
+        }
+        long value = 0;
+        var negative = false;
+        for (int i = 0; i < end; i++) {
+            var ch = in.get();
+            if (i == 0 && ch == '-') {
+                negative = true;
+            } else if (ch >= '0' && ch <= '9') {
+                value = value * 10 + (ch - '0');
+                if (value > max) {
+                    throw new IOException("Protocol error: length out of range");
+                }
+            } else {
+                throw new IOException("Protocol error: invalid length");
+            }
+        }
+        in.get(); // \r
+        in.get(); // \n
+        return negative ? -value : value;
+    }
+
+    private static byte[] readLine(Buffer in) throws IOException {
+        var end = findLineEnd(in);
+        if (end < 0) {
+            return null;
+        }
+        var line = new byte[end];
+        in.get(line, 0, end);
+        in.get(); // \r
+        in.get(); // \n
+        return line;
+    }
+
+    private static int findLineEnd(Buffer in) throws IOException {
+        var lf = in.indexOf((byte) '\n');
+        if (lf < 0) {
+            if (in.remaining() > MAX_LINE_LENGTH) {
+                throw new IOException("Protocol error: too big line");
+            }
+            return -1;
+        }
+        if (lf == 0 || in.getByte(in.getPosition() + lf - 1) != '\r') {
+            throw new IOException("Protocol error: expected CRLF");
+        }
+        return lf - 1;
+    }
+}
@@ -1,7 +1,23 @@
 package server;
 
+import server.info.ServerInfo;
+import server.nonblocking.NonBlockingServer;
+import server.virtual.VirtualThreadServer;
+
 public interface Server {
     void startServer();
 
     void stopServer();
+
+    /**
+     * Parses the arguments and creates the server of the chosen {@code --server-mode}.
+     */
+    static Server init(String[] args) {
+        var serverInfo = ServerInfo.getInstance();
+        serverInfo.init(args);
+        return switch (serverInfo.getServerMode()) {
+            case NIO -> new NonBlockingServer(serverInfo.getHostName(), serverInfo.getPort());
+            case VIRTUAL_THREADS -> new VirtualThreadServer(serverInfo.getHostName(), serverInfo.getPort());
+        };
+    }
 }
@@ -0,0 +1,73 @@
+package server;
+
+import server.info.ServerInfo;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The optional unix socket listener, {@code --unixsocket}, shared by both server modes.
+ */
+public final class ServerSockets {
+
+    private ServerSockets() {
+    }
+
+    /**
+     * Binds the unix socket if one is configured.
+     *
+     * @return the listening channel, or null without {@code --unixsocket}
+     */
+    public static ServerSocketChannel bindUnixSocket(boolean blocking) throws IOException {
+        var serverInfo = ServerInfo.getInstance();
+        var unixSocket = serverInfo.getUnixSocket();
+        if (unixSocket == null) {
+            return null;
+        }
+        var path = Path.of(unixSocket);
+        Files.deleteIfExists(path); // stale socket file of a previous run, like Redis does
+
+        var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.configureBlocking(blocking);
+        channel.bind(UnixDomainSocketAddress.of(path));
+        if (serverInfo.getUnixSocketPerm() != null) {
+            Files.setPosixFilePermissions(path, toPosixPermissions(serverInfo.getUnixSocketPerm()));
+        }
+
+        System.out.println("Redis server listening on unix socket " + path);
+        return channel;
+    }
+
+    /**
+     * Stops listening and removes the socket file.
+     */
+    public static void closeUnixSocket(ServerSocketChannel channel) throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+            Files.deleteIfExists(Path.of(ServerInfo.getInstance().getUnixSocket()));
+        }
+    }
+
+    /**
+     * Octal mode such as "700" or "0770" to file permissions.
+     */
+    private static Set<PosixFilePermission> toPosixPermissions(String octal) {
+        var mode = Integer.parseInt(octal, 8);
+        var permissions = EnumSet.noneOf(PosixFilePermission.class);
+        // PosixFilePermission is declared from OWNER_READ (0400) down to OTHERS_EXECUTE (0001)
+        var values = PosixFilePermission.values();
+        for (int i = 0; i < values.length; i++) {
+            if ((mode & (1 << (values.length - 1 - i))) != 0) {
+                permissions.add(values[i]);
+            }
+        }
+        return permissions;
+    }
+}
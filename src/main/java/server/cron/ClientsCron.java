@@ -0,0 +1,64 @@
+package server.cron;
+
+import server.info.ServerClock;
+import server.info.ServerInfo;
+import server.nonblocking.ClientRegistry;
+import server.shard.ShardLocal;
+
+/**
+ * Periodic checks over all clients, e.g. disconnecting the ones that stay above their soft output buffer limit
+ * even though nothing new is appended to their output.
+ * <p>
+ * Runs {@code hz} times per second and, like Redis' clientsCron, only visits a slice of the clients each time
+ * so that every client is checked about once per second. The slice resumes after the last client visited.
+ */
+public class ClientsCron implements ICron {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ClientsCron> INSTANCE = new ShardLocal<>(ClientsCron::new);
+
+    private ClientsCron() {
+    }
+
+    public static ClientsCron getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private static final int MIN_CLIENTS_PER_RUN = 5;
+
+    private long lastRunMillis = 0;
+    private long lastClientId = 0;
+
+    @Override
+    public void run() {
+        var now = ServerClock.getInstance().millis();
+        if (now < nextRunMillis()) {
+            return;
+        }
+        lastRunMillis = now;
+
+        var registry = ClientRegistry.getInstance();
+        var remaining = Math.max(registry.size() / ServerInfo.getInstance().getHz(), MIN_CLIENTS_PER_RUN);
+        var budget = TimeBudget.perRun();
+        var clients = registry.getClientsAfter(lastClientId).iterator();
+        while (remaining-- > 0 && !budget.isExhausted()) {
+            if (!clients.hasNext()) {
+                // wrap around
+                lastClientId = 0;
+                clients = registry.getClientsAfter(lastClientId).iterator();
+                if (!clients.hasNext()) {
+                    break;
+                }
+            }
+            var conn = clients.next();
+            lastClientId = conn.getId();
+            registry.closeIfOutputBufferLimitReached(conn, now);
+        }
+    }
+
+    @Override
+    public long nextRunMillis() {
+        return lastRunMillis + 1000 / ServerInfo.getInstance().getHz();
+    }
+}
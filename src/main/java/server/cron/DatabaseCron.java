@@ -0,0 +1,68 @@
+package server.cron;
+
+import redis.internal.RedisDb;
+import server.info.ServerClock;
+import server.info.ServerInfo;
+import server.info.ServerStats;
+import server.shard.ShardLocal;
+
+/**
+ * Background work on the keyspace, like Redis' databasesCron:
+ * <ul>
+ *     <li>removes expired keys nobody reads anymore: samples the keys with a TTL and goes on while more than a
+ *     tenth of a sample was expired, within the cron's time budget;</li>
+ *     <li>shrinks the table once it is mostly empty and moves entries of an ongoing resize, so the resize finishes
+ *     even if no command touches the keyspace.</li>
+ * </ul>
+ */
+public class DatabaseCron implements ICron {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<DatabaseCron> INSTANCE = new ShardLocal<>(DatabaseCron::new);
+
+    private DatabaseCron() {
+    }
+
+    public static DatabaseCron getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    // same as Redis' ACTIVE_EXPIRE_CYCLE_KEYS_PER_LOOP and ACTIVE_EXPIRE_CYCLE_ACCEPTABLE_STALE
+    private static final int EXPIRE_SAMPLES = 20;
+    private static final int ACCEPTABLE_STALE_PERCENT = 10;
+    // same as Redis' incrementallyRehash
+    private static final long REHASH_NANOS = 1_000_000;
+
+    private long lastRunMillis = 0;
+
+    @Override
+    public void run() {
+        var now = ServerClock.getInstance().millis();
+        if (now < nextRunMillis()) {
+            return;
+        }
+        lastRunMillis = now;
+        // a replica only drops the expired keys it reads, the others go with the DEL propagated by its master
+        if (!ServerInfo.getInstance().isReplica()) {
+            activeExpireCycle();
+        }
+        RedisDb.getInstance().rehashUntil(System.nanoTime() + REHASH_NANOS);
+    }
+
+    private void activeExpireCycle() {
+        var db = RedisDb.getInstance();
+        var start = System.nanoTime();
+        var budget = TimeBudget.perRun();
+        int expired;
+        do {
+            expired = db.activeExpire(EXPIRE_SAMPLES);
+        } while (expired * 100 > EXPIRE_SAMPLES * ACCEPTABLE_STALE_PERCENT && !budget.isExhausted());
+        ServerStats.getInstance().addExpireCycleNanos(System.nanoTime() - start);
+    }
+
+    @Override
+    public long nextRunMillis() {
+        return lastRunMillis + 1000 / ServerInfo.getInstance().getHz();
+    }
+}
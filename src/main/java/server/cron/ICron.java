@@ -1,7 +1,27 @@
 package server.cron;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface ICron {
     void run() throws IOException;
+
+    /**
+     * The earliest time this cron has work to do, the event loop never sleeps past it.
+     * A time in the past means the cron has work carried over and must run on the next iteration.
+     */
+    default long nextRunMillis() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * The earliest {@link #nextRunMillis()} of the crons.
+     */
+    static long nextRunMillis(List<? extends ICron> crons) {
+        var next = Long.MAX_VALUE;
+        for (var cron : crons) {
+            next = Math.min(next, cron.nextRunMillis());
+        }
+        return next;
+    }
 }
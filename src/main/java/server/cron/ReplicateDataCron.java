@@ -1,9 +1,11 @@
 package server.cron;
 
 import redis.Command;
-import redis.processor.RedisWriteProcessor;
 import server.dto.Conn;
+import server.info.ServerClock;
+import server.nonblocking.ClientRegistry;
 import server.nonblocking.NonBlockingServerHandler;
+import server.shard.ShardLocal;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
@@ -12,29 +14,41 @@ import java.util.List;
 import java.util.Queue;
 
 public class ReplicateDataCron implements ICron {
-    // Singleton
+    // Singleton, one per shard
     // ------------------------------------------------------------------
-    private static final ReplicateDataCron INSTANCE = new ReplicateDataCron();
+    private static final ShardLocal<ReplicateDataCron> INSTANCE = new ShardLocal<>(ReplicateDataCron::new);
 
     private ReplicateDataCron() {
     }
 
     public static ReplicateDataCron getInstance() {
-        return INSTANCE;
+        return INSTANCE.get();
     }
     // ------------------------------------------------------------------
 
     private final Queue<ReplicateEvent> replicateEvents = new ArrayDeque<>();
     private final List<Conn> replicas = new ArrayList<>();
 
+    /**
+     * Propagates queued writes until the time budget runs out, the remaining events keep their order and are
+     * sent on the next run, so a large backlog no longer stalls every other client.
+     */
     @Override
     public void run() throws IOException {
-        while (!replicateEvents.isEmpty()) {
+        var budget = TimeBudget.perRun();
+        var now = ServerClock.getInstance().millis();
+        while (!replicateEvents.isEmpty() && !budget.isExhausted()) {
             ReplicateEvent event = replicateEvents.poll();
             for (var replica : replicas) {
                 try {
-                    RedisWriteProcessor.sendArray(replica.getWriter(), event.command.getRequest());
+                    replica.getReplyEncoder().bulkArray(event.command.getPropagatedRequest());
                     NonBlockingServerHandler.handleWrite(replica);
+                    if (replica.getWriter().hasRemaining()) {
+                        // the socket did not take everything, let the event loop flush the rest
+                        replica.wantWrite();
+                        NonBlockingServerHandler.updateSelectionKey(replica.getSelectionKey(), replica);
+                    }
+                    ClientRegistry.getInstance().closeIfOutputBufferLimitReached(replica, now);
                 }catch (Exception e){
                     System.err.println("Failed to replicate data to replica " + replica.getChannel().getLocalAddress());
                 }
@@ -42,6 +56,11 @@ public class ReplicateDataCron implements ICron {
         }
     }
 
+    @Override
+    public long nextRunMillis() {
+        return replicateEvents.isEmpty() ? Long.MAX_VALUE : 0;
+    }
+
     public void addReplica(Conn conn) {
         if (!replicas.contains(conn)) {
             replicas.add(conn);
@@ -52,10 +71,24 @@ public class ReplicateDataCron implements ICron {
         replicas.remove(conn);
     }
 
+    /**
+     * Queues the command for the replicas. Without replicas nothing is queued: a replica that connects later starts
+     * from a full resync, and a mode without the cron, like the virtual-thread server, would never drain the queue.
+     */
     public void registerCommand(Command command) {
+        if (replicas.isEmpty()) {
+            return;
+        }
         replicateEvents.add(new ReplicateEvent(command));
     }
 
+    public String getInfo() {
+        return String.join("\n",
+                "connected_slaves:" + replicas.size(),
+                "repl_pending_commands:" + replicateEvents.size()
+        );
+    }
+
     private static class ReplicateEvent {
         Command command;
 
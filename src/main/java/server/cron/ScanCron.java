@@ -0,0 +1,56 @@
+package server.cron;
+
+import server.shard.ShardLocal;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Runs the commands that walk the keyspace a slice at a time, KEYS for now: each gets one slice per event loop
+ * iteration, so a large keyspace holds the other clients up by a slice at most instead of the whole walk.
+ */
+public class ScanCron implements ICron {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ScanCron> INSTANCE = new ShardLocal<>(ScanCron::new);
+
+    private ScanCron() {
+    }
+
+    public static ScanCron getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private final Queue<Task> tasks = new ArrayDeque<>();
+
+    @Override
+    public void run() {
+        // one slice each, a task submitted meanwhile waits for the next run
+        for (int i = tasks.size(); i > 0; i--) {
+            var task = tasks.poll();
+            if (!task.runSlice()) {
+                tasks.add(task);
+            }
+        }
+    }
+
+    @Override
+    public long nextRunMillis() {
+        return tasks.isEmpty() ? Long.MAX_VALUE : 0; // work carried over, the loop must not sleep
+    }
+
+    public void submit(Task task) {
+        tasks.add(task);
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Runs one slice of the task.
+         *
+         * @return whether the task is done
+         */
+        boolean runSlice();
+    }
+}
@@ -1,17 +1,20 @@
 package server.cron;
 
+import server.info.ServerClock;
+import server.shard.ShardLocal;
+
 import java.util.PriorityQueue;
 
 public class TimeoutCron implements ICron {
-    // Singleton
+    // Singleton, one per shard
     // ------------------------------------------------------------------
-    private static final TimeoutCron INSTANCE = new TimeoutCron();
+    private static final ShardLocal<TimeoutCron> INSTANCE = new ShardLocal<>(TimeoutCron::new);
 
     private TimeoutCron() {
     }
 
     public static TimeoutCron getInstance() {
-        return INSTANCE;
+        return INSTANCE.get();
     }
     // ------------------------------------------------------------------
 
@@ -19,14 +22,25 @@ public class TimeoutCron implements ICron {
 
     @Override
     public void run() {
-        while (!timeoutEvents.isEmpty() && timeoutEvents.peek().isTimeout()) {
+        var budget = TimeBudget.perRun();
+        var now = ServerClock.getInstance().millis();
+        while (!timeoutEvents.isEmpty() && timeoutEvents.peek().isTimeout(now)) {
             TimeoutEvent event = timeoutEvents.poll();
             if (event != null) {
                 event.task.run();
             }
+            if (budget.isExhausted()) {
+                break; // the rest is already due, nextRunMillis() makes the loop come straight back
+            }
         }
     }
 
+    @Override
+    public long nextRunMillis() {
+        var next = timeoutEvents.peek();
+        return next == null ? Long.MAX_VALUE : next.deadlineMillis;
+    }
+
     public void registerTimeout(long ttlMillis, Runnable task) {
         timeoutEvents.add(new TimeoutEvent(ttlMillis, task));
     }
@@ -36,7 +50,7 @@ public class TimeoutCron implements ICron {
         Runnable task;
 
         TimeoutEvent(long delayMillis, Runnable task) {
-            this.deadlineMillis = System.currentTimeMillis() + delayMillis;
+            this.deadlineMillis = ServerClock.getInstance().millis() + delayMillis;
             this.task = task;
         }
 
@@ -45,8 +59,8 @@ public class TimeoutCron implements ICron {
             return Long.compare(this.deadlineMillis, o.deadlineMillis);
         }
 
-        public boolean isTimeout() {
-            return System.currentTimeMillis() >= deadlineMillis;
+        public boolean isTimeout(long nowMillis) {
+            return nowMillis >= deadlineMillis;
         }
     }
 }
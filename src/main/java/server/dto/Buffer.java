@@ -1,8 +1,21 @@
 package server.dto;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Byte queue backed by a {@link ByteBuffer} borrowed from the {@link BufferPool}.
+ * <p>
+ * The backing buffer is acquired on the first write and handed back as soon as all data is consumed,
+ * so an idle connection holds no memory.
+ */
 public class Buffer {
-    private byte[] buffer;
-    private int bufferEnd;    // buffer.length
+    private static final int MIN_CAPACITY = 4 * 1024;
+
+    private final BufferPool pool = BufferPool.getInstance();
+    private ByteBuffer buffer; // null while empty
 
     private int dataBegin;    // start of valid data
     private int dataEnd;      // end of valid data
@@ -11,12 +24,7 @@ public class Buffer {
     private int position;     // read position (relative to dataBegin)
     private int mark = -1;
 
-    public Buffer(int initialSize) {
-        this.buffer = new byte[initialSize];
-        this.bufferEnd = buffer.length;
-        this.dataBegin = 0;
-        this.dataEnd = 0;
-        this.position = 0;
+    public Buffer() {
     }
 
     public int dataSize() {
@@ -24,58 +32,115 @@ public class Buffer {
     }
 
     public int freeSpace() {
-        return bufferEnd - dataEnd;
+        return buffer == null ? 0 : buffer.capacity() - dataEnd;
+    }
+
+    /**
+     * Bytes of pooled memory currently held, zero when the buffer is idle.
+     */
+    public int capacity() {
+        return buffer == null ? 0 : buffer.capacity();
     }
 
     public void append(byte[] data, int length) {
+        append(data, 0, length);
+    }
+
+    public void append(byte[] data, int offset, int length) {
         ensureCapacity(length);
-        System.arraycopy(data, 0, buffer, dataEnd, length);
+        buffer.put(dataEnd, data, offset, length);
         dataEnd += length;
     }
 
+    /**
+     * Reads from the channel straight into the free space of the pooled buffer.
+     *
+     * @return bytes read, 0 if the channel has nothing, or -1 on end of stream
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        ensureCapacity(1);
+        buffer.limit(buffer.capacity()).position(dataEnd);
+        int bytesRead = channel.read(buffer);
+        if (bytesRead > 0) {
+            dataEnd += bytesRead;
+        } else if (dataSize() == 0) {
+            release();
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Writes pending data straight from the pooled buffer and consumes what the channel accepted.
+     */
+    public int writeTo(WritableByteChannel channel) throws IOException {
+        if (dataSize() == 0) {
+            return 0;
+        }
+        buffer.limit(dataEnd).position(dataBegin);
+        int written = channel.write(buffer);
+        if (written > 0) {
+            consume(written);
+        }
+        return written;
+    }
+
     public void consume(int length) {
-        if (length > dataSize() - position) {
-            length = dataSize() - position;
+        if (length > dataSize()) {
+            length = dataSize();
         }
-        position += length;
-        dataBegin += position;
-        position = 0;
+        dataBegin += length;
+        position = Math.max(0, position - length);
         mark = -1;
 
-        if (dataBegin > buffer.length / 2) {
+        if (dataSize() == 0) {
+            release();
+        } else if (dataBegin > buffer.capacity() / 2) {
             compact();
         }
     }
 
+    /**
+     * Hands the backing buffer back to the pool, discarding any data.
+     */
+    public void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+        dataBegin = 0;
+        dataEnd = 0;
+        position = 0;
+        mark = -1;
+    }
+
     private void compact() {
         if (dataBegin > 0) {
             int dataLength = dataSize();
-            System.arraycopy(buffer, dataBegin, buffer, 0, dataLength);
+            buffer.put(0, buffer, dataBegin, dataLength);
             dataBegin = 0;
             dataEnd = dataLength;
         }
-        position = 0;
         if (mark >= 0) {
             mark = 0;
         }
     }
 
     private void ensureCapacity(int additionalBytes) {
+        if (buffer == null) {
+            buffer = pool.acquire(Math.max(MIN_CAPACITY, additionalBytes));
+            return;
+        }
         if (freeSpace() < additionalBytes) {
             compact();
 
             if (freeSpace() < additionalBytes) {
-                int newSize = Math.max(buffer.length * 2, dataSize() + additionalBytes);
-                byte[] newBuffer = new byte[newSize];
-                System.arraycopy(buffer, dataBegin, newBuffer, 0, dataSize());
+                int newSize = Math.max(buffer.capacity() * 2, dataSize() + additionalBytes);
+                var newBuffer = pool.acquire(newSize);
+                newBuffer.put(0, buffer, dataBegin, dataSize());
+                pool.release(buffer);
                 buffer = newBuffer;
-                bufferEnd = buffer.length;
                 dataEnd = dataSize();
                 dataBegin = 0;
-                position = 0;
-                if (mark >= 0) {
-                    mark = 0;
-                }
             }
         }
     }
@@ -88,7 +153,7 @@ public class Buffer {
         if (offset >= dataSize()) {
             throw new IndexOutOfBoundsException("Offset beyond data");
         }
-        return buffer[dataBegin + offset];
+        return buffer.get(dataBegin + offset);
     }
 
     public byte peekAndAdvance() {
@@ -97,9 +162,23 @@ public class Buffer {
         return data;
     }
 
+    /**
+     * Returns the offset (relative to the read position) of the first occurrence of {@code b}, or -1.
+     */
+    public int indexOf(byte b) {
+        for (int i = dataBegin + position; i < dataEnd; i++) {
+            if (buffer.get(i) == b) {
+                return i - dataBegin - position;
+            }
+        }
+        return -1;
+    }
+
     public byte[] getData() {
         byte[] data = new byte[dataSize()];
-        System.arraycopy(buffer, dataBegin, data, 0, dataSize());
+        if (data.length > 0) {
+            buffer.get(dataBegin, data, 0, data.length);
+        }
         return data;
     }
 
@@ -108,7 +187,9 @@ public class Buffer {
             throw new IndexOutOfBoundsException("Not enough data");
         }
         byte[] data = new byte[length];
-        System.arraycopy(buffer, dataBegin + offset, data, 0, length);
+        if (length > 0) {
+            buffer.get(dataBegin + offset, data, 0, length);
+        }
         return data;
     }
 
@@ -131,14 +212,16 @@ public class Buffer {
         if (position >= dataSize()) {
             throw new IndexOutOfBoundsException("No more data");
         }
-        return buffer[dataBegin + position++];
+        return buffer.get(dataBegin + position++);
     }
 
     public void get(byte[] dst, int off, int len) {
         if (remaining() < len) {
             throw new IndexOutOfBoundsException("Not enough data");
         }
-        System.arraycopy(buffer, dataBegin + position, dst, off, len);
+        if (len > 0) {
+            buffer.get(dataBegin + position, dst, off, len);
+        }
         position += len;
     }
 
@@ -0,0 +1,99 @@
+package server.dto;
+
+import server.shard.ShardLocal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared pool of direct {@link ByteBuffer}s, grouped by size class.
+ * <p>
+ * Connections borrow a buffer only while they have pending input or output and give it back once drained,
+ * so idle clients hold no buffer memory. Requests above the largest class get a one-off heap buffer of the exact
+ * size, outside of the pool: it is not counted as borrowed and is left to the GC on release.
+ * <p>
+ * Thread-safe: with {@code --io-threads} the I/O threads borrow and return buffers while they read and flush
+ * connections. The lock is uncontended otherwise.
+ */
+public class BufferPool {
+    private static final int[] SIZE_CLASSES = {4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024};
+    private static final int MAX_RETAINED_BYTES_PER_CLASS = 4 * 1024 * 1024;
+
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<BufferPool> INSTANCE = new ShardLocal<>(BufferPool::new);
+
+    private BufferPool() {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            freeLists.add(new ArrayDeque<>());
+        }
+    }
+
+    public static BufferPool getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private final List<ArrayDeque<ByteBuffer>> freeLists = new ArrayList<>(SIZE_CLASSES.length);
+    private long borrowedBytes = 0;
+
+    /**
+     * Returns a cleared buffer with at least {@code minCapacity} bytes.
+     */
+    public synchronized ByteBuffer acquire(int minCapacity) {
+        var sizeClass = sizeClassOf(minCapacity);
+        if (sizeClass < 0) {
+            return ByteBuffer.allocate(minCapacity);
+        }
+        var buffer = freeLists.get(sizeClass).poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(SIZE_CLASSES[sizeClass]);
+        }
+        borrowedBytes += buffer.capacity();
+        return buffer.clear();
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return; // a one-off buffer above the largest class
+        }
+        borrowedBytes -= buffer.capacity();
+        var sizeClass = sizeClassOf(buffer.capacity());
+        if (sizeClass < 0 || SIZE_CLASSES[sizeClass] != buffer.capacity()) {
+            return;
+        }
+        var freeList = freeLists.get(sizeClass);
+        if ((long) (freeList.size() + 1) * SIZE_CLASSES[sizeClass] <= MAX_RETAINED_BYTES_PER_CLASS) {
+            freeList.push(buffer);
+        }
+    }
+
+    /**
+     * Bytes currently held by connections.
+     */
+    public synchronized long getBorrowedBytes() {
+        return borrowedBytes;
+    }
+
+    /**
+     * Bytes of idle buffers kept for reuse.
+     */
+    public synchronized long getRetainedBytes() {
+        long retained = 0;
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            retained += (long) freeLists.get(i).size() * SIZE_CLASSES[i];
+        }
+        return retained;
+    }
+
+    private static int sizeClassOf(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (capacity <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,15 +1,34 @@
 package server.dto;
 
+import error.NotEnoughDataException;
+import protocol.Protocol;
+import redis.RedisCoreHandler;
+import redis.internal.ReadView;
+import redis.processor.RespEncoder;
+import server.info.ClientOutputBufferLimit;
+import server.info.ServerClock;
+import server.info.ServerInfo;
 import stream.BufferReader;
 import stream.BufferWriter;
 import stream.Reader;
 import stream.Writer;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Conn {
-    private static final int BUFFER_SIZE = 64 * 1024; // 64KB initial buffer size
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
 
+    private final long id = NEXT_ID.getAndIncrement();
     private final SocketChannel channel;
     private boolean wantRead = false;
     private boolean wantWrite = false;
@@ -17,15 +36,47 @@ public class Conn {
     private final Writer writer;
     private final Reader reader;
     private final ConnectionType connectionType;
+    private ClientClass clientClass;
+    private SelectionKey selectionKey;
+
+    private final long createdAtMillis = ServerClock.getInstance().millis();
+    private long lastInteractionMillis = createdAtMillis;
+    private Protocol.Command lastCommand = null;
+    private long softLimitReachedMillis = 0; // 0 while under the soft limit
+    private boolean readPaused = false; // requests left unprocessed because the output is above the high watermark
+    private final RespEncoder replyEncoder;
+    private RedisCoreHandler commandHandler; // created on the first command, reused for the whole connection
+
+    // Scheduling budget of the current read event
+    private long eventStartNanos = 0;
+    private int eventCommands = 0;
+    private boolean pendingProcess = false; // queued to resume its buffered requests before the next select
+    // a request was forwarded to the shard owning its key, or is a KEYS run in slices: the pipeline waits for its
+    // reply, see RemoteReply
+    private boolean awaitingRemote = false;
+
+    // Threaded I/O, see IoThreads: requests parsed by an I/O thread ahead of their execution, the read error that
+    // ended them, and the outcome of the last flush by an I/O thread
+    private final Queue<List<byte[]>> prefetched = new ArrayDeque<>();
+    private Exception readFailure = null;
+    private boolean writeFailed = false;
+    private boolean pendingWrite = false; // queued for the next threaded flush
+    private boolean inTransaction = false; // between MULTI and EXEC/DISCARD, its reads are queued by the event loop
+    // served by a virtual thread, see server.virtual.VirtualThreadServer: only that thread reads the socket
+    private final boolean blockingIo;
 
     public Conn(SocketChannel channel, ConnectionType connectionType) {
         this.channel = channel;
         this.wantRead = true;
-        Buffer incoming = new Buffer(BUFFER_SIZE);  // data to be parsed by application
-        Buffer outgoing = new Buffer(BUFFER_SIZE); // responses generated by application
+        // Both buffers borrow pooled memory only while they hold data
+        Buffer incoming = new Buffer();  // data to be parsed by application
+        ReplyChain outgoing = new ReplyChain(); // responses generated by application
         this.writer = new BufferWriter(channel, outgoing);
         this.reader = new BufferReader(channel, incoming);
+        this.replyEncoder = new RespEncoder(writer);
         this.connectionType = connectionType;
+        this.blockingIo = channel.isBlocking();
+        this.clientClass = connectionType == ConnectionType.REPLICA_CONNECT ? ClientClass.MASTER : ClientClass.NORMAL;
     }
 
     public void wantRead() {
@@ -42,11 +93,30 @@ public class Conn {
         this.wantClose = true;
     }
 
+    /**
+     * Closes the channel and hands any pooled buffers back.
+     */
+    public void close() throws IOException {
+        reader.close();
+        writer.close();
+    }
+
+    public long getId() {
+        return id;
+    }
 
     public SocketChannel getChannel() {
         return channel;
     }
 
+    public SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    public void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
     public boolean isWantRead() {
         return wantRead;
     }
@@ -67,12 +137,326 @@ public class Conn {
         return reader;
     }
 
+    public RespEncoder getReplyEncoder() {
+        return replyEncoder;
+    }
+
+    public RedisCoreHandler getCommandHandler() {
+        if (commandHandler == null) {
+            // commands streamed by our master are applied without replying
+            var reply = connectionType == ConnectionType.REPLICA_CONNECT ? RespEncoder.discarding() : replyEncoder;
+            commandHandler = new RedisCoreHandler(this, reply);
+        }
+        return commandHandler;
+    }
+
     public ConnectionType getConnectionType() {
         return connectionType;
     }
 
+    public ClientClass getClientClass() {
+        return clientClass;
+    }
+
+    public void setClientClass(ClientClass clientClass) {
+        this.clientClass = clientClass;
+    }
+
+    public void onCommand(Protocol.Command command, long nowMillis) {
+        this.lastCommand = command;
+        this.lastInteractionMillis = nowMillis;
+    }
+
+    // Fair scheduling
+    // ------------------------------------------------------------------
+
+    /**
+     * Starts the command/time budget of one read event, see {@link #isEventBudgetExhausted()}.
+     */
+    public void startEvent() {
+        eventStartNanos = System.nanoTime();
+        eventCommands = 0;
+    }
+
+    public void incrEventCommands() {
+        eventCommands++;
+    }
+
+    /**
+     * True once the connection has run as many commands, or for as long, as one read event may.
+     */
+    public boolean isEventBudgetExhausted() {
+        var serverInfo = ServerInfo.getInstance();
+        var maxCommands = serverInfo.getClientCommandBudget();
+        if (maxCommands > 0 && eventCommands >= maxCommands) {
+            return true;
+        }
+        var maxMicros = serverInfo.getClientTimeBudgetMicros();
+        return maxMicros > 0 && System.nanoTime() - eventStartNanos >= maxMicros * 1000;
+    }
+
+    public boolean isPendingProcess() {
+        return pendingProcess;
+    }
+
+    public void setPendingProcess(boolean pendingProcess) {
+        this.pendingProcess = pendingProcess;
+    }
+
+    public boolean isAwaitingRemote() {
+        return awaitingRemote;
+    }
+
+    public void setAwaitingRemote(boolean awaitingRemote) {
+        this.awaitingRemote = awaitingRemote;
+    }
+
+    // Threaded I/O and virtual threads
+    // ------------------------------------------------------------------
+
+    /**
+     * On an I/O thread: reads the socket and parses up to {@code max} complete requests for the event loop to
+     * execute. A read error is kept until the requests before it ran, see {@link #nextRequest()}.
+     */
+    public void prefetchRequests(int max) {
+        try {
+            while (prefetched.size() < max) {
+                prefetched.add(reader.readCommand());
+            }
+        } catch (NotEnoughDataException e) {
+            // the rest is not there yet
+        } catch (IOException | RuntimeException e) {
+            readFailure = e;
+        }
+        try {
+            serveReads();
+        } catch (IOException e) {
+            if (readFailure == null) {
+                readFailure = e;
+            }
+        }
+    }
+
+    /**
+     * The next request to execute: the prefetched ones first, then whatever the socket has.
+     */
+    public List<byte[]> nextRequest() throws IOException {
+        var request = prefetched.poll();
+        if (request != null) {
+            return request;
+        }
+        if (readFailure != null) {
+            var failure = readFailure;
+            readFailure = null;
+            if (failure instanceof IOException e) {
+                throw e;
+            }
+            throw (RuntimeException) failure;
+        }
+        if (blockingIo) {
+            throw new NotEnoughDataException(); // the connection's thread reads the rest, see receiveRequests()
+        }
+        return reader.readCommand();
+    }
+
+    /**
+     * Whether requests, complete or not, wait to be executed. With blocking I/O only the complete ones count, the
+     * connection's thread keeps reading for the others.
+     */
+    public boolean hasBufferedRequests() {
+        return !prefetched.isEmpty() || readFailure != null || (!blockingIo && reader.bufferedBytes() > 0);
+    }
+
+    /**
+     * On the connection's virtual thread: blocks until the client sends more bytes, then parses every complete
+     * request they hold for the executor to run.
+     *
+     * @return false once the client closed the connection
+     */
+    public boolean receiveRequests() throws IOException {
+        if (reader.fill() < 0) {
+            return false;
+        }
+        List<byte[]> request;
+        while ((request = reader.parseBufferedCommand()) != null) {
+            prefetched.add(request);
+        }
+        return true;
+    }
+
+    /**
+     * On the connection's own thread, with {@code --concurrent-reads}: answers the reads at the head of the
+     * prefetched requests from the {@link ReadView}. It stops at the first request the event loop must run, the
+     * replies stay in request order.
+     */
+    public void serveReads() throws IOException {
+        if (!ReadView.isEnabled() || inTransaction) {
+            return;
+        }
+        var readView = ReadView.getInstance();
+        List<byte[]> request;
+        while ((request = prefetched.peek()) != null && !isAboveOutputHighWatermark()
+                && readView.tryServe(request, replyEncoder)) {
+            prefetched.poll();
+        }
+    }
+
+    public boolean isInTransaction() {
+        return inTransaction;
+    }
+
+    public void setInTransaction(boolean inTransaction) {
+        this.inTransaction = inTransaction;
+    }
+
+    /**
+     * On an I/O thread: writes as much of the output as the socket takes.
+     */
+    public void flushOutput() {
+        try {
+            writeFailed = writer.flush() < 0;
+        } catch (IOException e) {
+            writeFailed = true;
+        }
+    }
+
+    public boolean isWriteFailed() {
+        return writeFailed;
+    }
+
+    public boolean isPendingWrite() {
+        return pendingWrite;
+    }
+
+    public void setPendingWrite(boolean pendingWrite) {
+        this.pendingWrite = pendingWrite;
+    }
+
+    // Output buffer limits
+    // ------------------------------------------------------------------
+
+    public boolean isReadPaused() {
+        return readPaused;
+    }
+
+    public void setReadPaused(boolean readPaused) {
+        this.readPaused = readPaused;
+    }
+
+    public long getOutputBufferSize() {
+        return writer.pendingBytes();
+    }
+
+    /**
+     * Above the high watermark the connection stops executing (and so reading) requests until its output drains.
+     */
+    public boolean isAboveOutputHighWatermark() {
+        return getOutputBufferSize() >= ServerInfo.getInstance().getOutputBufferHighWatermark();
+    }
+
+    /**
+     * Checks the limits of the client class, starting or clearing the soft limit timer as needed.
+     *
+     * @return true if the client must be disconnected
+     */
+    public boolean isOutputBufferLimitReached(long nowMillis) {
+        if (clientClass == ClientClass.MASTER) {
+            return false; // never drop the link to our master
+        }
+        var limit = ServerInfo.getInstance().getClientOutputBufferLimit(clientClass);
+        var used = getOutputBufferSize();
+        var hard = limit.hardLimitBytes() > 0 && used >= limit.hardLimitBytes();
+        var soft = limit.softLimitBytes() > 0 && used >= limit.softLimitBytes();
+
+        if (soft) {
+            if (softLimitReachedMillis == 0) {
+                softLimitReachedMillis = nowMillis;
+                soft = false;
+            } else if (nowMillis - softLimitReachedMillis <= limit.softLimitSeconds() * 1000) {
+                soft = false;
+            }
+        } else {
+            softLimitReachedMillis = 0;
+        }
+        return hard || soft;
+    }
+
+    /**
+     * One line of CLIENT LIST.
+     */
+    public String getClientInfo(long nowMillis) {
+        var limit = clientClass == ClientClass.MASTER
+                ? ClientOutputBufferLimit.UNLIMITED
+                : ServerInfo.getInstance().getClientOutputBufferLimit(clientClass);
+        String addr;
+        String laddr;
+        boolean unixSocket;
+        try {
+            unixSocket = channel.getLocalAddress() instanceof UnixDomainSocketAddress;
+            laddr = formatAddress(channel.getLocalAddress());
+            // the client end of a unix socket is unnamed, Redis reports the socket path for both
+            addr = unixSocket ? laddr : formatAddress(channel.getRemoteAddress());
+        } catch (IOException e) {
+            unixSocket = false;
+            addr = "?";
+            laddr = "?";
+        }
+        return "id=" + id +
+                " addr=" + addr +
+                " laddr=" + laddr +
+                " age=" + (nowMillis - createdAtMillis) / 1000 +
+                " idle=" + (nowMillis - lastInteractionMillis) / 1000 +
+                " flags=" + clientClass.flag + (unixSocket ? "U" : "") +
+                " qbuf=" + reader.bufferedBytes() +
+                " omem=" + getOutputBufferSize() +
+                " class=" + clientClass.configName() +
+                " obl-hard=" + limit.hardLimitBytes() +
+                " obl-soft=" + limit.softLimitBytes() +
+                " obl-soft-seconds=" + limit.softLimitSeconds() +
+                " cmd=" + (lastCommand == null ? "NULL" : lastCommand.lowerCaseName());
+    }
+
+    private static String formatAddress(SocketAddress address) {
+        return switch (address) {
+            case InetSocketAddress inet -> inet.getAddress().getHostAddress() + ":" + inet.getPort();
+            case UnixDomainSocketAddress unix -> unix.getPath() + ":0";
+            case null, default -> String.valueOf(address);
+        };
+    }
+
     public enum ConnectionType {
         CLIENT_CONNECT,
         REPLICA_CONNECT,
     }
+
+    /**
+     * Output buffer limit class, see {@link ClientOutputBufferLimit}.
+     */
+    public enum ClientClass {
+        NORMAL('N'),
+        REPLICA('S'),
+        PUBSUB('P'),
+        MASTER('M'), // our link to the master, not limited
+        ;
+
+        private final char flag;
+
+        ClientClass(char flag) {
+            this.flag = flag;
+        }
+
+        public String configName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static ClientClass findByConfigName(String name) {
+            for (var clientClass : values()) {
+                if (clientClass != MASTER && clientClass.configName().equalsIgnoreCase(name)) {
+                    return clientClass;
+                }
+            }
+            // redis.conf still accepts "slave" for the replica class
+            return "slave".equalsIgnoreCase(name) ? REPLICA : null;
+        }
+    }
 }
@@ -0,0 +1,202 @@
+package server.dto;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Outgoing replies as a chain of buffer segments, written with a single gathering write.
+ * <p>
+ * Small writes are copied into pooled chunks. Large immutable values are appended as a reference to the caller's
+ * array instead of being copied. Every segment keeps its own write position, so a partial write resumes where the
+ * socket stopped without copying anything again.
+ */
+public class ReplyChain {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int REFERENCE_THRESHOLD = 16 * 1024;
+    private static final int MAX_SEGMENTS_PER_WRITE = 64;
+
+    /**
+     * Pooled memory shared by one or more segments.
+     */
+    private static final class Chunk {
+        final ByteBuffer memory;
+        int fill = 0;
+        int views = 0;
+        private MemorySegment segment; // created on the first off-heap copy
+
+        Chunk(ByteBuffer memory) {
+            this.memory = memory;
+        }
+
+        MemorySegment segment() {
+            if (segment == null) {
+                segment = MemorySegment.ofBuffer(memory);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * A window of pending bytes, either a view of a chunk or a referenced array (chunk is null).
+     */
+    private record Segment(ByteBuffer view, Chunk chunk) {
+    }
+
+    private final BufferPool pool = BufferPool.getInstance();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_SEGMENTS_PER_WRITE];
+    private Chunk tail; // chunk currently accepting copies
+    private long size = 0;
+
+    /**
+     * Pending bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void append(byte[] data) {
+        append(data, 0, data.length);
+    }
+
+    public void append(byte[] data, int offset, int length) {
+        size += length;
+        while (length > 0) {
+            var n = Math.min(length, openTail());
+            tail.memory.put(tail.fill, data, offset, n);
+            commitTail(n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Copies off-heap data, e.g. a value of the off-heap storage engine, straight into the pooled chunks.
+     */
+    public void append(MemorySegment data) {
+        var length = data.byteSize();
+        size += length;
+        long offset = 0;
+        while (length > 0) {
+            var n = (int) Math.min(length, openTail());
+            MemorySegment.copy(data, offset, tail.segment(), tail.fill, n);
+            commitTail(n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Makes sure the tail chunk has room and the last segment is a view of it.
+     *
+     * @return the free bytes of the tail chunk
+     */
+    private int openTail() {
+        if (tail == null || tail.fill == tail.memory.capacity()) {
+            newTail();
+        }
+        var last = segments.peekLast();
+        if (last == null || last.chunk() != tail) {
+            tail.views++;
+            segments.add(new Segment(tail.memory.duplicate().position(tail.fill).limit(tail.fill), tail));
+        }
+        return tail.memory.capacity() - tail.fill;
+    }
+
+    /**
+     * Extends the last segment over {@code n} bytes just copied into the tail chunk.
+     */
+    private void commitTail(int n) {
+        tail.fill += n;
+        segments.peekLast().view().limit(tail.fill);
+    }
+
+    /**
+     * Appends {@code data} without copying when it is large. The caller must never modify the array afterward.
+     */
+    public void appendReference(byte[] data) {
+        if (data.length < REFERENCE_THRESHOLD) {
+            append(data, 0, data.length);
+            return;
+        }
+        segments.add(new Segment(ByteBuffer.wrap(data), null));
+        size += data.length;
+    }
+
+    /**
+     * Writes as many pending segments as the channel accepts in one gathering write.
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        for (var segment : segments) {
+            if (count == gather.length) {
+                break;
+            }
+            gather[count++] = segment.view();
+        }
+        long written;
+        try {
+            written = channel.write(gather, 0, count);
+        } finally {
+            Arrays.fill(gather, 0, count, null);
+        }
+        if (written > 0) {
+            size -= written;
+            dropWritten();
+        }
+        return written;
+    }
+
+    /**
+     * Discards all pending data and hands pooled chunks back.
+     */
+    public void release() {
+        while (!segments.isEmpty()) {
+            releaseSegment(segments.poll());
+        }
+        releaseTail();
+        size = 0;
+    }
+
+    private void dropWritten() {
+        while (!segments.isEmpty() && !segments.peek().view().hasRemaining()) {
+            releaseSegment(segments.poll());
+        }
+        if (segments.isEmpty()) {
+            releaseTail(); // idle connections hold no memory
+        }
+    }
+
+    private void newTail() {
+        var previous = tail;
+        tail = new Chunk(pool.acquire(CHUNK_SIZE));
+        if (previous != null && previous.views == 0) {
+            pool.release(previous.memory);
+        }
+    }
+
+    private void releaseSegment(Segment segment) {
+        var chunk = segment.chunk();
+        if (chunk != null && --chunk.views == 0 && chunk != tail) {
+            pool.release(chunk.memory);
+        }
+    }
+
+    private void releaseTail() {
+        if (tail != null && tail.views == 0) {
+            pool.release(tail.memory);
+            tail = null;
+        }
+    }
+}
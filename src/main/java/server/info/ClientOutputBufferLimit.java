@@ -0,0 +1,26 @@
+package server.info;
+
+import helper.MemoryUnits;
+
+/**
+ * Output buffer limits of one client class, in the style of Redis' {@code client-output-buffer-limit}.
+ * <p>
+ * A client is disconnected as soon as its pending output reaches the hard limit, or when it stays at or above
+ * the soft limit for longer than {@code softLimitSeconds}. A zero limit is disabled.
+ */
+public record ClientOutputBufferLimit(long hardLimitBytes, long softLimitBytes, long softLimitSeconds) {
+    public static final ClientOutputBufferLimit UNLIMITED = new ClientOutputBufferLimit(0, 0, 0);
+
+    public static ClientOutputBufferLimit parse(String hard, String soft, String softSeconds) {
+        var seconds = Long.parseLong(softSeconds);
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid soft limit seconds: " + softSeconds);
+        }
+        return new ClientOutputBufferLimit(MemoryUnits.parse(hard), MemoryUnits.parse(soft), seconds);
+    }
+
+    @Override
+    public String toString() {
+        return hardLimitBytes + " " + softLimitBytes + " " + softLimitSeconds;
+    }
+}
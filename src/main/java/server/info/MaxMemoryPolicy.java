@@ -0,0 +1,57 @@
+package server.info;
+
+import java.util.Locale;
+
+/**
+ * Which keys are evicted once the dataset is above {@code maxmemory}, in the style of Redis' {@code maxmemory-policy}.
+ */
+public enum MaxMemoryPolicy {
+    NOEVICTION(false, false),
+    ALLKEYS_LRU(false, false),
+    VOLATILE_LRU(true, false),
+    ALLKEYS_LFU(false, true),
+    VOLATILE_LFU(true, true),
+    ALLKEYS_RANDOM(false, false),
+    VOLATILE_RANDOM(true, false),
+    VOLATILE_TTL(true, false),
+    ;
+
+    private final boolean volatileOnly;
+    private final boolean lfu;
+
+    MaxMemoryPolicy(boolean volatileOnly, boolean lfu) {
+        this.volatileOnly = volatileOnly;
+        this.lfu = lfu;
+    }
+
+    /**
+     * Only keys with a TTL are candidates.
+     */
+    public boolean isVolatileOnly() {
+        return volatileOnly;
+    }
+
+    /**
+     * Values track an access frequency instead of the last access time.
+     */
+    public boolean isLfu() {
+        return lfu;
+    }
+
+    public boolean isRandom() {
+        return this == ALLKEYS_RANDOM || this == VOLATILE_RANDOM;
+    }
+
+    public String configName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    public static MaxMemoryPolicy findByConfigName(String name) {
+        for (var policy : values()) {
+            if (policy.configName().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
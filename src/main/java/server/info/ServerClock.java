@@ -0,0 +1,37 @@
+package server.info;
+
+import server.shard.ShardLocal;
+
+/**
+ * Wall clock cached once per event loop iteration, so commands and crons don't each read the system clock.
+ * <p>
+ * Until the event loop updates it (e.g. under the blocking server) the clock is read live.
+ */
+public class ServerClock {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ServerClock> INSTANCE = new ShardLocal<>(ServerClock::new);
+
+    private ServerClock() {
+    }
+
+    public static ServerClock getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private volatile boolean cached = false;
+    private volatile long cachedMillis;
+
+    /**
+     * Called by the event loop at the start of every iteration and whenever it wakes up from select.
+     */
+    public void update() {
+        cachedMillis = System.currentTimeMillis();
+        cached = true;
+    }
+
+    public long millis() {
+        return cached ? cachedMillis : System.currentTimeMillis();
+    }
+}
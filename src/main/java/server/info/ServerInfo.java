@@ -1,11 +1,33 @@
 package server.info;
 
 import helper.ArgumentExtractor;
+import helper.MemoryUnits;
+import redis.internal.ReadView;
+import redis.internal.RedisDb;
+import redis.internal.ReplyCache;
+import redis.internal.SlabAllocator;
+import server.cron.ReplicateDataCron;
+import server.dto.BufferPool;
+import server.dto.Conn;
+import server.nonblocking.ClientRegistry;
+import server.shard.ShardCoordinator;
+import server.shard.Shards;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 public class ServerInfo {
     // Singleton
@@ -21,21 +43,61 @@ public class ServerInfo {
     // ------------------------------------------------------------------
 
     private final Map<InfoKey, String> SERVER_INFO = new HashMap<>();
+    private final Map<Conn.ClientClass, ClientOutputBufferLimit> OUTPUT_BUFFER_LIMITS = new EnumMap<>(Conn.ClientClass.class);
+    private long outputBufferHighWatermark;
+    private int hz = DEFAULT_HZ;
+    private int clientCommandBudget = DEFAULT_CLIENT_COMMAND_BUDGET;
+    private long clientTimeBudgetMicros = DEFAULT_CLIENT_TIME_BUDGET_MICROS;
+    private long replyCacheMaxMemory;
+    private long maxMemory;
+    private MaxMemoryPolicy maxMemoryPolicy = MaxMemoryPolicy.NOEVICTION;
+    private int maxMemorySamples = DEFAULT_MAXMEMORY_SAMPLES;
+    private int lfuLogFactor = DEFAULT_LFU_LOG_FACTOR;
+    private int lfuDecayTime = DEFAULT_LFU_DECAY_TIME;
+    private StorageEngine storageEngine = StorageEngine.HEAP;
+    private int shards = 1;
+    private int ioThreads = 1;
+    private ServerMode serverMode = ServerMode.NIO;
+    private boolean concurrentReads = false;
 
     // Default value
     private static final int DEFAULT_PORT = 6379;
     private static final String DEFAULT_HOSTNAME = "localhost";
     private static final String DEFAULT_MASTER_REP_ID = "8371b4fb1155b71f4a04d3e1bc3e18c4a990aeeb"; // hardcode for now
+    private static final String DEFAULT_CLIENT_OUTPUT_BUFFER_LIMIT = "normal 0 0 0 replica 256mb 64mb 60 pubsub 32mb 8mb 60";
+    private static final String DEFAULT_OUTPUT_BUFFER_HIGH_WATERMARK = "1mb";
+    private static final int DEFAULT_HZ = 10;
+    private static final int MIN_HZ = 1;
+    private static final int MAX_HZ = 500;
+    private static final int DEFAULT_CLIENT_COMMAND_BUDGET = 1000;
+    private static final long DEFAULT_CLIENT_TIME_BUDGET_MICROS = 1000;
+    private static final String DEFAULT_REPLY_CACHE_MAX_MEMORY = "16mb";
+    private static final int DEFAULT_MAXMEMORY_SAMPLES = 5;
+    private static final int DEFAULT_LFU_LOG_FACTOR = 10;
+    private static final int DEFAULT_LFU_DECAY_TIME = 1;
+    private static final int MAX_IO_THREADS = 128; // same as Redis
 
     public void init(String[] args) {
         setDefaultValue();
 
         // custom configurable values
         setPort(args);
+        setUnixSocket(args);
         setMasterInfo(args);
+        setOutputBufferLimits(args);
+        setHz(args);
+        setClientBudget(args);
+        setReplyCacheMaxMemory(args);
+        setMaxMemory(args);
+        setStorageEngine(args);
+        setShards(args);
+        setIoThreads(args);
+        setServerMode(args);
+        setConcurrentReads(args);
     }
 
     private void setDefaultValue() {
+        SERVER_INFO.clear(); // nothing left over from a previous init, e.g. a unix socket
         SERVER_INFO.put(InfoKey.ROLE, "master");
         SERVER_INFO.put(InfoKey.PORT, String.valueOf(DEFAULT_PORT));
         SERVER_INFO.put(InfoKey.HOST_NAME, DEFAULT_HOSTNAME);
@@ -47,13 +109,223 @@ public class ServerInfo {
         Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--replicaof"))
                 .map(ArgumentExtractor.Pair::value)
                 .ifPresent(masterInfo -> {
-                    var info = masterInfo.split(" ");
-                    SERVER_INFO.put(InfoKey.MASTER_HOSTNAME, info[0]);
-                    SERVER_INFO.put(InfoKey.MASTER_PORT, info[1]);
+                    var info = masterInfo.trim().split(" ");
+                    if (info.length == 1) {
+                        // "--replicaof /path/to/redis.sock" replicates over the master's unix socket
+                        SERVER_INFO.put(InfoKey.MASTER_UNIX_SOCKET, info[0]);
+                    } else {
+                        SERVER_INFO.put(InfoKey.MASTER_HOSTNAME, info[0]);
+                        SERVER_INFO.put(InfoKey.MASTER_PORT, info[1]);
+                    }
                     SERVER_INFO.put(InfoKey.ROLE, "slave");
                 });
     }
 
+    /**
+     * {@code --unixsocket <path>} also listens on a unix domain socket, {@code --unixsocketperm <octal>} sets the
+     * permissions of the socket file, e.g. 700.
+     */
+    private void setUnixSocket(String[] args) {
+        Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--unixsocket"))
+                .map(ArgumentExtractor.Pair::value)
+                .ifPresent(path -> SERVER_INFO.put(InfoKey.UNIX_SOCKET, path));
+        Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--unixsocketperm"))
+                .map(ArgumentExtractor.Pair::value)
+                .ifPresent(perm -> SERVER_INFO.put(InfoKey.UNIX_SOCKET_PERM, perm));
+    }
+
+    /**
+     * {@code --client-output-buffer-limit "<class> <hard> <soft> <soft seconds> ..."}, classes not listed keep
+     * their default. {@code --output-buffer-high-watermark <bytes>} pauses reading from a client while its output
+     * is above that size.
+     */
+    private void setOutputBufferLimits(String[] args) {
+        parseOutputBufferLimits(DEFAULT_CLIENT_OUTPUT_BUFFER_LIMIT);
+        Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--client-output-buffer-limit"))
+                .map(ArgumentExtractor.Pair::value)
+                .ifPresent(this::parseOutputBufferLimits);
+
+        outputBufferHighWatermark = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--output-buffer-high-watermark"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(MemoryUnits::parse)
+                .orElseGet(() -> MemoryUnits.parse(DEFAULT_OUTPUT_BUFFER_HIGH_WATERMARK));
+    }
+
+    private void parseOutputBufferLimits(String value) {
+        var tokens = value.trim().split("\\s+");
+        if (tokens.length % 4 != 0) {
+            throw new IllegalArgumentException("Wrong number of arguments in client-output-buffer-limit: " + value);
+        }
+        for (int i = 0; i < tokens.length; i += 4) {
+            var clientClass = Conn.ClientClass.findByConfigName(tokens[i]);
+            if (clientClass == null) {
+                throw new IllegalArgumentException("Invalid client class in client-output-buffer-limit: " + tokens[i]);
+            }
+            OUTPUT_BUFFER_LIMITS.put(clientClass, ClientOutputBufferLimit.parse(tokens[i + 1], tokens[i + 2], tokens[i + 3]));
+        }
+    }
+
+    /**
+     * {@code --hz <n>}: how many times per second periodic crons run, clamped to 1..500 like Redis.
+     */
+    private void setHz(String[] args) {
+        int value = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--hz"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_HZ);
+        hz = Math.clamp(value, MIN_HZ, MAX_HZ);
+    }
+
+    /**
+     * {@code --client-command-budget <n>} and {@code --client-time-budget-us <n>}: how many commands, and for how
+     * long, one client may run per read event before the rest of its pipeline waits for the other clients.
+     * 0 disables a budget.
+     */
+    private void setClientBudget(String[] args) {
+        clientCommandBudget = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--client-command-budget"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_CLIENT_COMMAND_BUDGET);
+        clientTimeBudgetMicros = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--client-time-budget-us"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Long::parseLong)
+                .orElse(DEFAULT_CLIENT_TIME_BUDGET_MICROS);
+    }
+
+    /**
+     * {@code --reply-cache-max-memory <bytes>}: how much memory the pre-encoded GET replies may take, 0 disables
+     * the cache.
+     */
+    private void setReplyCacheMaxMemory(String[] args) {
+        replyCacheMaxMemory = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--reply-cache-max-memory"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(MemoryUnits::parse)
+                .orElseGet(() -> MemoryUnits.parse(DEFAULT_REPLY_CACHE_MAX_MEMORY));
+    }
+
+    /**
+     * {@code --maxmemory <bytes>} bounds the dataset, 0 for no limit. {@code --maxmemory-policy <policy>} picks
+     * which keys are evicted above it, sampling {@code --maxmemory-samples <n>} keys per eviction.
+     * {@code --lfu-log-factor <n>} and {@code --lfu-decay-time <minutes>} tune the LFU counter.
+     */
+    private void setMaxMemory(String[] args) {
+        maxMemory = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--maxmemory"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(MemoryUnits::parse)
+                .orElse(0L);
+        maxMemoryPolicy = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--maxmemory-policy"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(name -> Optional.ofNullable(MaxMemoryPolicy.findByConfigName(name))
+                        .orElseThrow(() -> new IllegalArgumentException("Invalid maxmemory-policy: " + name)))
+                .orElse(MaxMemoryPolicy.NOEVICTION);
+        maxMemorySamples = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--maxmemory-samples"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_MAXMEMORY_SAMPLES);
+        lfuLogFactor = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--lfu-log-factor"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_LFU_LOG_FACTOR);
+        lfuDecayTime = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--lfu-decay-time"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_LFU_DECAY_TIME);
+    }
+
+    /**
+     * {@code --storage-engine heap|offheap} picks where string values are kept. Values already stored keep their
+     * representation.
+     */
+    private void setStorageEngine(String[] args) {
+        storageEngine = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--storage-engine"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(name -> Optional.ofNullable(StorageEngine.findByConfigName(name))
+                        .orElseThrow(() -> new IllegalArgumentException("Invalid storage-engine: " + name)))
+                .orElse(StorageEngine.HEAP);
+    }
+
+    /**
+     * {@code --shards <n>} splits the keyspace into n shards, each served by its own event loop thread, see
+     * {@link server.shard.Shards}. 1, the default, keeps the single event loop. Replication needs a single loop.
+     */
+    private void setShards(String[] args) {
+        shards = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--shards"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(1);
+        if (shards < 1 || shards > Shards.MAX_SHARDS) {
+            throw new IllegalArgumentException("Invalid shards: " + shards + ", must be between 1 and " + Shards.MAX_SHARDS);
+        }
+        if (shards > 1 && isReplica()) {
+            throw new IllegalArgumentException("--shards is not supported with --replicaof");
+        }
+    }
+
+    /**
+     * {@code --io-threads <n>}: threads reading and parsing requests and writing replies, the event loop counted,
+     * see {@link server.nonblocking.IoThreads}. 1, the default, does all I/O on the event loop. Commands always
+     * run on the event loop.
+     */
+    private void setIoThreads(String[] args) {
+        ioThreads = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--io-threads"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(Integer::parseInt)
+                .orElse(1);
+        if (ioThreads < 1 || ioThreads > MAX_IO_THREADS) {
+            throw new IllegalArgumentException("Invalid io-threads: " + ioThreads + ", must be between 1 and " + MAX_IO_THREADS);
+        }
+        if (ioThreads > 1 && shards > 1) {
+            throw new IllegalArgumentException("--io-threads is not supported with --shards, each shard does its own I/O");
+        }
+    }
+
+    /**
+     * {@code --server-mode nio|virtual-threads}: selector event loops, the default, or a virtual thread per
+     * connection, see {@link server.virtual.VirtualThreadServer}. Both run the commands of a shard on one thread.
+     */
+    private void setServerMode(String[] args) {
+        serverMode = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--server-mode"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(name -> Optional.ofNullable(ServerMode.findByConfigName(name))
+                        .orElseThrow(() -> new IllegalArgumentException("Invalid server-mode: " + name)))
+                .orElse(ServerMode.NIO);
+        if (serverMode == ServerMode.VIRTUAL_THREADS && isReplica()) {
+            throw new IllegalArgumentException("--server-mode virtual-threads is not supported with --replicaof");
+        }
+        if (serverMode == ServerMode.VIRTUAL_THREADS && ioThreads > 1) {
+            throw new IllegalArgumentException("--io-threads is not supported with --server-mode virtual-threads, "
+                    + "each connection does its own I/O");
+        }
+    }
+
+    /**
+     * {@code --concurrent-reads yes|no}: GET, LLEN, LRANGE and EXISTS are answered from a published copy of the
+     * keyspace by the threads doing the I/O, see {@link redis.internal.ReadView}. Needs such threads, virtual ones or
+     * {@code --io-threads}, and a single shard.
+     * <p>
+     * The copy costs about 70 bytes per key on top of the keyspace, plus the element references of the lists LRANGE
+     * reads. It is counted in {@code used_memory}, so {@code maxmemory} evicts keys to make room for it.
+     */
+    private void setConcurrentReads(String[] args) {
+        concurrentReads = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--concurrent-reads"))
+                .map(ArgumentExtractor.Pair::value)
+                .map(value -> switch (value.toLowerCase()) {
+                    case "yes" -> true;
+                    case "no" -> false;
+                    default -> throw new IllegalArgumentException("Invalid concurrent-reads: " + value);
+                })
+                .orElse(false);
+        if (!concurrentReads) {
+            return;
+        }
+        if (shards > 1) {
+            throw new IllegalArgumentException("--concurrent-reads is not supported with --shards");
+        }
+        if (serverMode != ServerMode.VIRTUAL_THREADS && ioThreads == 1) {
+            throw new IllegalArgumentException("--concurrent-reads needs --server-mode virtual-threads or --io-threads");
+        }
+    }
+
     private void setPort(String[] args) {
         int port = Optional.ofNullable(ArgumentExtractor.extractByKey(args, "--port"))
                 .map(ArgumentExtractor.Pair::value)
@@ -74,6 +346,28 @@ public class ServerInfo {
         return SERVER_INFO.get(InfoKey.HOST_NAME);
     }
 
+    /**
+     * The unix socket path to listen on, or null if only TCP is enabled.
+     */
+    public String getUnixSocket() {
+        return SERVER_INFO.get(InfoKey.UNIX_SOCKET);
+    }
+
+    /**
+     * The octal permissions of the unix socket file, or null to keep the default.
+     */
+    public String getUnixSocketPerm() {
+        return SERVER_INFO.get(InfoKey.UNIX_SOCKET_PERM);
+    }
+
+    public SocketAddress getMasterAddress() {
+        var unixSocket = SERVER_INFO.get(InfoKey.MASTER_UNIX_SOCKET);
+        if (unixSocket != null) {
+            return UnixDomainSocketAddress.of(unixSocket);
+        }
+        return new InetSocketAddress(getMasterHostName(), getMasterPort());
+    }
+
     public int getMasterPort() {
         return Integer.parseInt(SERVER_INFO.get(InfoKey.MASTER_PORT));
     }
@@ -86,11 +380,235 @@ public class ServerInfo {
         return Objects.equals(SERVER_INFO.get(InfoKey.ROLE), "slave");
     }
 
+    public ClientOutputBufferLimit getClientOutputBufferLimit(Conn.ClientClass clientClass) {
+        return OUTPUT_BUFFER_LIMITS.getOrDefault(clientClass, ClientOutputBufferLimit.UNLIMITED);
+    }
+
+    public long getOutputBufferHighWatermark() {
+        return outputBufferHighWatermark;
+    }
+
+    public int getHz() {
+        return hz;
+    }
+
+    public int getClientCommandBudget() {
+        return clientCommandBudget;
+    }
+
+    public long getClientTimeBudgetMicros() {
+        return clientTimeBudgetMicros;
+    }
+
+    public long getReplyCacheMaxMemory() {
+        return replyCacheMaxMemory;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public MaxMemoryPolicy getMaxMemoryPolicy() {
+        return maxMemoryPolicy;
+    }
+
+    public int getMaxMemorySamples() {
+        return maxMemorySamples;
+    }
+
+    public int getLfuLogFactor() {
+        return lfuLogFactor;
+    }
+
+    public int getLfuDecayTime() {
+        return lfuDecayTime;
+    }
+
+    public StorageEngine getStorageEngine() {
+        return storageEngine;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public ServerMode getServerMode() {
+        return serverMode;
+    }
+
+    public boolean isConcurrentReads() {
+        return concurrentReads;
+    }
+
+    /**
+     * With shards, only called while the other shards are parked, see {@link ShardCoordinator}: the keyspace sums
+     * every shard, the other sections describe the shard the caller runs on.
+     */
     public String getAllInfo() {
+        var sections = new ArrayList<>(List.of(
+                getServerInfo(),
+                getClientsInfo(),
+                getMemoryInfo(),
+                getStatsInfo(),
+                getReplicationInfo(),
+                getKeyspaceInfo()
+        ));
+        if (shards > 1) {
+            sections.add(getShardsInfo());
+        }
+        return String.join("\n\n", sections);
+    }
+
+    /**
+     * Returns one INFO section, or every section for {@code null}, "all" and "default".
+     */
+    public String getInfo(String section) {
+        if (section == null) {
+            return getAllInfo();
+        }
+        return switch (section.toLowerCase()) {
+            case "server" -> getServerInfo();
+            case "clients" -> getClientsInfo();
+            case "memory" -> getMemoryInfo();
+            case "stats" -> getStatsInfo();
+            case "replication" -> getReplicationInfo();
+            case "keyspace" -> getKeyspaceInfo();
+            case "shards" -> shards > 1 ? getShardsInfo() : "";
+            case "all", "default", "everything" -> getAllInfo();
+            default -> "";
+        };
+    }
+
+    public String getKeyspaceInfo() {
+        if (shards == 1) {
+            return RedisDb.getInstance().getInfo();
+        }
+        long keys = 0, expires = 0;
+        for (int shardId = 0; shardId < shards; shardId++) {
+            var db = onShard(shardId, RedisDb::getInstance);
+            keys += db.size();
+            expires += db.volatileSize();
+        }
         return String.join("\n",
+                "# Keyspace",
+                "db0:keys=" + keys + ",expires=" + expires
+        );
+    }
+
+    /**
+     * Keys, memory and clients of every shard.
+     */
+    public String getShardsInfo() {
+        var lines = new ArrayList<String>();
+        lines.add("# Shards");
+        for (int shardId = 0; shardId < shards; shardId++) {
+            lines.add(onShard(shardId, () -> {
+                var db = RedisDb.getInstance();
+                return "shard" + Shards.current() + ":keys=" + db.size()
+                        + ",expires=" + db.volatileSize()
+                        + ",used_memory=" + db.usedMemory()
+                        + ",clients=" + ClientRegistry.getInstance().size();
+            }));
+        }
+        return String.join("\n", lines);
+    }
+
+    private static <T> T onShard(int shardId, Supplier<T> supplier) {
+        try {
+            return ShardCoordinator.withShard(shardId, supplier::get);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getServerInfo() {
+        return String.join("\n",
+                "# Server",
+                "tcp_port:" + SERVER_INFO.get(InfoKey.PORT),
+                "shards:" + shards,
+                "io_threads:" + ioThreads,
+                "server_mode:" + serverMode.configName(),
+                "concurrent_reads:" + (concurrentReads ? "yes" : "no"),
+                "hz:" + hz,
+                "client_command_budget:" + clientCommandBudget,
+                "client_time_budget_us:" + clientTimeBudgetMicros
+        );
+    }
+
+    /**
+     * The keyspace estimates of RedisDb plus the connection buffers, which are left out of maxmemory like Redis leaves
+     * out replica buffers: evicting keys does not shrink them. The fragmentation ratio compares the heap the JVM
+     * holds to the keyspace estimate, garbage not yet collected included.
+     */
+    public String getMemoryInfo() {
+        var db = RedisDb.getInstance();
+        var pool = BufferPool.getInstance();
+        var keyspace = db.usedMemory();
+        var clients = pool.getBorrowedBytes();
+        var used = keyspace + clients;
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long gcCollections = 0, gcMillis = 0;
+        for (var gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCollections += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        return String.join("\n",
+                "# Memory",
+                "used_memory:" + used,
+                "used_memory_dataset:" + db.datasetMemory(),
+                "used_memory_dataset_perc:" + String.format(Locale.ROOT, "%.2f%%", used == 0 ? 0.0 : 100.0 * db.datasetMemory() / used),
+                "used_memory_overhead:" + (db.overheadMemory() + clients),
+                "mem_clients:" + clients,
+                "mem_not_counted_for_evict:" + clients,
+                "mem_buffer_pool_retained:" + pool.getRetainedBytes(),
+                "used_memory_heap:" + heap.getUsed(),
+                "used_memory_heap_committed:" + heap.getCommitted(),
+                "mem_fragmentation_ratio:" + String.format(Locale.ROOT, "%.2f", keyspace == 0 ? 0.0 : (double) heap.getCommitted() / keyspace),
+                "gc_collections:" + gcCollections,
+                "gc_time_ms:" + gcMillis,
+                "storage_engine:" + storageEngine.configName(),
+                SlabAllocator.getInstance().getInfo(),
+                "maxmemory:" + maxMemory,
+                "maxmemory_policy:" + maxMemoryPolicy.configName()
+        );
+    }
+
+    public String getStatsInfo() {
+        return String.join("\n",
+                ServerStats.getInstance().getInfo(),
+                ReplyCache.getInstance().getInfo(),
+                ReadView.getInstance().getInfo()
+        );
+    }
+
+    public String getReplicationInfo() {
+        return String.join("\n",
+                "# Replication",
                 "role:" + SERVER_INFO.get(InfoKey.ROLE),
                 "master_replid:" + SERVER_INFO.get(InfoKey.MASTER_REPL_ID),
-                "master_repl_offset:" + SERVER_INFO.get(InfoKey.MASTER_REPL_OFFSET)
+                "master_repl_offset:" + SERVER_INFO.get(InfoKey.MASTER_REPL_OFFSET),
+                ReplicateDataCron.getInstance().getInfo()
+        );
+    }
+
+    public String getClientsInfo() {
+        var limits = new StringBuilder();
+        for (var entry : OUTPUT_BUFFER_LIMITS.entrySet()) {
+            if (!limits.isEmpty()) {
+                limits.append(' ');
+            }
+            limits.append(entry.getKey().configName()).append(' ').append(entry.getValue());
+        }
+        return String.join("\n",
+                "# Clients",
+                "connected_clients:" + ClientRegistry.getInstance().size(),
+                "client_recent_max_output_buffer:" + ClientRegistry.getInstance().getMaxOutputBufferSize(),
+                "output_buffer_high_watermark:" + outputBufferHighWatermark,
+                "client_output_buffer_limit:" + limits
         );
     }
 
@@ -100,6 +618,9 @@ public class ServerInfo {
         PORT,
         MASTER_PORT,
         MASTER_HOSTNAME,
+        MASTER_UNIX_SOCKET,
+        UNIX_SOCKET,
+        UNIX_SOCKET_PERM,
         MASTER_REPL_ID,
         MASTER_REPL_OFFSET,
         ;
@@ -0,0 +1,31 @@
+package server.info;
+
+/**
+ * How connections are served, chosen with {@code --server-mode}.
+ */
+public enum ServerMode {
+    // selector event loops, see server.nonblocking.NonBlockingServer
+    NIO("nio"),
+    // one virtual thread per connection, see server.virtual.VirtualThreadServer
+    VIRTUAL_THREADS("virtual-threads"),
+    ;
+
+    private final String configName;
+
+    ServerMode(String configName) {
+        this.configName = configName;
+    }
+
+    public String configName() {
+        return configName;
+    }
+
+    public static ServerMode findByConfigName(String name) {
+        for (var mode : values()) {
+            if (mode.configName.equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,102 @@
+package server.info;
+
+import server.shard.ShardLocal;
+
+import java.util.Locale;
+
+/**
+ * Counters reported by INFO. Only updated from the event loop thread.
+ */
+public class ServerStats {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ServerStats> INSTANCE = new ShardLocal<>(ServerStats::new);
+
+    private ServerStats() {
+    }
+
+    public static ServerStats getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private long totalConnectionsReceived = 0;
+    private long outputBufferLimitDisconnections = 0;
+    private long totalCommandsProcessed = 0;
+    private long pipelineBatches = 0;
+    private long maxPipelineDepth = 0;
+    private long clientPreemptions = 0;
+    private long expiredKeys = 0;
+    private long expireCycleNanos = 0;
+    private long evictedKeys = 0;
+    private long oomRejections = 0;
+    private long ioThreadedReads = 0;
+    private long ioThreadedWrites = 0;
+
+    public void incrConnectionsReceived() {
+        totalConnectionsReceived++;
+    }
+
+    public void incrOutputBufferLimitDisconnections() {
+        outputBufferLimitDisconnections++;
+    }
+
+    public void incrClientPreemptions() {
+        clientPreemptions++;
+    }
+
+    public void incrExpiredKeys() {
+        expiredKeys++;
+    }
+
+    public void incrEvictedKeys() {
+        evictedKeys++;
+    }
+
+    public void incrOomRejections() {
+        oomRejections++;
+    }
+
+    public void addIoThreadedReads(int reads) {
+        ioThreadedReads += reads;
+    }
+
+    public void addIoThreadedWrites(int writes) {
+        ioThreadedWrites += writes;
+    }
+
+    public void addExpireCycleNanos(long nanos) {
+        expireCycleNanos += nanos;
+    }
+
+    /**
+     * Records the requests executed for one read event, i.e. the depth of the client's pipeline.
+     */
+    public void recordPipelineBatch(int commands) {
+        if (commands == 0) {
+            return;
+        }
+        totalCommandsProcessed += commands;
+        pipelineBatches++;
+        maxPipelineDepth = Math.max(maxPipelineDepth, commands);
+    }
+
+    public String getInfo() {
+        return String.join("\n",
+                "# Stats",
+                "total_connections_received:" + totalConnectionsReceived,
+                "client_output_buffer_limit_disconnections:" + outputBufferLimitDisconnections,
+                "total_commands_processed:" + totalCommandsProcessed,
+                "total_pipeline_batches:" + pipelineBatches,
+                "avg_pipeline_depth:" + String.format(Locale.ROOT, "%.2f", pipelineBatches == 0 ? 0.0 : (double) totalCommandsProcessed / pipelineBatches),
+                "max_pipeline_depth:" + maxPipelineDepth,
+                "client_preemptions:" + clientPreemptions,
+                "expired_keys:" + expiredKeys,
+                "expire_cycle_cpu_ms:" + expireCycleNanos / 1_000_000,
+                "evicted_keys:" + evictedKeys,
+                "oom_rejected_commands:" + oomRejections,
+                "io_threaded_reads_processed:" + ioThreadedReads,
+                "io_threaded_writes_processed:" + ioThreadedWrites
+        );
+    }
+}
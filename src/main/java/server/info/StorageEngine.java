@@ -0,0 +1,30 @@
+package server.info;
+
+/**
+ * Where string values are kept, chosen with {@code --storage-engine}.
+ */
+public enum StorageEngine {
+    HEAP("heap"),
+    // in off-heap slabs, see redis.internal.SlabAllocator
+    OFF_HEAP("offheap"),
+    ;
+
+    private final String configName;
+
+    StorageEngine(String configName) {
+        this.configName = configName;
+    }
+
+    public String configName() {
+        return configName;
+    }
+
+    public static StorageEngine findByConfigName(String name) {
+        for (var engine : values()) {
+            if (engine.configName.equalsIgnoreCase(name)) {
+                return engine;
+            }
+        }
+        return null;
+    }
+}
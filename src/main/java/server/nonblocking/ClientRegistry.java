@@ -0,0 +1,129 @@
+package server.nonblocking;
+
+import server.dto.Conn;
+import server.info.ServerStats;
+import server.shard.ShardLocal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * All live connections of the event loop, for CLIENT LIST, INFO and the clients cron.
+ */
+public class ClientRegistry {
+    // Singleton, one per shard
+    // ------------------------------------------------------------------
+    private static final ShardLocal<ClientRegistry> INSTANCE = new ShardLocal<>(ClientRegistry::new);
+
+    private ClientRegistry() {
+    }
+
+    public static ClientRegistry getInstance() {
+        return INSTANCE.get();
+    }
+    // ------------------------------------------------------------------
+
+    private final NavigableMap<Long, Conn> clients = new TreeMap<>(); // by id, i.e. by connection order
+    private final Queue<Conn> pendingClose = new ArrayDeque<>();
+    private final Queue<Conn> pendingProcess = new ArrayDeque<>();
+
+    public void register(Conn conn) {
+        clients.put(conn.getId(), conn);
+    }
+
+    public void unregister(Conn conn) {
+        clients.remove(conn.getId());
+        if (conn.isPendingProcess()) {
+            pendingProcess.remove(conn);
+        }
+    }
+
+    public Collection<Conn> getClients() {
+        return Collections.unmodifiableCollection(clients.values());
+    }
+
+    /**
+     * Clients connected after the one with the given id, so a cron can resume where it stopped.
+     */
+    public Collection<Conn> getClientsAfter(long id) {
+        return Collections.unmodifiableCollection(clients.tailMap(id, false).values());
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    public long getMaxOutputBufferSize() {
+        long max = 0;
+        for (var conn : clients.values()) {
+            max = Math.max(max, conn.getOutputBufferSize());
+        }
+        return max;
+    }
+
+    /**
+     * Closes the connection at the end of the current event loop iteration, even if its socket has no pending event.
+     */
+    public void closeAsync(Conn conn) {
+        if (!conn.isWantClose()) {
+            conn.wantClose();
+            pendingClose.add(conn);
+        }
+    }
+
+    /**
+     * Checks the output buffer limits of the connection and schedules it for closing when they are reached.
+     *
+     * @return true if the connection is being closed
+     */
+    public boolean closeIfOutputBufferLimitReached(Conn conn, long nowMillis) {
+        if (conn.isWantClose()) {
+            return true;
+        }
+        if (!conn.isOutputBufferLimitReached(nowMillis)) {
+            return false;
+        }
+        System.err.printf("Client id=%d (%s) closed for overcoming of output buffer limits - omem=%d%n",
+                conn.getId(), conn.getClientClass().configName(), conn.getOutputBufferSize());
+        ServerStats.getInstance().incrOutputBufferLimitDisconnections();
+        closeAsync(conn);
+        return true;
+    }
+
+    /**
+     * Queues a connection that used up its budget with requests still buffered, the event loop resumes it
+     * before the next select since its socket may not become readable again.
+     */
+    public void schedulePending(Conn conn) {
+        if (!conn.isPendingProcess()) {
+            conn.setPendingProcess(true);
+            pendingProcess.add(conn);
+        }
+    }
+
+    public boolean hasPendingProcess() {
+        return !pendingProcess.isEmpty();
+    }
+
+    public Conn pollPendingClose() {
+        return pendingClose.poll();
+    }
+
+    /**
+     * Takes the connections queued so far, the ones preempted again while processing them wait for the next round.
+     */
+    public List<Conn> drainPendingProcess() {
+        var conns = new ArrayList<>(pendingProcess);
+        pendingProcess.clear();
+        for (var conn : conns) {
+            conn.setPendingProcess(false);
+        }
+        return conns;
+    }
+}
@@ -0,0 +1,77 @@
+package server.nonblocking;
+
+import server.dto.Conn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Threaded I/O like Redis 6 {@code io-threads}: the event loop hands the connections that are ready to a few
+ * threads, to read and parse their requests or to flush their replies, takes a share itself and waits for all of
+ * them. Commands still run one at a time on the event loop, so their semantics do not change.
+ * <p>
+ * A connection belongs to one thread at a time. During a phase only the thread it was assigned to touches its
+ * input or output, and the event loop touches nothing of it until the phase is over, which also publishes the
+ * I/O threads' work to it. wantRead/wantWrite and the selection key are only ever changed by the event loop.
+ */
+public class IoThreads {
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * @param threads the number of threads doing I/O, the event loop included
+     */
+    public IoThreads(int threads) {
+        this.threads = threads;
+        var ids = new AtomicInteger(1);
+        this.executor = Executors.newFixedThreadPool(threads - 1, task -> {
+            var thread = new Thread(task, "io-thread-" + ids.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs the task on every connection, spread over the threads, and returns once all are done.
+     */
+    public void run(List<Conn> conns, Consumer<Conn> task) {
+        // a single connection is not worth the handoff
+        var workers = Math.min(threads, conns.size());
+        if (workers < 2) {
+            conns.forEach(task);
+            return;
+        }
+        var futures = new ArrayList<Future<?>>(workers - 1);
+        for (int worker = 1; worker < workers; worker++) {
+            var first = worker;
+            futures.add(executor.submit(() -> runShare(conns, task, first, workers)));
+        }
+        runShare(conns, task, 0, workers);
+        for (var future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the I/O threads", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("I/O thread failed", e.getCause());
+            }
+        }
+    }
+
+    private static void runShare(List<Conn> conns, Consumer<Conn> task, int first, int step) {
+        for (int i = first; i < conns.size(); i += step) {
+            task.accept(conns.get(i));
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
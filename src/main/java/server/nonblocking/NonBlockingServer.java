@@ -2,31 +2,51 @@ package server.nonblocking;
 
 import handler.IConnHandler;
 import server.Server;
+import server.ServerSockets;
+import server.cron.ClientsCron;
+import server.cron.DatabaseCron;
+import server.cron.ICron;
 import server.cron.ReplicateDataCron;
+import server.cron.ScanCron;
 import server.cron.TimeoutCron;
 import server.dto.Conn;
+import server.info.ServerClock;
 import server.info.ServerInfo;
+import server.info.ServerStats;
+import server.shard.ShardLoop;
+import server.shard.ShardThread;
+import server.shard.Shards;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The NIO server: one event loop, or with {@code --shards N} one event loop thread per shard, see {@link Shards}.
+ * The first loop accepts the connections and hands them out to the loops in turn, a connection then stays on its
+ * loop for its whole life.
+ */
 public class NonBlockingServer implements Server {
     private final int port;
     private final String hostName;
-    private Selector selector;
+    private EventLoop[] loops = new EventLoop[0];
     private ServerSocketChannel serverChannel;
-    private boolean running = true;
+    private ServerSocketChannel unixServerChannel;
+    private volatile boolean running = true;
 
     private boolean isMasterDown = true;
     private boolean isRetryConnectToMaster = false;
-
-    // Map to store connections by their SelectionKey
-    private final Map<SelectionKey, Conn> connections = new HashMap<>();
+    // the loop the next accepted connection goes to, only used by the first loop
+    private int nextLoop = 0;
 
     public NonBlockingServer(String hostName, int port) {
         this.hostName = hostName;
@@ -46,8 +66,14 @@ public class NonBlockingServer implements Server {
     @Override
     public void startServer() {
         try {
-            // Create selector
-            selector = Selector.open();
+            // Create one event loop per shard, each with its own selector
+            var shards = ServerInfo.getInstance().getShards();
+            var created = new EventLoop[shards];
+            for (int i = 0; i < shards; i++) {
+                created[i] = new EventLoop(i);
+            }
+            loops = created;
+            Shards.register(loops);
 
             // Create server socket channel
             serverChannel = ServerSocketChannel.open();
@@ -56,160 +82,455 @@ public class NonBlockingServer implements Server {
             // Bind to address
             serverChannel.bind(new InetSocketAddress(hostName, port));
 
-            // Register server channel with selector
-            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            // Register server channel with the selector of the first loop, which accepts for all of them
+            serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
 
             System.out.println("Redis server listening on port " + port);
 
-            var crons = List.of(ReplicateDataCron.getInstance(),  TimeoutCron.getInstance());
+            // Optionally accept co-located clients over a unix socket as well, with the same connection handling
+            unixServerChannel = ServerSockets.bindUnixSocket(false);
+            if (unixServerChannel != null) {
+                unixServerChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+            }
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+            return;
+        }
+
+        if (loops.length == 1) {
+            loops[0].run();
+            return;
+        }
+        System.out.println("Serving " + loops.length + " shards");
+        var threads = new ShardThread[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            threads[i] = new ShardThread(i, loops[i]);
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 
-            while (running) {
-                retryConnectToMaster();
-                for (var cron: crons) {
-                    cron.run();
+    /**
+     * Hands an accepted connection to the next loop in turn, from the first loop.
+     */
+    private void dispatch(EventLoop acceptor, SocketChannel clientChannel) throws IOException {
+        var target = loops[nextLoop];
+        nextLoop = (nextLoop + 1) % loops.length;
+        if (target == acceptor) {
+            target.adopt(clientChannel);
+            return;
+        }
+        // the connection is created on its own loop: its buffers come from that loop's pool
+        target.post(() -> {
+            try {
+                target.adopt(clientChannel);
+            } catch (IOException e) {
+                System.err.println("Failed to accept client: " + e.getMessage());
+                try {
+                    clientChannel.close();
+                } catch (IOException ignored) {
+                    // already gone
                 }
+            }
+        });
+    }
 
-                int channels = selector.select(100);
+    @Override
+    public void stopServer() {
+        running = false; // Signal server loop to stop
+        isMasterDown = false;
+        isRetryConnectToMaster = true;
 
-                // Only skip I/O processing if no channels are ready,
-                // but always continue to process cron jobs
-                if (channels == 0) {
-                    continue;
-                }
+        // Interrupt the selector threads if they are blocked on select()
+        for (var loop : loops) {
+            loop.selector.wakeup();
+        }
 
-                Set<SelectionKey> selectionKeys = selector.selectedKeys();
-                Iterator<SelectionKey> iterator = selectionKeys.iterator();
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close(); // Stop accepting new connections
+            }
+            ServerSockets.closeUnixSocket(unixServerChannel);
 
-                while (iterator.hasNext()) {
-                    SelectionKey key = iterator.next();
-                    iterator.remove();
+            for (var loop : loops) {
+                loop.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error during server shutdown: " + e.getMessage());
+        }
+        System.out.println("NIO server stopped.");
+    }
 
-                    if (key.isAcceptable()) {
-                        SocketChannel clientChannel = serverChannel.accept();
-                        var conn = NonBlockingServerHandler.handleKeyAccept(clientChannel);
-                        if (conn != null) {
-                            var clientKey = clientChannel.register(selector, SelectionKey.OP_READ);
-                            connections.put(clientKey, conn);
-                        }
-                        continue;
-                    }
+    /**
+     * The event loop of one shard: its connections, its crons and the tasks other loops post to it.
+     */
+    private final class EventLoop implements ShardLoop, Runnable {
+        private final int shardId;
+        private final Selector selector;
+        // Map to store connections by their SelectionKey
+        private final Map<SelectionKey, Conn> connections = new HashMap<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // set by the first post after the loop took its tasks, so a burst of posts wakes the selector once
+        private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+        // with --io-threads, the clients whose socket is read, or whose output is flushed, by the I/O threads
+        private final IoThreads ioThreads;
+        private final List<Conn> pendingReads = new ArrayList<>();
+        private final List<Conn> pendingWrites = new ArrayList<>();
+
+        private EventLoop(int shardId) throws IOException {
+            this.shardId = shardId;
+            this.selector = Selector.open();
+            var threads = ServerInfo.getInstance().getIoThreads();
+            this.ioThreads = threads > 1 ? new IoThreads(threads) : null;
+        }
+
+        @Override
+        public void post(Runnable task) {
+            tasks.add(task);
+            if (wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void runTasks() {
+            wakeupPending.set(false);
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Shard " + shardId + " task failed: " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
 
-                    var conn = connections.get(key);
-                    if (conn == null) {
+        @Override
+        public void run() {
+            try {
+                var clock = ServerClock.getInstance();
+                var crons = List.of(ReplicateDataCron.getInstance(), TimeoutCron.getInstance(), ClientsCron.getInstance(),
+                        DatabaseCron.getInstance(), ScanCron.getInstance());
+
+                while (running) {
+                    clock.update();
+                    retryConnectToMaster();
+                    for (var cron: crons) {
+                        cron.run();
+                    }
+                    runTasks();
+                    processPendingClients();
+                    flushThreaded();
+                    closePendingConnections();
+
+                    // Sleep until the earliest cron deadline (e.g. a BLPOP timeout) instead of a fixed interval,
+                    // or just poll if preempted clients still have requests to run or tasks were posted meanwhile
+                    var timeoutMillis = ClientRegistry.getInstance().hasPendingProcess() || !tasks.isEmpty()
+                            ? 0
+                            : ICron.nextRunMillis(crons) - clock.millis();
+                    int channels = timeoutMillis <= 0 ? selector.selectNow() : selector.select(timeoutMillis);
+                    clock.update();
+
+                    // Only skip I/O processing if no channels are ready,
+                    // but always continue to process cron jobs
+                    if (channels == 0) {
                         continue;
                     }
 
-                    // Handle connectable connection
-                    if (key.isConnectable()) {
-                        try {
-                            var channel = conn.getChannel();
-                            if (channel.finishConnect()) {
-                                channel.configureBlocking(false);
-                                isMasterDown = false;
-                                System.out.println("Connected to master - " +
-                                        ServerInfo.getInstance().getMasterHostName() + ":" +
-                                        ServerInfo.getInstance().getMasterPort());
-
-                                // Send initial handshake/commands to master if needed
-                                // This might be needed depending on your protocol
-                                NonBlockingServerHandler.handleMasterConnect(conn);
-
-                                // Update selection key to reflect current connection state
-                                NonBlockingServerHandler.updateSelectionKey(key, conn);
+                    Set<SelectionKey> selectionKeys = selector.selectedKeys();
+                    Iterator<SelectionKey> iterator = selectionKeys.iterator();
+
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+
+                        if (key.isAcceptable()) {
+                            SocketChannel clientChannel = ((ServerSocketChannel) key.channel()).accept();
+                            if (clientChannel != null) {
+                                dispatch(this, clientChannel);
                             }
-                        } catch (IOException e) {
-                            System.err.println("Disconnected from master");
-                            isMasterDown = true;
-                            conn.wantClose();
+                            continue;
                         }
-                    }
-                    // Handle readable connection
-                    else if (key.isReadable() && conn.isWantRead()) {
-                        NonBlockingServerHandler.handleRead(conn, IConnHandler::handle);
-                        NonBlockingServerHandler.updateSelectionKey(key, conn);
-                    }
-                    // Handle writable connection
-                    else if (key.isWritable() && conn.isWantWrite()) {
-                        NonBlockingServerHandler.handleWrite(conn);
-                        NonBlockingServerHandler.updateSelectionKey(key, conn);
-                    }
 
-                    if (conn.isWantClose()) {
-                        key.cancel();
-                        conn.getChannel().close();
-                        connections.remove(key);
+                        var conn = connections.get(key);
+                        if (conn == null) {
+                            continue;
+                        }
 
-                        if (conn.getConnectionType().equals(Conn.ConnectionType.REPLICA_CONNECT)) {
-                            isMasterDown = true;
+                        // Handle connectable connection
+                        if (key.isConnectable()) {
+                            try {
+                                if (conn.getChannel().finishConnect()) {
+                                    onMasterConnected(key, conn);
+                                }
+                            } catch (IOException e) {
+                                System.err.println("Disconnected from master");
+                                isMasterDown = true;
+                                conn.wantClose();
+                            }
+                        }
+                        // Read and parse on the I/O threads, once every ready client is known
+                        else if (key.isReadable() && conn.isWantRead() && isThreaded(conn)) {
+                            pendingReads.add(conn);
+                        }
+                        // Flush on the I/O threads; a client blocked in BLPOP waits on OP_WRITE with nothing to send
+                        else if (key.isWritable() && conn.isWantWrite() && isThreaded(conn)
+                                && conn.getWriter().hasRemaining()) {
+                            queueThreadedWrite(conn);
+                        }
+                        // Handle readable connection
+                        else if (key.isReadable() && conn.isWantRead()) {
+                            NonBlockingServerHandler.handleRead(conn, IConnHandler::handle);
+                            NonBlockingServerHandler.updateSelectionKey(key, conn);
+                        }
+                        // Handle writable connection
+                        else if (key.isWritable() && conn.isWantWrite()) {
+                            NonBlockingServerHandler.handleWrite(conn);
+                            // Requests that arrived while the output was draining are already buffered,
+                            // the socket may never become readable again for them.
+                            if (conn.isWantRead() && (conn.isReadPaused() || conn.hasBufferedRequests())) {
+                                NonBlockingServerHandler.handleRead(conn, IConnHandler::handle);
+                            }
+                            NonBlockingServerHandler.updateSelectionKey(key, conn);
                         }
 
-                        ReplicateDataCron.getInstance().removeReplica(conn);
+                        if (conn.isWantClose()) {
+                            closeConnection(key, conn);
+                        }
                     }
+                    readThreaded();
+                    flushThreaded();
+                    closePendingConnections();
+                }
+            } catch (IOException e) {
+                System.err.println("Server error: " + e.getMessage());
+            } catch (ClosedSelectorException e) {
+                // stopped while selecting
+            } finally {
+                if (ioThreads != null) {
+                    ioThreads.shutdown();
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Server error: " + e.getMessage());
         }
-    }
 
-    private void retryConnectToMaster() {
-        if (!ServerInfo.getInstance().isReplica() || !isMasterDown) {
-            return;
+        /**
+         * Whether the I/O of the connection goes through the I/O threads: the clients' with {@code --io-threads},
+         * the link to our master keeps its own handshake reader.
+         */
+        private boolean isThreaded(Conn conn) {
+            return ioThreads != null && conn.getConnectionType() == Conn.ConnectionType.CLIENT_CONNECT;
         }
 
-        // Only register a new retry if we're not already retrying
-        if (isRetryConnectToMaster) {
-            return;
+        /**
+         * Has the I/O threads read and parse the requests of the clients found readable, then executes them here,
+         * one client after the other as without threads. The replies are flushed by {@link #flushThreaded()}.
+         */
+        private void readThreaded() throws IOException {
+            if (pendingReads.isEmpty()) {
+                return;
+            }
+            var budget = ServerInfo.getInstance().getClientCommandBudget();
+            var maxRequests = budget > 0 ? budget : Integer.MAX_VALUE;
+            ioThreads.run(pendingReads, conn -> conn.prefetchRequests(maxRequests));
+            ServerStats.getInstance().addIoThreadedReads(pendingReads.size());
+            for (var conn : pendingReads) {
+                processThreaded(conn);
+            }
+            pendingReads.clear();
         }
 
-        // Mark that we're starting a retry attempt
-        isRetryConnectToMaster = true;
+        private void processThreaded(Conn conn) throws IOException {
+            conn.startEvent();
+            IConnHandler.handle(conn);
+            if (conn.isWantClose()) {
+                closeConnection(conn.getSelectionKey(), conn);
+            } else if (conn.getWriter().hasRemaining()) {
+                queueThreadedWrite(conn);
+            } else {
+                NonBlockingServerHandler.updateSelectionKey(conn.getSelectionKey(), conn);
+            }
+        }
 
-        TimeoutCron.getInstance().registerTimeout(2000, () -> {
-            if (!isMasterDown) {
-                isRetryConnectToMaster = false;
-                return; // Stop retry - master is back up
+        private void queueThreadedWrite(Conn conn) {
+            if (!conn.isPendingWrite()) {
+                conn.setPendingWrite(true);
+                pendingWrites.add(conn);
             }
+        }
 
-            String masterHostName = ServerInfo.getInstance().getMasterHostName();
-            int masterPort = ServerInfo.getInstance().getMasterPort();
-            System.out.println("Retry to connect to master - " + masterHostName + ":" + masterPort);
+        /**
+         * Has the I/O threads flush the replies of the iteration, then decides here what each client waits for.
+         */
+        private void flushThreaded() {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+            pendingWrites.removeIf(conn -> {
+                conn.setPendingWrite(false);
+                return conn.isWantClose();
+            });
+            ioThreads.run(pendingWrites, Conn::flushOutput);
+            ServerStats.getInstance().addIoThreadedWrites(pendingWrites.size());
+            var registry = ClientRegistry.getInstance();
+            for (var conn : pendingWrites) {
+                if (conn.isWriteFailed()) {
+                    System.err.println("write() error - channel closed");
+                    registry.closeAsync(conn);
+                    continue;
+                }
+                if (conn.getWriter().hasRemaining()) {
+                    conn.wantWrite();
+                } else {
+                    conn.wantRead();
+                    // requests held back while the output was above the watermark, or already buffered
+                    if (conn.isReadPaused() || conn.hasBufferedRequests()) {
+                        registry.schedulePending(conn);
+                    }
+                }
+                NonBlockingServerHandler.updateSelectionKey(conn.getSelectionKey(), conn);
+            }
+            pendingWrites.clear();
+        }
 
-            try {
-                var socketChannel = SocketChannel.open();
-                socketChannel.configureBlocking(false);
-                var masterAddress = new InetSocketAddress(masterHostName, masterPort);
+        /**
+         * Registers a connection accepted by the first loop, on this loop's thread.
+         */
+        private void adopt(SocketChannel clientChannel) throws IOException {
+            var conn = NonBlockingServerHandler.handleKeyAccept(clientChannel);
+            if (conn != null) {
+                var clientKey = clientChannel.register(selector, SelectionKey.OP_READ);
+                addConnection(clientKey, conn);
+                ServerStats.getInstance().incrConnectionsReceived();
+            }
+        }
 
-                socketChannel.connect(masterAddress);
+        private void addConnection(SelectionKey key, Conn conn) {
+            conn.setSelectionKey(key);
+            connections.put(key, conn);
+            ClientRegistry.getInstance().register(conn);
+        }
 
-                SelectionKey key = socketChannel.register(selector, SelectionKey.OP_CONNECT);
+        private void closeConnection(SelectionKey key, Conn conn) throws IOException {
+            if (connections.remove(key) == null) {
+                return; // already closed
+            }
+            key.cancel();
+            conn.close();
+            ClientRegistry.getInstance().unregister(conn);
 
-                Conn conn = new Conn(socketChannel, Conn.ConnectionType.REPLICA_CONNECT);
-                connections.put(key, conn);
-            } catch (IOException e) {
-                // Connection failed, continue retrying
-                System.err.println("Failed to connect to master - " + masterHostName + ":" + masterPort);
+            if (conn.getConnectionType().equals(Conn.ConnectionType.REPLICA_CONNECT)) {
+                isMasterDown = true;
             }
 
-            isRetryConnectToMaster = false;
-        });
-    }
+            ReplicateDataCron.getInstance().removeReplica(conn);
+        }
 
-    @Override
-    public void stopServer() {
-        running = false; // Signal server loop to stop
-        isMasterDown = false;
-        isRetryConnectToMaster = true;
+        /**
+         * Closes connections flagged outside of their own I/O event, e.g. a replica over its output buffer limit.
+         */
+        private void closePendingConnections() throws IOException {
+            Conn conn;
+            while ((conn = ClientRegistry.getInstance().pollPendingClose()) != null) {
+                closeConnection(conn.getSelectionKey(), conn);
+            }
+        }
+
+        /**
+         * Resumes the clients preempted in the previous iteration, or whose forwarded request got its reply, once
+         * each, before the loop polls for new events.
+         */
+        private void processPendingClients() throws IOException {
+            for (var conn : ClientRegistry.getInstance().drainPendingProcess()) {
+                // A client waiting for its output to drain is resumed by the write event instead
+                if (conn.isWantClose() || !conn.isWantRead()) {
+                    continue;
+                }
+                if (isThreaded(conn)) {
+                    processThreaded(conn);
+                    continue;
+                }
+                NonBlockingServerHandler.handleRead(conn, IConnHandler::handle);
+                NonBlockingServerHandler.updateSelectionKey(conn.getSelectionKey(), conn);
+                if (conn.isWantClose()) {
+                    closeConnection(conn.getSelectionKey(), conn);
+                }
+            }
+        }
 
-        // Interrupt the selector thread if it's blocked on select()
-        selector.wakeup();
+        private void onMasterConnected(SelectionKey key, Conn conn) throws IOException {
+            isMasterDown = false;
+            System.out.println("Connected to master - " + ServerInfo.getInstance().getMasterAddress());
 
-        try {
-            if (serverChannel != null && serverChannel.isOpen()) {
-                serverChannel.close(); // Stop accepting new connections
+            // Send initial handshake/commands to master if needed
+            // This might be needed depending on your protocol
+            NonBlockingServerHandler.handleMasterConnect(conn);
+
+            // Update selection key to reflect current connection state
+            NonBlockingServerHandler.updateSelectionKey(key, conn);
+        }
+
+        private void retryConnectToMaster() {
+            // a replica runs a single loop, see ServerInfo
+            if (!ServerInfo.getInstance().isReplica() || !isMasterDown) {
+                return;
+            }
+
+            // Only register a new retry if we're not already retrying
+            if (isRetryConnectToMaster) {
+                return;
             }
 
-            if (selector != null && selector.isOpen()) {
+            // Mark that we're starting a retry attempt
+            isRetryConnectToMaster = true;
+
+            TimeoutCron.getInstance().registerTimeout(2000, () -> {
+                if (!isMasterDown) {
+                    isRetryConnectToMaster = false;
+                    return; // Stop retry - master is back up
+                }
+
+                var masterAddress = ServerInfo.getInstance().getMasterAddress();
+                System.out.println("Retry to connect to master - " + masterAddress);
+
+                try {
+                    var socketChannel = masterAddress instanceof UnixDomainSocketAddress
+                            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                            : SocketChannel.open();
+                    socketChannel.configureBlocking(false);
+
+                    var connected = socketChannel.connect(masterAddress);
+
+                    SelectionKey key = socketChannel.register(selector, SelectionKey.OP_CONNECT);
+
+                    Conn conn = new Conn(socketChannel, Conn.ConnectionType.REPLICA_CONNECT);
+                    addConnection(key, conn);
+                    if (connected) {
+                        // a unix socket connects right away, OP_CONNECT would never fire
+                        onMasterConnected(key, conn);
+                    }
+                } catch (IOException e) {
+                    // Connection failed, continue retrying
+                    System.err.println("Failed to connect to master - " + masterAddress);
+                }
+
+                isRetryConnectToMaster = false;
+            });
+        }
+
+        private void close() {
+            if (selector.isOpen()) {
                 // Close all client channels
                 Set<SelectionKey> keys = selector.keys();
                 for (SelectionKey key : keys) {
@@ -221,11 +542,14 @@ public class NonBlockingServer implements Server {
                         }
                     }
                 }
-                selector.close(); // Close the selector
+                try {
+                    selector.close(); // Close the selector
+                } catch (IOException e) {
+                    System.err.println("Error closing selector: " + e.getMessage());
+                }
             }
-        } catch (IOException e) {
-            System.err.println("Error during server shutdown: " + e.getMessage());
+            connections.values().forEach(ClientRegistry.getInstance()::unregister);
+            connections.clear();
         }
-        System.out.println("NIO server stopped.");
     }
 }
@@ -6,6 +6,7 @@ import server.dto.Conn;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.List;
@@ -17,10 +18,17 @@ public class NonBlockingServerHandler {
         }
 
         // Get client address info
-        InetSocketAddress clientAddr = (InetSocketAddress) clientChannel.getRemoteAddress();
-        System.out.printf("New client from %s:%d%n", clientAddr.getAddress().getHostAddress(), clientAddr.getPort());
+        if (clientChannel.getRemoteAddress() instanceof InetSocketAddress clientAddr) {
+            System.out.printf("New client from %s:%d%n", clientAddr.getAddress().getHostAddress(), clientAddr.getPort());
+        } else {
+            System.out.printf("New client on unix socket %s%n", clientChannel.getLocalAddress());
+        }
 
         clientChannel.configureBlocking(false);
+        if (clientChannel.getRemoteAddress() instanceof InetSocketAddress) {
+            // like Redis: a reply split across read events must not wait for the client's delayed ACK
+            clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
 
         return new Conn(clientChannel, Conn.ConnectionType.CLIENT_CONNECT);
     }
@@ -38,7 +46,7 @@ public class NonBlockingServerHandler {
 
             if (written < 0) {
                 System.err.println("write() error - channel closed");
-                conn.wantClose();
+                ClientRegistry.getInstance().closeAsync(conn);
                 return;
             }
 
@@ -47,19 +55,23 @@ public class NonBlockingServerHandler {
             }
         } catch (IOException e) {
             System.err.println("Write error: " + e.getMessage());
-            conn.wantClose();
+            ClientRegistry.getInstance().closeAsync(conn);
         }
     }
 
     public static void handleRead(Conn conn, IConnHandler task) {
-        task.process(conn);
-
-        if (conn.getWriter().hasRemaining()) {
-            conn.wantWrite();
-            // The socket is likely ready to write in a request-response protocol,
-            // try to write it without waiting for the next iteration.
-            handleWrite(conn);
-        }
+        conn.startEvent();
+        do {
+            task.process(conn);
+
+            if (conn.getWriter().hasRemaining()) {
+                conn.wantWrite();
+                // The socket is likely ready to write in a request-response protocol,
+                // try to write it without waiting for the next iteration.
+                handleWrite(conn);
+            }
+            // If the output drained right away, carry on with the requests paused by the high watermark
+        } while (conn.isReadPaused() && conn.isWantRead() && !conn.isWantClose());
     }
 
     public static void updateSelectionKey(SelectionKey key, Conn conn) {
@@ -68,7 +80,8 @@ public class NonBlockingServerHandler {
         }
 
         int ops = 0;
-        if (conn.isWantRead()) ops |= SelectionKey.OP_READ;
+        // while a forwarded request is pending nothing is read, the reply delivery resumes the connection
+        if (conn.isWantRead() && !conn.isAwaitingRemote()) ops |= SelectionKey.OP_READ;
         if (conn.isWantWrite()) ops |= SelectionKey.OP_WRITE;
         key.interestOps(ops);
     }
@@ -0,0 +1,97 @@
+package server.shard;
+
+import server.dto.Conn;
+import server.nonblocking.ClientRegistry;
+import stream.Writer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The output of a command forwarded to the shard that owns its key. The reply is collected on the owner's loop and
+ * handed back to the loop of the client, which appends it to the connection's output and resumes its pipeline.
+ * <p>
+ * A forwarded BLPOP that blocks keeps this writer in the owner's wait queue and writes to it once served or
+ * timed out, so whatever is written is delivered at the end of the owner's current batch of tasks.
+ */
+public class RemoteReply extends Writer {
+    private final Conn conn;
+    private final int originShard;
+    private byte[] bytes = new byte[64];
+    private int size = 0;
+    private boolean deliveryScheduled = false;
+
+    public RemoteReply(Conn conn, int originShard) {
+        this.conn = conn;
+        this.originShard = originShard;
+    }
+
+    @Override
+    public void write(String str) {
+        write(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (size + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+        }
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+        if (!deliveryScheduled) {
+            deliveryScheduled = true;
+            Shards.post(Shards.current(), this::deliver);
+        }
+    }
+
+    /**
+     * Nothing to flush, the reply goes back to the client's loop on its own.
+     */
+    @Override
+    public int flush() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        size = 0;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return size > 0;
+    }
+
+    private void deliver() {
+        deliveryScheduled = false;
+        var reply = Arrays.copyOf(bytes, size);
+        size = 0;
+        Shards.post(originShard, () -> resume(reply));
+    }
+
+    /**
+     * On the client's loop: the reply goes after the ones of the requests before it, then the rest of the pipeline.
+     */
+    private void resume(byte[] reply) {
+        if (conn.isWantClose() || !conn.getChannel().isOpen()) {
+            return;
+        }
+        try {
+            conn.getWriter().writeReference(reply);
+        } catch (IOException e) {
+            ClientRegistry.getInstance().closeAsync(conn);
+            return;
+        }
+        conn.setAwaitingRemote(false);
+        ClientRegistry.getInstance().schedulePending(conn);
+    }
+}
@@ -0,0 +1,117 @@
+package server.shard;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The cross-shard path, for what touches more than one shard: multi-key commands, MULTI/EXEC and server-wide
+ * replies like DBSIZE.
+ * <p>
+ * The calling loop takes the coordination lock, parks every other loop on a latch between two of its tasks and then
+ * runs the whole operation on its own thread, switching to the shard of each key with {@link #withShard}. The
+ * operation is atomic across shards and the parked loops see its writes once released. Loops waiting for the lock
+ * keep running their tasks, so they get parked too instead of deadlocking.
+ */
+public final class ShardCoordinator {
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private ShardCoordinator() {
+    }
+
+    /**
+     * Runs the task with every other shard parked. Reentrant: a task already running exclusively runs right away.
+     */
+    public static void runExclusive(ShardTask task) throws IOException {
+        if (LOCK.isHeldByCurrentThread()) {
+            task.run();
+            return;
+        }
+        var self = Shards.current();
+        var loop = Shards.loop(self);
+        while (!LOCK.tryLock()) {
+            loop.runTasks(); // another loop is coordinating and waits for this one to park
+            Thread.onSpinWait();
+        }
+        var parked = new CountDownLatch(Shards.count() - 1);
+        var released = new CountDownLatch(1);
+        try {
+            for (int shardId = 0; shardId < Shards.count(); shardId++) {
+                if (shardId != self) {
+                    Shards.post(shardId, () -> {
+                        parked.countDown();
+                        awaitUninterruptibly(released);
+                    });
+                }
+            }
+            awaitParked(parked, loop);
+            task.run();
+        } finally {
+            released.countDown();
+            LOCK.unlock();
+        }
+    }
+
+    public static boolean isExclusive() {
+        return LOCK.isHeldByCurrentThread();
+    }
+
+    /**
+     * Runs the task in the context of another shard: its data, timers and counters. Only while exclusive.
+     */
+    public static <T> T withShard(int shardId, ShardFunction<T> task) throws IOException {
+        if (!isExclusive()) {
+            throw new IllegalStateException("shard " + shardId + " is not parked");
+        }
+        var thread = (ShardThread) Thread.currentThread();
+        var previous = thread.getShardId();
+        thread.setShardId(shardId);
+        try {
+            return task.apply();
+        } finally {
+            thread.setShardId(previous);
+        }
+    }
+
+    /**
+     * Waits for the other loops to park, giving up if the server stops meanwhile: a stopped loop never parks.
+     */
+    private static void awaitParked(CountDownLatch parked, ShardLoop loop) throws IOException {
+        try {
+            while (!parked.await(10, TimeUnit.MILLISECONDS)) {
+                if (!loop.isRunning()) {
+                    throw new IOException("server is shutting down");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the other shards", e);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        var interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ShardTask {
+        void run() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ShardFunction<T> {
+        T apply() throws IOException;
+    }
+}
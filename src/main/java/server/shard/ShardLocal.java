@@ -0,0 +1,42 @@
+package server.shard;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * One instance per shard of what used to be a process-wide singleton, picked by the shard of the calling thread.
+ * <p>
+ * Instances are created on first use. Besides the shard's own thread and a thread holding
+ * {@link ShardCoordinator}'s exclusive section, the I/O threads of {@code --io-threads} and the connection threads
+ * of {@code --server-mode virtual-threads} resolve to shard 0 and may be the first to ask, so creation takes a lock
+ * and exactly one instance is ever published per shard. Once created, an instance is read without locking.
+ */
+public class ShardLocal<T> {
+    // one lock for every ShardLocal: a factory may ask for another instance, a lock each could deadlock
+    private static final Object CREATION_LOCK = new Object();
+
+    private final Supplier<T> factory;
+    private final AtomicReferenceArray<T> instances = new AtomicReferenceArray<>(Shards.MAX_SHARDS);
+
+    public ShardLocal(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * The instance of the current shard, the factory runs in that shard's context.
+     */
+    public T get() {
+        var shardId = Shards.current();
+        var instance = instances.get(shardId);
+        if (instance == null) {
+            synchronized (CREATION_LOCK) {
+                instance = instances.get(shardId);
+                if (instance == null) {
+                    instance = factory.get();
+                    instances.set(shardId, instance);
+                }
+            }
+        }
+        return instance;
+    }
+}
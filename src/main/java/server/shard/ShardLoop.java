@@ -0,0 +1,19 @@
+package server.shard;
+
+/**
+ * The event loop of a shard, as seen by the other shards: the only way to reach its data is to post it a task.
+ */
+public interface ShardLoop {
+    /**
+     * Queues a task the loop runs on its own thread before its next select, waking it up if needed.
+     * Safe to call from any thread.
+     */
+    void post(Runnable task);
+
+    /**
+     * Runs the queued tasks, from the loop's own thread, e.g. while it waits for the other shards.
+     */
+    void runTasks();
+
+    boolean isRunning();
+}
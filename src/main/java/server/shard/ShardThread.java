@@ -0,0 +1,22 @@
+package server.shard;
+
+/**
+ * The thread of one shard's event loop. Its shard id picks the per-shard singletons, see {@link ShardLocal}, and
+ * is switched for the duration of {@link ShardCoordinator#withShard} while the other loops are parked.
+ */
+public class ShardThread extends Thread {
+    private int shardId;
+
+    public ShardThread(int shardId, Runnable loop) {
+        super(loop, "shard-" + shardId);
+        this.shardId = shardId;
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+
+    void setShardId(int shardId) {
+        this.shardId = shardId;
+    }
+}
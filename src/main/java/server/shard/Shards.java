@@ -0,0 +1,57 @@
+package server.shard;
+
+import redis.ByteString;
+import server.info.ServerInfo;
+
+/**
+ * The shards of the keyspace in {@code --shards N} mode: every key belongs to one shard by its hash, each shard has
+ * its own event loop thread, data and timers, and commands on keys of another shard are passed to its loop.
+ * With a single shard, the default, everything runs on the one event loop as before.
+ */
+public final class Shards {
+    public static final int MAX_SHARDS = 256;
+
+    private static ShardLoop[] loops = new ShardLoop[0];
+
+    private Shards() {
+    }
+
+    /**
+     * The shard of the calling thread, 0 for threads that are not a shard's event loop.
+     */
+    public static int current() {
+        return Thread.currentThread() instanceof ShardThread thread ? thread.getShardId() : 0;
+    }
+
+    public static int count() {
+        return ServerInfo.getInstance().getShards();
+    }
+
+    public static boolean isEnabled() {
+        return count() > 1;
+    }
+
+    public static int ownerOf(ByteString key) {
+        // spread the bits first, so keys differing only in their last characters still spread evenly
+        int h = key.hashCode() * 0x85EBCA6B;
+        return Math.floorMod(h ^ (h >>> 15), count());
+    }
+
+    /**
+     * Called once the loops are created, before any of them starts.
+     */
+    public static void register(ShardLoop[] shardLoops) {
+        loops = shardLoops.clone();
+    }
+
+    public static ShardLoop loop(int shardId) {
+        return loops[shardId];
+    }
+
+    /**
+     * Runs the task on the loop of the shard.
+     */
+    public static void post(int shardId, Runnable task) {
+        loops[shardId].post(task);
+    }
+}
@@ -0,0 +1,428 @@
+package server.virtual;
+
+import handler.IConnHandler;
+import server.Server;
+import server.ServerSockets;
+import server.cron.ClientsCron;
+import server.cron.DatabaseCron;
+import server.cron.ICron;
+import server.cron.ScanCron;
+import server.cron.TimeoutCron;
+import server.dto.Conn;
+import server.info.ServerClock;
+import server.info.ServerInfo;
+import server.info.ServerStats;
+import server.nonblocking.ClientRegistry;
+import server.shard.ShardLoop;
+import server.shard.ShardThread;
+import server.shard.Shards;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The virtual thread server, {@code --server-mode virtual-threads}: every connection gets a virtual thread doing
+ * plain blocking reads and writes. It parses the requests it received and hands them to the executor of its shard,
+ * the one thread running that shard's commands and crons, through the executor's lock-free task queue, then waits
+ * for the replies to flush them. The data cores stay single-threaded as with the NIO event loop, and an idle
+ * connection is a parked virtual thread instead of a selection key.
+ * <p>
+ * The executors are shard loops like the event loops of {@code --shards N}, so commands on keys of another shard
+ * are forwarded and coordinated the same way, see {@link Shards}.
+ */
+public class VirtualThreadServer implements Server {
+    private final int port;
+    private final String hostName;
+    private CommandExecutor[] executors = new CommandExecutor[0];
+    private ServerSocketChannel serverChannel;
+    private ServerSocketChannel unixServerChannel;
+    private volatile boolean running = true;
+    private final ExecutorService connectionThreads =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("client-", 1).factory());
+    // the executor the next accepted connection goes to, shared by the tcp and unix socket acceptors
+    private final AtomicInteger nextExecutor = new AtomicInteger();
+
+    public VirtualThreadServer(String hostName, int port) {
+        this.hostName = hostName;
+        this.port = port;
+    }
+
+    @Override
+    public void startServer() {
+        var shards = ServerInfo.getInstance().getShards();
+        var threads = new ShardThread[shards];
+        try {
+            var created = new CommandExecutor[shards];
+            for (int i = 0; i < shards; i++) {
+                created[i] = new CommandExecutor(i);
+            }
+            executors = created;
+            Shards.register(executors);
+
+            // Blocking accept, each accepted connection is served by its own virtual thread
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(hostName, port));
+            System.out.println("Redis server listening on port " + port + " with virtual threads");
+
+            unixServerChannel = ServerSockets.bindUnixSocket(true);
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < shards; i++) {
+            threads[i] = new ShardThread(i, executors[i]);
+            executors[i].thread = threads[i];
+            threads[i].start();
+        }
+        if (unixServerChannel != null) {
+            Thread.ofVirtual().name("unix-acceptor").start(() -> acceptLoop(unixServerChannel));
+        }
+        acceptLoop(serverChannel);
+
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void acceptLoop(ServerSocketChannel channel) {
+        while (running && channel.isOpen()) {
+            SocketChannel clientChannel;
+            try {
+                clientChannel = channel.accept();
+            } catch (IOException e) {
+                if (running && channel.isOpen()) {
+                    System.err.println("Failed to accept client: " + e.getMessage());
+                }
+                continue;
+            }
+            // the connection is created on its executor: its buffers come from that shard's pool
+            var executor = executors[Math.floorMod(nextExecutor.getAndIncrement(), executors.length)];
+            executor.post(() -> executor.adopt(clientChannel));
+        }
+    }
+
+    @Override
+    public void stopServer() {
+        running = false;
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close(); // Stop accepting new connections
+            }
+            ServerSockets.closeUnixSocket(unixServerChannel);
+        } catch (IOException e) {
+            System.err.println("Error during server shutdown: " + e.getMessage());
+        }
+        for (var executor : executors) {
+            executor.wakeUp();
+        }
+        connectionThreads.shutdownNow();
+        System.out.println("Virtual thread server stopped.");
+    }
+
+    /**
+     * A connection's virtual thread: reads, hands the complete requests to the executor, waits, flushes.
+     * Only this thread touches the socket and, while the executor is not running its requests, the buffers.
+     */
+    private final class Session implements Runnable {
+        private final Conn conn;
+        private final CommandExecutor executor;
+        // released by the executor once the requests handed over are done
+        private final Semaphore done = new Semaphore(0);
+        // output size when the client blocked (BLPOP), it is woken once a reply is added
+        private long blockedOutputSize = 0;
+
+        private Session(Conn conn, CommandExecutor executor) {
+            this.conn = conn;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running && conn.receiveRequests()) {
+                    // requests held back while the output was above the high watermark go once it is flushed
+                    do {
+                        // with --concurrent-reads the reads at the head are answered right here
+                        conn.serveReads();
+                        if (conn.hasBufferedRequests() && !conn.isAboveOutputHighWatermark()) {
+                            executor.post(() -> executor.execute(this));
+                            done.acquire();
+                            if (conn.isWantClose()) {
+                                return;
+                            }
+                        }
+                        // a blocking write may still take only part of a large reply
+                        while (conn.getWriter().hasRemaining()) {
+                            conn.flushOutput();
+                            if (conn.isWriteFailed()) {
+                                System.err.println("write() error - channel closed");
+                                return;
+                            }
+                        }
+                    } while (conn.hasBufferedRequests());
+                }
+                if (running) {
+                    System.out.println("Client disconnected");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                // closed by the executor (output buffer limit, shutdown) or broken by the client
+                if (running && !conn.isWantClose()) {
+                    System.err.println("Read error: " + e.getMessage());
+                }
+            } finally {
+                executor.post(() -> executor.closeSession(this));
+            }
+        }
+    }
+
+    /**
+     * The thread running one shard's commands, crons and the tasks posted to it, see {@link ShardLoop}. It never
+     * does socket I/O, so it only sleeps when it has nothing to run until the next cron.
+     */
+    private final class CommandExecutor implements ShardLoop, Runnable {
+        private final int shardId;
+        // multi-producer (the connection threads, other shards), single-consumer queue
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // set by the first post after the executor took its tasks, so a burst of posts unparks it once
+        private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+        private final Map<Conn, Session> sessions = new HashMap<>();
+        private final List<Session> blocked = new ArrayList<>();
+        private volatile Thread thread;
+
+        private CommandExecutor(int shardId) {
+            this.shardId = shardId;
+        }
+
+        @Override
+        public void post(Runnable task) {
+            tasks.add(task);
+            if (wakeupPending.compareAndSet(false, true)) {
+                wakeUp();
+            }
+        }
+
+        private void wakeUp() {
+            var executorThread = thread;
+            if (executorThread != null) {
+                LockSupport.unpark(executorThread);
+            }
+        }
+
+        @Override
+        public void runTasks() {
+            wakeupPending.set(false);
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Shard " + shardId + " task failed: " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void run() {
+            var clock = ServerClock.getInstance();
+            var crons = List.of(TimeoutCron.getInstance(), ClientsCron.getInstance(), DatabaseCron.getInstance(),
+                    ScanCron.getInstance());
+            try {
+                while (running) {
+                    clock.update();
+                    for (var cron : crons) {
+                        cron.run();
+                    }
+                    runTasks();
+                    processPendingClients();
+                    wakeBlockedClients();
+                    closePendingConnections();
+
+                    // Sleep until the earliest cron deadline, a post unparks earlier. The flag is cleared right
+                    // before the last look at the queue: a task that blocked, like a shard parked by another,
+                    // may have used up the unpark of a post that left it set
+                    wakeupPending.set(false);
+                    if (ClientRegistry.getInstance().hasPendingProcess() || !tasks.isEmpty()) {
+                        continue;
+                    }
+                    var timeoutMillis = ICron.nextRunMillis(crons) - clock.millis();
+                    if (timeoutMillis > 0) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Server error: " + e.getMessage());
+            } finally {
+                // the connection threads see their socket closed and stop
+                for (var conn : sessions.keySet()) {
+                    closeChannel(conn);
+                }
+            }
+        }
+
+        /**
+         * Registers a connection accepted by an acceptor and starts its virtual thread.
+         */
+        private void adopt(SocketChannel clientChannel) {
+            try {
+                if (clientChannel.getRemoteAddress() instanceof InetSocketAddress clientAddr) {
+                    System.out.printf("New client from %s:%d%n", clientAddr.getAddress().getHostAddress(), clientAddr.getPort());
+                    // like Redis: a reply must not wait for the client's delayed ACK
+                    clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } else {
+                    System.out.printf("New client on unix socket %s%n", clientChannel.getLocalAddress());
+                }
+                var conn = new Conn(clientChannel, Conn.ConnectionType.CLIENT_CONNECT);
+                var session = new Session(conn, this);
+                sessions.put(conn, session);
+                ClientRegistry.getInstance().register(conn);
+                ServerStats.getInstance().incrConnectionsReceived();
+                connectionThreads.execute(session);
+            } catch (IOException | RejectedExecutionException e) {
+                System.err.println("Failed to accept client: " + e.getMessage());
+                try {
+                    clientChannel.close();
+                } catch (IOException ignored) {
+                    // already gone
+                }
+            }
+        }
+
+        /**
+         * Runs the requests the session handed over.
+         */
+        private void execute(Session session) {
+            var conn = session.conn;
+            if (!conn.isWantClose()) {
+                conn.wantRead();
+                conn.startEvent();
+                IConnHandler.handle(conn);
+            }
+            settle(session);
+        }
+
+        /**
+         * Gives the connection back to its thread, unless its requests are not done yet: preempted or forwarded
+         * to another shard, they are resumed by {@link #processPendingClients()}, blocked, by a reply.
+         */
+        private void settle(Session session) {
+            var conn = session.conn;
+            if (conn.isWantClose()) {
+                session.done.release();
+            } else if (conn.isAwaitingRemote() || conn.isPendingProcess()) {
+                // resumed once its turn or its reply comes
+            } else if (conn.isWantWrite()) {
+                // a blocking command is waiting for data, see RedisHandler
+                session.blockedOutputSize = conn.getOutputBufferSize();
+                blocked.add(session);
+            } else {
+                session.done.release();
+            }
+        }
+
+        private void processPendingClients() {
+            for (var conn : ClientRegistry.getInstance().drainPendingProcess()) {
+                var session = sessions.get(conn);
+                if (session == null || conn.isAwaitingRemote()) {
+                    continue;
+                }
+                conn.startEvent();
+                IConnHandler.handle(conn);
+                settle(session);
+            }
+        }
+
+        /**
+         * Gives back the blocked clients whose reply, or timeout, was written meanwhile.
+         */
+        private void wakeBlockedClients() {
+            if (blocked.isEmpty()) {
+                return;
+            }
+            var woken = new ArrayList<Session>();
+            blocked.removeIf(session -> {
+                var conn = session.conn;
+                if (!conn.isWantClose() && conn.getOutputBufferSize() == session.blockedOutputSize) {
+                    return false;
+                }
+                woken.add(session);
+                return true;
+            });
+            for (var session : woken) {
+                if (session.conn.hasBufferedRequests()) {
+                    // the rest of its pipeline runs before its thread flushes, as on the event loop
+                    execute(session);
+                } else {
+                    session.done.release();
+                }
+            }
+        }
+
+        /**
+         * Closes the connections flagged by the crons or the commands: their thread sees the socket closed, or is
+         * released if it waits for us, and comes back to {@link #closeSession}.
+         */
+        private void closePendingConnections() {
+            Conn conn;
+            while ((conn = ClientRegistry.getInstance().pollPendingClose()) != null) {
+                var session = sessions.get(conn);
+                if (session != null) {
+                    blocked.remove(session);
+                    session.done.release();
+                }
+                closeChannel(conn);
+            }
+        }
+
+        private void closeSession(Session session) {
+            var conn = session.conn;
+            if (sessions.remove(conn) == null) {
+                return; // already closed
+            }
+            blocked.remove(session);
+            ClientRegistry.getInstance().unregister(conn);
+            try {
+                conn.close();
+            } catch (IOException e) {
+                System.err.println("Error closing client channel: " + e.getMessage());
+            }
+        }
+
+        private void closeChannel(Conn conn) {
+            try {
+                conn.getChannel().close();
+            } catch (IOException e) {
+                System.err.println("Error closing client channel: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -2,12 +2,13 @@ package stream;
 
 import error.ClientDisconnectException;
 import error.NotEnoughDataException;
+import redis.processor.RespParser;
 import server.dto.Buffer;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 
 public class BufferReader implements Reader {
 
@@ -15,8 +16,7 @@ public class BufferReader implements Reader {
 
     private final ReadableByteChannel channel;
     private final Buffer incoming;
-    private final ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
-    private int totalBytesRead = 0;
+    private final RespParser parser = new RespParser();
 
     public BufferReader(ReadableByteChannel channel, Buffer incoming) {
         this.channel = channel;
@@ -25,13 +25,13 @@ public class BufferReader implements Reader {
 
     @Override
     public void close() throws IOException {
+        incoming.release();
         channel.close();
     }
 
     @Override
     public int readByte() throws IOException {
         ensureAvailable();
-        totalBytesRead++;
         return incoming.peekAndAdvance() & 0xFF;
     }
 
@@ -88,26 +88,48 @@ public class BufferReader implements Reader {
     }
 
     @Override
-    public void mark() {
-        incoming.mark();
-        totalBytesRead = 0;
+    public List<byte[]> readCommand() throws IOException {
+        while (true) {
+            var argv = parser.parse(incoming);
+            if (argv != null) {
+                return argv;
+            }
+            int bytesRead = fillBuffer();
+            if (bytesRead == 0) {
+                throw new NotEnoughDataException();
+            }
+            if (bytesRead == -1) {
+                if (incoming.dataSize() == 0) {
+                    throw new ClientDisconnectException();
+                } else {
+                    throw new EOFException("Unexpected EOF while reading data");
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<byte[]> parseBufferedCommand() throws IOException {
+        return parser.parse(incoming);
     }
 
     @Override
-    public void reset() {
-        incoming.reset();
-        totalBytesRead = 0;
+    public int fill() throws IOException {
+        return fillBuffer();
     }
 
     @Override
-    public void commit() {
-        incoming.consume(totalBytesRead);
-        totalBytesRead = 0;
+    public int bufferedBytes() {
+        return incoming.dataSize();
+    }
+
+    @Override
+    public void expectRdbPayload() {
+        parser.expectRdbPayload();
     }
 
     private int fillBuffer() throws IOException {
-        buffer.clear();
-        int bytesRead = channel.read(buffer);
+        int bytesRead = incoming.readFrom(channel);
 
         if (bytesRead == 0) {
             return 0; // actually not ready (would block)
@@ -116,11 +138,6 @@ public class BufferReader implements Reader {
         if (bytesRead < 0) {
             return -1;
         }
-
-        buffer.flip();
-        byte[] data = new byte[bytesRead];
-        buffer.get(data);
-        incoming.append(data, bytesRead);
         return bytesRead;
     }
 }
@@ -1,25 +1,25 @@
 package stream;
 
-import server.dto.Buffer;
+import server.dto.ReplyChain;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.WritableByteChannel;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
 public class BufferWriter extends Writer {
-    private final WritableByteChannel channel;
+    private final GatheringByteChannel channel;
     private final Charset charset;
-    private final Buffer outgoing;
+    private final ReplyChain outgoing;
 
-    public BufferWriter(WritableByteChannel channel, Buffer outgoing) {
+    public BufferWriter(GatheringByteChannel channel, ReplyChain outgoing) {
         this.channel = channel;
         this.charset = StandardCharsets.UTF_8;
         this.outgoing = outgoing;
     }
 
-    // Queue of buffers waiting to be sent
+    // Chain of segments waiting to be sent
 
     @Override
     public void write(String str) {
@@ -29,28 +29,49 @@ public class BufferWriter extends Writer {
     @Override
     public void write(byte[] bytes) {
         if (bytes.length > 0) {
-            outgoing.append(bytes, bytes.length);
+            outgoing.append(bytes);
         }
     }
 
     @Override
-    public int flush() throws IOException {
-        byte[] data = outgoing.getData();
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        var written = channel.write(buffer);
-        if (written > 0) {
-            outgoing.consume(written);
+    public void write(byte[] bytes, int offset, int length) {
+        if (length > 0) {
+            outgoing.append(bytes, offset, length);
         }
-        return written;
+    }
+
+    @Override
+    public void writeReference(byte[] bytes) {
+        if (bytes.length > 0) {
+            outgoing.appendReference(bytes);
+        }
+    }
+
+    @Override
+    public void write(MemorySegment bytes) {
+        if (bytes.byteSize() > 0) {
+            outgoing.append(bytes);
+        }
+    }
+
+    @Override
+    public int flush() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, outgoing.writeTo(channel));
     }
 
     @Override
     public void close() throws IOException {
+        outgoing.release();
         channel.close();
     }
 
     @Override
     public boolean hasRemaining() {
-        return outgoing.dataSize() > 0;
+        return !outgoing.isEmpty();
+    }
+
+    @Override
+    public long pendingBytes() {
+        return outgoing.size();
     }
 }
@@ -1,6 +1,7 @@
 package stream;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface Reader {
 
@@ -14,17 +15,41 @@ public interface Reader {
         throw new UnsupportedOperationException("readAll not implemented");
     }
 
-    default void mark() {
-        throw new UnsupportedOperationException("mark not implemented");
+    /**
+     * Reads the next complete request as raw arguments, keeping partial progress across calls.
+     */
+    default List<byte[]> readCommand() throws IOException {
+        throw new UnsupportedOperationException("readCommand not implemented");
     }
 
-    default void reset() throws IOException {
-        throw new UnsupportedOperationException("reset not implemented");
+    /**
+     * Parses the next complete request from the bytes already received, without reading the channel.
+     *
+     * @return the raw arguments, or null if no complete request is buffered
+     */
+    default List<byte[]> parseBufferedCommand() throws IOException {
+        throw new UnsupportedOperationException("parseBufferedCommand not implemented");
     }
 
-    void close() throws IOException;
+    /**
+     * Reads the channel once into the buffer, blocking on a blocking channel.
+     *
+     * @return the bytes read, -1 at end of stream
+     */
+    default int fill() throws IOException {
+        throw new UnsupportedOperationException("fill not implemented");
+    }
+
+    /**
+     * Bytes received but not parsed yet.
+     */
+    default int bufferedBytes() {
+        return 0;
+    }
 
-    default void commit() {
-        throw new UnsupportedOperationException("consume not implemented");
+    default void expectRdbPayload() {
+        throw new UnsupportedOperationException("expectRdbPayload not implemented");
     }
+
+    void close() throws IOException;
 }
@@ -99,7 +99,7 @@ public class RedisInputStream extends FilterInputStream implements Reader {
 
             // Read from current buffer
             while (offset < bytesInBuffer) {
-                result.append((char) buffer[offset++]);
+                result.append((char) (buffer[offset++] & 0xFF));
                 readSomething = true;
             }
 
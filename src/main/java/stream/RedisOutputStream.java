@@ -20,6 +20,11 @@ public class RedisOutputStream extends Writer {
         out.write(bytes);
     }
 
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+    }
+
     @Override
     public int flush() throws IOException {
         out.flush();
@@ -1,6 +1,9 @@
 package stream;
 
 import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
 import java.util.UUID;
 
 public abstract class Writer {
@@ -14,9 +17,34 @@ public abstract class Writer {
 
     public abstract void write(byte[] bytes) throws IOException;
 
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        write(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    /**
+     * Writes an array that is never modified afterward, so implementations may keep a reference instead of a copy.
+     */
+    public void writeReference(byte[] bytes) throws IOException {
+        write(bytes);
+    }
+
+    /**
+     * Writes off-heap bytes, implementations backed by direct buffers copy them without going through the heap.
+     */
+    public void write(MemorySegment bytes) throws IOException {
+        write(bytes.toArray(ValueLayout.JAVA_BYTE));
+    }
+
     public abstract int flush() throws IOException;
 
     public abstract void close() throws IOException;
 
     public abstract boolean hasRemaining();
+
+    /**
+     * Bytes written but not flushed yet.
+     */
+    public long pendingBytes() {
+        return 0;
+    }
 }
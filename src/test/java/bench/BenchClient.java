@@ -0,0 +1,124 @@
+package bench;
+
+import helper.ArgumentExtractor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A bare RESP client for the benchmarks: commands are encoded once up front and written in one go, replies are
+ * skipped without being decoded, so that the client costs little next to the server it measures.
+ */
+public class BenchClient implements Closeable {
+    private final Socket socket;
+    private final OutputStream out;
+    private final InputStream in;
+
+    public BenchClient(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), 5000);
+        socket.setTcpNoDelay(true);
+        out = socket.getOutputStream();
+        in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+    }
+
+    /**
+     * The commands as one RESP request, to send as many times as needed.
+     */
+    public static byte[] encode(List<List<String>> commands) {
+        var bytes = new ByteArrayOutputStream();
+        for (var command : commands) {
+            bytes.writeBytes(("*" + command.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            for (var arg : command) {
+                var data = arg.getBytes(StandardCharsets.UTF_8);
+                bytes.writeBytes(("$" + data.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+                bytes.writeBytes(data);
+                bytes.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sends the encoded commands and waits for their replies.
+     */
+    public void send(byte[] request, int replies) throws IOException {
+        out.write(request);
+        out.flush();
+        for (int i = 0; i < replies; i++) {
+            readReply(null);
+        }
+    }
+
+    /**
+     * A field of INFO, e.g. {@code gc_time_ms}, as a number.
+     */
+    public long info(String field) throws IOException {
+        out.write(encode(List.of(List.of("INFO"))));
+        out.flush();
+        var reply = new StringBuilder();
+        readReply(reply);
+        return reply.toString().lines()
+                .filter(line -> line.startsWith(field + ":"))
+                .map(line -> Long.parseLong(line.substring(field.length() + 1).trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("INFO has no " + field));
+    }
+
+    private void readReply(StringBuilder text) throws IOException {
+        var line = readLine();
+        switch (line.charAt(0)) {
+            case '$' -> {
+                var length = Integer.parseInt(line.substring(1));
+                if (length >= 0) {
+                    var data = in.readNBytes(length + 2);
+                    if (text != null) {
+                        text.append(new String(data, 0, length, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            case '*' -> {
+                var count = Integer.parseInt(line.substring(1));
+                for (int i = 0; i < count; i++) {
+                    readReply(text);
+                }
+            }
+            case '-' -> throw new IOException("server replied " + line);
+            default -> {
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        var line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new IOException("connection closed");
+            }
+            line.append((char) b);
+        }
+        in.read(); // '\n'
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    static String option(String[] args, String key, String defaultValue) {
+        return Optional.ofNullable(ArgumentExtractor.extractByKey(args, key))
+                .map(ArgumentExtractor.Pair::value)
+                .orElse(defaultValue);
+    }
+}
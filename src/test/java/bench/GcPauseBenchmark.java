@@ -0,0 +1,83 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * GC time of the storage engines under a write load: loads {@code --values} string values, then overwrites random
+ * ones {@code --overwrites} times, and prints the GC collections and time the server reports in INFO memory for each
+ * phase. Runs against a server started on its own, once per engine with the same heap, e.g.
+ * <pre>
+ * java -Xmx2g -jar codecrafters-redis.jar --storage-engine heap
+ * java -Xmx2g -jar codecrafters-redis.jar --storage-engine offheap
+ * java -cp target/classes:target/test-classes bench.GcPauseBenchmark
+ * </pre>
+ * The defaults are 600k values of 1KB and 1.2M overwrites. Single pauses are in the server's {@code -Xlog:gc}.
+ * <p>
+ * Options: {@code --host}, {@code --port}, {@code --values}, {@code --value-size}, {@code --overwrites} and
+ * {@code --pipeline}.
+ */
+public class GcPauseBenchmark {
+    public static void main(String[] args) throws IOException {
+        var host = BenchClient.option(args, "--host", "localhost");
+        var port = Integer.parseInt(BenchClient.option(args, "--port", "6379"));
+        var values = Integer.parseInt(BenchClient.option(args, "--values", "600000"));
+        var valueSize = Integer.parseInt(BenchClient.option(args, "--value-size", "1024"));
+        var overwrites = Integer.parseInt(BenchClient.option(args, "--overwrites", "1200000"));
+        var pipeline = Integer.parseInt(BenchClient.option(args, "--pipeline", "64"));
+
+        try (var client = new BenchClient(host, port)) {
+            var random = ThreadLocalRandom.current();
+            var value = new byte[valueSize];
+            System.out.println("phase,seconds,gc_collections,gc_time_ms,used_memory_heap");
+            var collections = client.info("gc_collections");
+            var gcMillis = client.info("gc_time_ms");
+            var start = System.nanoTime();
+
+            for (int from = 0; from < values; from += pipeline) {
+                var sets = new ArrayList<List<String>>();
+                for (int i = from; i < Math.min(values, from + pipeline); i++) {
+                    sets.add(List.of("SET", "bench:gc:" + i, randomValue(random, value)));
+                }
+                client.send(BenchClient.encode(sets), sets.size());
+            }
+            var loaded = report(client, "load", start, collections, gcMillis);
+
+            start = System.nanoTime();
+            for (int done = 0; done < overwrites; done += pipeline) {
+                var sets = new ArrayList<List<String>>();
+                for (int i = done; i < Math.min(overwrites, done + pipeline); i++) {
+                    sets.add(List.of("SET", "bench:gc:" + random.nextInt(values), randomValue(random, value)));
+                }
+                client.send(BenchClient.encode(sets), sets.size());
+            }
+            report(client, "overwrite", start, loaded[0], loaded[1]);
+        }
+    }
+
+    /**
+     * Prints the phase's share of the GC counters, returns the counters at its end.
+     */
+    private static long[] report(BenchClient client, String phase, long startNanos, long collections, long gcMillis)
+            throws IOException {
+        var seconds = (System.nanoTime() - startNanos) / 1e9;
+        var nowCollections = client.info("gc_collections");
+        var nowMillis = client.info("gc_time_ms");
+        System.out.printf("%s,%.1f,%d,%d,%d%n", phase, seconds, nowCollections - collections, nowMillis - gcMillis,
+                client.info("used_memory_heap"));
+        return new long[]{nowCollections, nowMillis};
+    }
+
+    /**
+     * Printable random bytes, so that every value is a fresh string and none of them is stored as an integer.
+     */
+    private static String randomValue(ThreadLocalRandom random, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return new String(value, StandardCharsets.US_ASCII);
+    }
+}
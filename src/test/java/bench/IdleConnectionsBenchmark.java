@@ -0,0 +1,116 @@
+package bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and memory of a server holding many mostly idle connections, to compare the virtual-thread mode with
+ * the NIO loop. Runs against a server started on its own, once per mode, e.g.
+ * <pre>
+ * java -jar codecrafters-redis.jar --server-mode nio
+ * java -jar codecrafters-redis.jar --server-mode virtual-threads
+ * java -cp target/classes:target/test-classes bench.IdleConnectionsBenchmark --idle 10000 --active 8
+ * </pre>
+ * Opens {@code --idle} connections that send one PING and then stay silent, then runs {@code --active} clients
+ * pipelining SET/GET pairs of random keys for {@code --seconds}. It prints the ops per second and the server's INFO
+ * memory with and without the idle connections. The heap figures include garbage: for the live heap, run
+ * {@code jcmd <pid> GC.heap_info} on the server after a {@code GC.run} while the connections are still open.
+ * <p>
+ * Options: {@code --host}, {@code --port}, {@code --idle}, {@code --active}, {@code --pipeline} (1 for unpipelined),
+ * {@code --keys} and {@code --seconds}. Opening 10k connections needs as many file descriptors on both sides.
+ */
+public class IdleConnectionsBenchmark {
+    private static final List<String> MEMORY_FIELDS = List.of(
+            "connected_clients", "used_memory_heap", "used_memory_heap_committed", "mem_clients");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var host = BenchClient.option(args, "--host", "localhost");
+        var port = Integer.parseInt(BenchClient.option(args, "--port", "6379"));
+        var idle = Integer.parseInt(BenchClient.option(args, "--idle", "10000"));
+        var active = Integer.parseInt(BenchClient.option(args, "--active", "8"));
+        var pipeline = Integer.parseInt(BenchClient.option(args, "--pipeline", "32"));
+        var keys = Integer.parseInt(BenchClient.option(args, "--keys", "10000"));
+        var seconds = Integer.parseInt(BenchClient.option(args, "--seconds", "10"));
+
+        var idleClients = new ArrayList<BenchClient>(idle);
+        try (var client = new BenchClient(host, port)) {
+            System.out.println("phase," + String.join(",", MEMORY_FIELDS));
+            printMemory(client, "before");
+
+            var ping = BenchClient.encode(List.of(List.of("PING")));
+            for (int i = 0; i < idle; i++) {
+                var idleClient = new BenchClient(host, port);
+                idleClients.add(idleClient);
+                // once replied, the server has accepted and set up the connection
+                idleClient.send(ping, 1);
+            }
+            printMemory(client, "idle");
+
+            var ops = run(host, port, active, pipeline, keys, seconds);
+            printMemory(client, "after");
+            System.out.printf("ops_per_sec,%d%n", ops / seconds);
+        } finally {
+            for (var idleClient : idleClients) {
+                idleClient.close();
+            }
+        }
+    }
+
+    private static void printMemory(BenchClient client, String phase) throws IOException {
+        var line = new StringBuilder(phase);
+        for (var field : MEMORY_FIELDS) {
+            line.append(',').append(client.info(field));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Runs the active clients for the given time, returns the number of commands answered.
+     */
+    private static long run(String host, int port, int active, int pipeline, int keys, int seconds)
+            throws InterruptedException {
+        var ops = new LongAdder();
+        var stop = new AtomicBoolean();
+        var clients = new ArrayList<Thread>();
+        for (int t = 0; t < active; t++) {
+            clients.add(Thread.ofPlatform().start(() -> {
+                try (var client = new BenchClient(host, port)) {
+                    var batches = randomSetsAndGets(keys, pipeline);
+                    for (int i = 0; !stop.get(); i = (i + 1) % batches.size()) {
+                        client.send(batches.get(i), pipeline);
+                        ops.add(pipeline);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Client failed: " + e.getMessage());
+                }
+            }));
+        }
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (var client : clients) {
+            client.join();
+        }
+        return ops.sum();
+    }
+
+    /**
+     * Batches of {@code pipeline} commands, every other one a SET, the others GETs.
+     */
+    private static List<byte[]> randomSetsAndGets(int keys, int pipeline) {
+        var random = ThreadLocalRandom.current();
+        var batches = new ArrayList<byte[]>();
+        for (int b = 0; b < 64; b++) {
+            var batch = new ArrayList<List<String>>();
+            for (int i = 0; i < pipeline; i++) {
+                var key = "bench:idle:" + random.nextInt(keys);
+                batch.add(i % 2 == 0 ? List.of("SET", key, "v") : List.of("GET", key));
+            }
+            batches.add(BenchClient.encode(batch));
+        }
+        return batches;
+    }
+}
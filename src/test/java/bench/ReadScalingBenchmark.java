@@ -0,0 +1,99 @@
+package bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GET throughput against the number of reader threads, to see how {@code --concurrent-reads} scales across cores.
+ * Runs against a server started on its own, e.g.
+ * <pre>
+ * java -jar codecrafters-redis.jar --server-mode virtual-threads --concurrent-reads yes
+ * java -cp target/classes:target/test-classes bench.ReadScalingBenchmark --threads 1,2,4,8,16
+ * </pre>
+ * Each reader thread has a connection of its own and sends pipelines of GETs of random keys. For every thread count
+ * it prints the GETs per second and the share of them the read view answered, the rest went through the event loop.
+ * <p>
+ * Options: {@code --host}, {@code --port}, {@code --threads} (comma separated), {@code --keys},
+ * {@code --value-size}, {@code --pipeline} and {@code --seconds} per thread count.
+ */
+public class ReadScalingBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var host = BenchClient.option(args, "--host", "localhost");
+        var port = Integer.parseInt(BenchClient.option(args, "--port", "6379"));
+        var threadCounts = Arrays.stream(BenchClient.option(args, "--threads", "1,2,4,8").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        var keys = Integer.parseInt(BenchClient.option(args, "--keys", "10000"));
+        var valueSize = Integer.parseInt(BenchClient.option(args, "--value-size", "64"));
+        var pipeline = Integer.parseInt(BenchClient.option(args, "--pipeline", "16"));
+        var seconds = Integer.parseInt(BenchClient.option(args, "--seconds", "5"));
+
+        try (var client = new BenchClient(host, port)) {
+            load(client, keys, valueSize);
+            System.out.println("threads,gets_per_sec,served_by_read_view");
+            for (var threads : threadCounts) {
+                var servedBefore = client.info("concurrent_reads_served");
+                var gets = run(host, port, threads, keys, pipeline, seconds);
+                var served = client.info("concurrent_reads_served") - servedBefore;
+                System.out.printf("%d,%d,%.2f%n", threads, gets / seconds, gets == 0 ? 0.0 : (double) served / gets);
+            }
+        }
+    }
+
+    private static void load(BenchClient client, int keys, int valueSize) throws IOException {
+        var value = "x".repeat(valueSize);
+        for (int from = 0; from < keys; from += 1000) {
+            var sets = new ArrayList<List<String>>();
+            for (int i = from; i < Math.min(keys, from + 1000); i++) {
+                sets.add(List.of("SET", "bench:read:" + i, value));
+            }
+            client.send(BenchClient.encode(sets), sets.size());
+        }
+    }
+
+    /**
+     * Runs the readers for the given time, returns the number of GETs answered.
+     */
+    private static long run(String host, int port, int threads, int keys, int pipeline, int seconds)
+            throws InterruptedException {
+        var gets = new LongAdder();
+        var stop = new AtomicBoolean();
+        var readers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                try (var client = new BenchClient(host, port)) {
+                    var batches = randomGets(keys, pipeline);
+                    for (int i = 0; !stop.get(); i = (i + 1) % batches.size()) {
+                        client.send(batches.get(i), pipeline);
+                        gets.add(pipeline);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Reader failed: " + e.getMessage());
+                }
+            }));
+        }
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (var reader : readers) {
+            reader.join();
+        }
+        return gets.sum();
+    }
+
+    private static List<byte[]> randomGets(int keys, int pipeline) {
+        var random = ThreadLocalRandom.current();
+        var batches = new ArrayList<byte[]>();
+        for (int b = 0; b < 64; b++) {
+            var batch = new ArrayList<List<String>>();
+            for (int i = 0; i < pipeline; i++) {
+                batch.add(List.of("GET", "bench:read:" + random.nextInt(keys)));
+            }
+            batches.add(BenchClient.encode(batch));
+        }
+        return batches;
+    }
+}
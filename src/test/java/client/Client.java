@@ -9,11 +9,17 @@ import stream.Writer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Client {
     private static final int TIMEOUT = 5000;
     private Socket socket;
+    private SocketChannel channel;
     private Reader inputStream;
     private Writer outputStream;
 
@@ -22,6 +28,7 @@ public class Client {
         // Add connection timeout of 5 seconds
         socket.connect(new InetSocketAddress(hostName, port), TIMEOUT);
         socket.setSoTimeout(TIMEOUT); // Add read timeout
+        socket.setTcpNoDelay(true); // commands are written a fragment at a time
         System.out.println("Connected to server");
 
         outputStream = new RedisOutputStream(socket.getOutputStream());
@@ -29,10 +36,19 @@ public class Client {
 
     }
 
+    public void connect(String unixSocketPath) throws IOException {
+        channel = SocketChannel.open(UnixDomainSocketAddress.of(unixSocketPath));
+        System.out.println("Connected to server over unix socket");
+
+        outputStream = new RedisOutputStream(Channels.newOutputStream(channel));
+        inputStream = new RedisInputStream(Channels.newInputStream(channel));
+    }
+
     public void disconnect() throws IOException {
         outputStream.close();
         inputStream.close();
         if (socket != null) socket.close();
+        if (channel != null) channel.close();
         System.out.println("Disconnected from server");
     }
 
@@ -55,4 +71,74 @@ public class Client {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends the command and reads exactly one reply, without waiting for the connection to go idle like
+     * {@link #sendArray} does, for tests that send many commands.
+     */
+    public String call(List<String> messages) {
+        try {
+            RedisWriteProcessor.sendArray(outputStream, messages);
+            outputStream.flush();
+            var reply = new StringBuilder();
+            readReply(reply);
+            return reply.toString();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Sends every command at once and reads one reply per command, in order.
+     */
+    public List<String> pipeline(List<List<String>> commands) {
+        try {
+            for (var command : commands) {
+                RedisWriteProcessor.sendArray(outputStream, command);
+            }
+            outputStream.flush();
+            var replies = new ArrayList<String>(commands.size());
+            for (int i = 0; i < commands.size(); i++) {
+                var reply = new StringBuilder();
+                readReply(reply);
+                replies.add(reply.toString());
+            }
+            return replies;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void readReply(StringBuilder reply) throws IOException {
+        var line = inputStream.readLine();
+        reply.append(line).append("\r\n");
+        switch (line.charAt(0)) {
+            case '$' -> {
+                var length = Integer.parseInt(line.substring(1));
+                for (int i = 0; i < length + 2 && length >= 0; i++) {
+                    reply.append((char) (inputStream.readByte() & 0xFF));
+                }
+            }
+            case '*' -> {
+                var count = Integer.parseInt(line.substring(1));
+                for (int i = 0; i < count; i++) {
+                    readReply(reply);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Writes the message as is, without reading a reply.
+     */
+    public void sendRaw(String message) {
+        try {
+            outputStream.write(message.getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package server;
 
-import server.nonblocking.NonBlockingServer;
-
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -14,7 +12,7 @@ public class RedisServer {
     private final Server server;
 
     private RedisServer(String[] args) {
-        server = NonBlockingServer.init(args);
+        server = Server.init(args);
     }
 
     public static RedisServer init() {
@@ -6,7 +6,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import extension.RedisServerExtension;
 import utils.TestHelper;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static utils.ConstHelper.REDIS_HOSTNAME;
 import static utils.ConstHelper.REDIS_PORT;
@@ -53,6 +57,117 @@ class BasicRedisOperationTest {
         TestHelper.expectBulkString("Hello, world", getMessage);
     }
 
+    @Test
+    void testServer_setThenGet_largeValue() {
+        var value = "x".repeat(300 * 1024);
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_set_large_value", value)));
+        TestHelper.expectBulkString(value, client.sendArray(List.of("GET", "test_set_large_value")));
+    }
+
+    @Test
+    void testServer_setThenGet_nonAsciiValue() {
+        var value = "héllo, wörld ✓";
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_set_non_ascii", value)));
+
+        // the test client reads raw bytes as chars, so compare against the UTF-8 bytes
+        var raw = new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        Assertions.assertEquals(String.format("$%d\r\n%s\r\n", raw.length(), raw),
+                client.sendArray(List.of("GET", "test_set_non_ascii")));
+    }
+
+    @Test
+    void testServer_getTwiceThenOverwrite_returnNewValue() {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_reply_cache", "first")));
+        TestHelper.expectBulkString("first", client.sendArray(List.of("GET", "test_reply_cache")));
+        TestHelper.expectBulkString("first", client.sendArray(List.of("GET", "test_reply_cache")));
+
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_reply_cache", "second")));
+        TestHelper.expectBulkString("second", client.sendArray(List.of("GET", "test_reply_cache")));
+
+        var info = client.sendArray(List.of("INFO", "stats"));
+        Assertions.assertTrue(info.contains("reply_cache_hits:"));
+        Assertions.assertFalse(info.contains("reply_cache_hits:0\n"));
+    }
+
+    @Test
+    void testServer_infoServer_defaultHz() {
+        var message = client.sendArray(List.of("INFO", "server"));
+        Assertions.assertTrue(message.contains("hz:10"));
+    }
+
+    @Test
+    void testServer_commandInfo_returnArityAndKeyPositions() {
+        var message = client.sendArray(List.of("COMMAND", "INFO", "get"));
+        Assertions.assertEquals("*1\r\n*7\r\n$3\r\nget\r\n:2\r\n*2\r\n+readonly\r\n+fast\r\n:1\r\n:1\r\n:1\r\n"
+                + "*2\r\n+@read\r\n+@fast\r\n", message);
+    }
+
+    @Test
+    void testServer_wrongNumberOfArguments() {
+        TestHelper.expectError("wrong number of arguments for 'get' command", client.sendArray(List.of("GET")));
+    }
+
+    @Test
+    void testServer_getList_wrongType() {
+        TestHelper.expectInt(1, client.sendArray(List.of("RPUSH", "test_wrong_type", "a")));
+        var message = client.sendArray(List.of("GET", "test_wrong_type"));
+        Assertions.assertEquals("-WRONGTYPE Operation against a key holding the wrong kind of value\r\n", message);
+        TestHelper.expectSimpleString("list", client.sendArray(List.of("TYPE", "test_wrong_type")));
+    }
+
+    @Test
+    void testServer_renameThenDel() {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_rename_src", "Hello, world")));
+        TestHelper.expectOk(client.sendArray(List.of("RENAME", "test_rename_src", "test_rename_dst")));
+        TestHelper.expectInt(1, client.sendArray(List.of("EXISTS", "test_rename_src", "test_rename_dst")));
+        TestHelper.expectBulkString("Hello, world", client.sendArray(List.of("GET", "test_rename_dst")));
+
+        TestHelper.expectInt(1, client.sendArray(List.of("DEL", "test_rename_src", "test_rename_dst")));
+        TestHelper.expectSimpleString("none", client.sendArray(List.of("TYPE", "test_rename_dst")));
+        TestHelper.expectError("no such key", client.sendArray(List.of("RENAME", "test_rename_dst", "test_rename_src")));
+    }
+
+    @Test
+    void testServer_setManyKeys_infoKeyspaceReportsResizes() {
+        // a few dozen keys past the 16 slots of the initial table grow it more than once
+        var sets = new ArrayList<List<String>>();
+        var gets = new ArrayList<List<String>>();
+        for (int i = 0; i < 50; i++) {
+            sets.add(List.of("SET", "test_keyspace_" + i, "v"));
+            gets.add(List.of("GET", "test_keyspace_" + i));
+        }
+        client.pipeline(sets).forEach(TestHelper::expectOk);
+        client.pipeline(gets).forEach(reply -> TestHelper.expectBulkString("v", reply));
+        var info = client.sendArray(List.of("INFO", "keyspace"));
+        Assertions.assertTrue(info.contains("db0:keys="));
+        Assertions.assertFalse(info.contains("keyspace_resizes:0\n"));
+    }
+
+    @Test
+    void testServer_expireThenPersist() {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_expire_persist", "v")));
+        TestHelper.expectInt(-1, client.sendArray(List.of("TTL", "test_expire_persist")));
+        TestHelper.expectInt(1, client.sendArray(List.of("EXPIRE", "test_expire_persist", "100")));
+        TestHelper.expectInt(100, client.sendArray(List.of("TTL", "test_expire_persist")));
+        TestHelper.expectInt(0, client.sendArray(List.of("EXPIRE", "test_expire_persist", "10", "GT")));
+        TestHelper.expectInt(1, client.sendArray(List.of("PERSIST", "test_expire_persist")));
+        TestHelper.expectInt(-1, client.sendArray(List.of("TTL", "test_expire_persist")));
+        TestHelper.expectInt(-2, client.sendArray(List.of("TTL", "test_expire_missing")));
+    }
+
+    @Test
+    void testServer_setOptions() {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_set_options", "first", "EX", "100")));
+        TestHelper.expectNull(client.sendArray(List.of("SET", "test_set_options", "second", "NX")));
+        TestHelper.expectBulkString("first", client.sendArray(List.of("SET", "test_set_options", "third", "XX", "GET", "KEEPTTL")));
+        // KEEPTTL kept the expiry, the test client's round trips since may have rounded it down a second
+        var ttl = client.sendArray(List.of("TTL", "test_set_options"));
+        Assertions.assertTrue(ttl.equals(":100\r\n") || ttl.equals(":99\r\n"), ttl);
+        TestHelper.expectBulkString("third", client.sendArray(List.of("GETEX", "test_set_options", "PERSIST")));
+        TestHelper.expectInt(-1, client.sendArray(List.of("TTL", "test_set_options")));
+        TestHelper.expectError("syntax error", client.sendArray(List.of("SET", "test_set_options", "v", "EX", "1", "PX", "1")));
+    }
+
     @Test
     void testServer_getNotFound() {
         var getMessage = client.sendArray(List.of("GET", "test_get_not_found"));
@@ -73,4 +188,132 @@ class BasicRedisOperationTest {
         var expiredMessage = client.sendArray(List.of("GET", "test_set_with_expiry_time"));
         TestHelper.expectNull(expiredMessage);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testServer_setWithExpiryTimeNeverRead_activelyExpired() throws InterruptedException {
+        var expiredBefore = expiredKeys();
+        for (int i = 0; i < 50; i++) {
+            TestHelper.expectOk(client.sendArray(List.of("SET", "test_active_expire_" + i, "v", "PX", "100")));
+        }
+
+        // Wait for the cron to find them, nothing reads the keys
+        Thread.sleep(700);
+
+        Assertions.assertTrue(expiredKeys() - expiredBefore >= 50);
+    }
+
+    @Test
+    void testServer_counterCommands_intEncodedWithOverflowErrors() {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_counter", "10")));
+        TestHelper.expectBulkString("int", client.sendArray(List.of("OBJECT", "ENCODING", "test_counter")));
+        TestHelper.expectInt(15, client.sendArray(List.of("INCRBY", "test_counter", "5")));
+        TestHelper.expectInt(14, client.sendArray(List.of("DECR", "test_counter")));
+        TestHelper.expectInt(-6, client.sendArray(List.of("DECRBY", "test_counter", "20")));
+        TestHelper.expectBulkString("-6", client.sendArray(List.of("GET", "test_counter")));
+        TestHelper.expectBulkString("-5.5", client.sendArray(List.of("INCRBYFLOAT", "test_counter", "0.5")));
+        TestHelper.expectBulkString("raw", client.sendArray(List.of("OBJECT", "ENCODING", "test_counter")));
+
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_counter", "9223372036854775807")));
+        TestHelper.expectError("increment or decrement would overflow", client.sendArray(List.of("INCR", "test_counter")));
+        TestHelper.expectError("decrement would overflow", client.sendArray(List.of("DECRBY", "test_counter", "-9223372036854775808")));
+        TestHelper.expectError("value is not a valid float", client.sendArray(List.of("INCRBYFLOAT", "test_counter", "abc")));
+
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_counter", "007")));
+        TestHelper.expectBulkString("raw", client.sendArray(List.of("OBJECT", "ENCODING", "test_counter")));
+    }
+
+    @Test
+    void testServer_memoryUsage_growsWithValueAndFreedOnDel() {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_memory_small", "v")));
+        TestHelper.expectOk(client.sendArray(List.of("SET", "test_memory_large", "v".repeat(1000))));
+        var small = usage(client.sendArray(List.of("MEMORY", "USAGE", "test_memory_small")));
+        var big = usage(client.sendArray(List.of("MEMORY", "USAGE", "test_memory_large", "SAMPLES", "0")));
+        // same key length, and a 1-byte array still takes 24 bytes once the JVM pads it to 8
+        Assertions.assertTrue(big - small >= 1000 - 8);
+        Assertions.assertTrue(big < 2 * 1000);
+
+        var datasetBefore = infoMemory("used_memory_dataset:");
+        TestHelper.expectInt(2, client.sendArray(List.of("DEL", "test_memory_small", "test_memory_large")));
+        // the usage also counts the table slots, which stay
+        Assertions.assertTrue(datasetBefore - infoMemory("used_memory_dataset:") > big);
+        TestHelper.expectNull(client.sendArray(List.of("MEMORY", "USAGE", "test_memory_large")));
+    }
+
+    @Test
+    void testServer_scan_visitsEveryMatchingKey() {
+        var sets = new ArrayList<List<String>>();
+        for (int i = 0; i < 50; i++) {
+            sets.add(List.of("SET", "test_scan_" + i, "v"));
+        }
+        client.pipeline(sets).forEach(TestHelper::expectOk);
+        TestHelper.expectInt(1, client.call(List.of("RPUSH", "test_scan_list", "a")));
+
+        var keys = scanAll("MATCH", "test_scan_*", "COUNT", "10");
+        Assertions.assertEquals(51, keys.size());
+        Assertions.assertTrue(keys.contains("test_scan_49"));
+        Assertions.assertEquals(Set.of("test_scan_list"), scanAll("MATCH", "test_scan_*", "TYPE", "list"));
+
+        TestHelper.expectError("invalid cursor", client.sendArray(List.of("SCAN", "abc")));
+        TestHelper.expectError("invalid cursor", client.sendArray(List.of("SCAN", "4294967296")));
+        TestHelper.expectError("invalid cursor", client.sendArray(List.of("SCAN", "-1")));
+        TestHelper.expectError("syntax error", client.sendArray(List.of("SCAN", "0", "COUNT", "0")));
+        TestHelper.expectError("unknown type name 'zset'", client.sendArray(List.of("SCAN", "0", "TYPE", "zset")));
+    }
+
+    @Test
+    void testServer_keys_matchesGlob() {
+        for (var key : List.of("test_keys_hello", "test_keys_hallo", "test_keys_hxllo", "test_keys_hllo")) {
+            TestHelper.expectOk(client.sendArray(List.of("SET", key, "v")));
+        }
+        TestHelper.expectArray(List.of("test_keys_hello"), client.sendArray(List.of("KEYS", "test_keys_he*")));
+        Assertions.assertEquals(Set.of("test_keys_hello", "test_keys_hallo"),
+                bulkStrings(client.sendArray(List.of("KEYS", "test_keys_h[ae]llo"))));
+        Assertions.assertEquals(Set.of("test_keys_hallo", "test_keys_hxllo"),
+                bulkStrings(client.sendArray(List.of("KEYS", "test_keys_h[^e]llo"))));
+        Assertions.assertEquals(Set.of("test_keys_hello", "test_keys_hallo", "test_keys_hxllo"),
+                bulkStrings(client.sendArray(List.of("KEYS", "test_keys_h?llo"))));
+        TestHelper.expectArray(List.of(), client.sendArray(List.of("KEYS", "test_keys_none*")));
+    }
+
+    private Set<String> scanAll(String... options) {
+        var keys = new HashSet<String>();
+        var cursor = "0";
+        do {
+            var request = new ArrayList<>(List.of("SCAN", cursor));
+            request.addAll(List.of(options));
+            var reply = client.call(request);
+            // *2, the cursor, then the keys
+            var lines = reply.split("\r\n");
+            cursor = lines[2];
+            for (int i = 4; i < lines.length; i += 2) {
+                keys.add(lines[i + 1]);
+            }
+        } while (!cursor.equals("0"));
+        return keys;
+    }
+
+    private static Set<String> bulkStrings(String reply) {
+        var strings = new HashSet<String>();
+        var lines = reply.split("\r\n");
+        for (int i = 1; i < lines.length; i += 2) {
+            strings.add(lines[i + 1]);
+        }
+        return strings;
+    }
+
+    private static long usage(String reply) {
+        return Long.parseLong(reply.substring(1, reply.length() - 2));
+    }
+
+    private long infoMemory(String field) {
+        var info = client.sendArray(List.of("INFO", "memory"));
+        var start = info.indexOf(field) + field.length();
+        return Long.parseLong(info.substring(start, info.indexOf('\n', start)));
+    }
+
+    private long expiredKeys() {
+        var info = client.sendArray(List.of("INFO", "stats"));
+        var start = info.indexOf("expired_keys:") + "expired_keys:".length();
+        return Long.parseLong(info.substring(start, info.indexOf('\n', start)));
+    }
+}
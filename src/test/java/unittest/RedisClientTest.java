@@ -0,0 +1,386 @@
+package unittest;
+
+import client.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import server.RedisServer;
+import utils.TestHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+class RedisClientTest {
+    private RedisServer redisServer;
+    private Client client;
+    private int port;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            TestHelper.stopClient(client);
+        }
+        if (redisServer != null) {
+            redisServer.stopServer();
+        }
+    }
+
+    /**
+     * Starts a server with the given flags on a free port and connects {@link #client} to it.
+     */
+    private Client startServer(String... flags) throws InterruptedException {
+        port = TestHelper.freePort();
+        var args = new ArrayList<>(List.of("--port", String.valueOf(port)));
+        args.addAll(List.of(flags));
+        redisServer = RedisServer.init(args.toArray(String[]::new));
+        redisServer.startServer();
+        client = connect();
+        return client;
+    }
+
+    private Client connect() {
+        return TestHelper.startClient(RedisServer.DEFAULT_HOSTNAME, port);
+    }
+
+    @Test
+    void info_clients_returnOutputBufferLimits() throws InterruptedException {
+        startServer("--client-output-buffer-limit", "normal 1mb 512kb 10");
+        var message = client.sendArray(List.of("INFO", "clients"));
+        Assertions.assertTrue(message.contains("connected_clients:1"));
+        Assertions.assertTrue(message.contains("client_output_buffer_limit:normal 1048576 524288 10 replica 268435456 67108864 60"));
+    }
+
+    @Test
+    void protocolError_lengthWithoutDigits_closesConnection() throws InterruptedException {
+        startServer();
+        client.sendRaw("*1\r\n$-\r\n");
+        Assertions.assertThrows(RuntimeException.class, () -> client.sendString("PING"));
+        client = connect();
+        TestHelper.expectSimpleString("PONG", client.sendString("PING"));
+    }
+
+    @Test
+    void bulkString_largeDeclaredLength_notAllocatedUpFront() throws InterruptedException {
+        startServer();
+        var other = connect();
+        other.sendRaw("*3\r\n$3\r\nSET\r\n$5\r\nlarge\r\n$400000000\r\nxxxxx");
+        TestHelper.expectSimpleString("PONG", client.sendString("PING"));
+        System.gc(); // the server runs in this JVM, only what it holds on to should be left
+        var info = client.sendArray(List.of("INFO", "memory"));
+        var heapUsed = info.lines().filter(line -> line.startsWith("used_memory_heap:")).findFirst().orElseThrow();
+        Assertions.assertTrue(Long.parseLong(heapUsed.substring("used_memory_heap:".length())) < 400_000_000L, heapUsed);
+        TestHelper.stopClient(other);
+    }
+
+    @Test
+    void unixSocket_ping_pong() throws InterruptedException {
+        var path = System.getProperty("java.io.tmpdir") + "/redis-java-test.sock";
+        startServer("--unixsocket", path);
+
+        var unixClient = TestHelper.startUnixClient(path);
+        TestHelper.expectSimpleString("PONG", unixClient.sendString("PING"));
+        Assertions.assertTrue(unixClient.sendArray(List.of("CLIENT", "LIST")).contains("flags=NU"));
+        TestHelper.stopClient(unixClient);
+    }
+
+    @Test
+    void clientList_returnConnectedClient() throws InterruptedException {
+        startServer();
+        var message = client.sendArray(List.of("CLIENT", "LIST"));
+        Assertions.assertTrue(message.contains("class=normal"));
+        Assertions.assertTrue(message.contains("cmd=client"));
+    }
+
+    @Test
+    void maxmemory_setAboveLimit_evictOrRejectByPolicy() throws InterruptedException {
+        startServer("--maxmemory", "100kb", "--maxmemory-policy", "allkeys-lru");
+        // about 150 values of 1kb fill the 100kb
+        var value = "x".repeat(1024);
+        var sets = new ArrayList<List<String>>();
+        for (int i = 0; i < 300; i++) {
+            sets.add(List.of("SET", "evict:" + i, value));
+        }
+        for (var reply : client.pipeline(sets)) {
+            TestHelper.expectOk(reply);
+        }
+        TestHelper.expectBulkString(value, client.call(List.of("GET", "evict:299")));
+        var info = client.sendArray(List.of("INFO"));
+        Assertions.assertTrue(info.contains("maxmemory_policy:allkeys-lru"));
+        Assertions.assertFalse(info.contains("evicted_keys:0"));
+
+        TestHelper.stopClient(client);
+        redisServer.stopServer();
+        startServer("--maxmemory", "1", "--maxmemory-policy", "noeviction");
+        Assertions.assertTrue(client.sendArray(List.of("SET", "evict:oom", value)).startsWith("-OOM"));
+        TestHelper.expectNull(client.sendArray(List.of("GET", "evict:oom")));
+    }
+
+    @Test
+    void offHeapEngine_setGetRename_valuesKeptOffHeap() throws InterruptedException {
+        startServer("--storage-engine", "offheap");
+        var large = "x".repeat(100_000);
+        TestHelper.expectOk(client.sendArray(List.of("SET", "offheap:small", "hello")));
+        TestHelper.expectOk(client.sendArray(List.of("SET", "offheap:large", large)));
+        TestHelper.expectBulkString("offheap", client.sendArray(List.of("OBJECT", "ENCODING", "offheap:small")));
+        TestHelper.expectBulkString(large, client.sendArray(List.of("GET", "offheap:large")));
+
+        TestHelper.expectOk(client.sendArray(List.of("RENAME", "offheap:small", "offheap:renamed")));
+        TestHelper.expectBulkString("hello", client.sendArray(List.of("SET", "offheap:renamed", "world", "GET")));
+        TestHelper.expectBulkString("world", client.sendArray(List.of("GET", "offheap:renamed")));
+        TestHelper.expectInt(2, client.sendArray(List.of("DEL", "offheap:renamed", "offheap:large")));
+        Assertions.assertTrue(client.sendArray(List.of("INFO", "memory")).contains("storage_engine:offheap"));
+    }
+
+    @Test
+    void shards_keysOnSeveralShards_routedAndCoordinated() throws InterruptedException {
+        startServer("--shards", "4");
+        var before = Integer.parseInt(client.sendArray(List.of("DBSIZE")).substring(1).trim());
+        for (int i = 0; i < 50; i++) {
+            TestHelper.expectOk(client.sendArray(List.of("SET", "shard:" + i, "v" + i)));
+        }
+        for (int i = 0; i < 50; i++) {
+            TestHelper.expectBulkString("v" + i, client.sendArray(List.of("GET", "shard:" + i)));
+        }
+        TestHelper.expectInt(before + 50, client.sendArray(List.of("DBSIZE")));
+        TestHelper.expectInt(3, client.sendArray(List.of("EXISTS", "shard:1", "shard:2", "shard:3", "shard:none")));
+        TestHelper.expectInt(3, client.sendArray(List.of("DEL", "shard:1", "shard:2", "shard:3", "shard:none")));
+
+        for (int i = 0; i < 10; i++) {
+            TestHelper.expectOk(client.sendArray(List.of("RENAME", "shard:" + (10 + i), "shard:renamed:" + i)));
+            TestHelper.expectBulkString("v" + (10 + i), client.sendArray(List.of("GET", "shard:renamed:" + i)));
+            TestHelper.expectNull(client.sendArray(List.of("GET", "shard:" + (10 + i))));
+        }
+
+        TestHelper.expectOk(client.sendArray(List.of("MULTI")));
+        for (int i = 0; i < 4; i++) {
+            TestHelper.expectQueued(client.sendArray(List.of("SET", "shard:tx:" + i, "t")));
+        }
+        client.sendArray(List.of("EXEC"));
+        TestHelper.expectBulkString("t", client.sendArray(List.of("GET", "shard:tx:3")));
+        TestHelper.expectInt(4, client.sendArray(List.of("DEL", "shard:tx:0", "shard:tx:1", "shard:tx:2", "shard:tx:3")));
+        Assertions.assertTrue(client.sendArray(List.of("INFO")).contains("# Shards"));
+    }
+
+    @Test
+    void commandBudget_longPipeline_preemptedAndResumedInOrder() throws InterruptedException {
+        startServer("--client-command-budget", "10");
+        assertPipelinePreemptedAndResumedInOrder();
+    }
+
+    @Test
+    void commandBudget_ioThreads_preemptedAndResumedInOrder() throws InterruptedException {
+        startServer("--client-command-budget", "10", "--io-threads", "2");
+        assertPipelinePreemptedAndResumedInOrder();
+    }
+
+    /**
+     * A pipeline of 400 commands is run 10 at a time, the client waiting in the pending queue in between: every reply
+     * must still come back, in order.
+     */
+    private void assertPipelinePreemptedAndResumedInOrder() {
+        var preemptionsBefore = infoStat("client_preemptions");
+        var commands = new ArrayList<List<String>>();
+        for (int i = 0; i < 200; i++) {
+            commands.add(List.of("SET", "budget:" + i, "v" + i));
+            commands.add(List.of("GET", "budget:" + i));
+        }
+        var replies = client.pipeline(commands);
+        for (int i = 0; i < 200; i++) {
+            TestHelper.expectOk(replies.get(2 * i));
+            TestHelper.expectBulkString("v" + i, replies.get(2 * i + 1));
+        }
+        Assertions.assertTrue(infoStat("client_preemptions") > preemptionsBefore);
+    }
+
+    private long infoStat(String field) {
+        var line = client.sendArray(List.of("INFO", "stats")).lines()
+                .filter(l -> l.startsWith(field + ":")).findFirst().orElseThrow();
+        return Long.parseLong(line.substring(field.length() + 1));
+    }
+
+    @Test
+    void ioThreads_severalClients_repliesInOrder() throws InterruptedException {
+        startServer("--io-threads", "4");
+        var other = connect();
+        for (int i = 0; i < 50; i++) {
+            TestHelper.expectOk(client.sendArray(List.of("SET", "io:" + i, "v" + i)));
+            TestHelper.expectBulkString("v" + i, other.sendArray(List.of("GET", "io:" + i)));
+        }
+        TestHelper.expectInt(3, other.sendArray(List.of("DEL", "io:0", "io:1", "io:2")));
+        TestHelper.stopClient(other);
+        var info = client.sendArray(List.of("INFO"));
+        Assertions.assertTrue(info.contains("io_threads:4"));
+        Assertions.assertTrue(info.contains("io_threaded_reads_processed:"));
+    }
+
+    @Test
+    void virtualThreads_severalClients_servedByTheExecutor() throws InterruptedException {
+        startServer("--server-mode", "virtual-threads");
+        var other = connect();
+        for (int i = 0; i < 50; i++) {
+            TestHelper.expectOk(client.sendArray(List.of("SET", "vt:" + i, "v" + i)));
+            TestHelper.expectBulkString("v" + i, other.sendArray(List.of("GET", "vt:" + i)));
+        }
+        TestHelper.expectInt(2, other.sendArray(List.of("RPUSH", "vt:list", "a", "b")));
+        TestHelper.expectArray(List.of("vt:list", "a"), client.sendArray(List.of("BLPOP", "vt:list", "0")));
+        TestHelper.expectNull(client.sendArray(List.of("BLPOP", "vt:empty", "0.1")));
+        TestHelper.stopClient(other);
+        Assertions.assertTrue(client.sendArray(List.of("INFO", "server")).contains("server_mode:virtual-threads"));
+    }
+
+    @Test
+    void virtualThreads_writesWithoutReplicas_nothingQueuedForReplication() throws InterruptedException {
+        startServer("--server-mode", "virtual-threads");
+        for (int i = 0; i < 100; i++) {
+            TestHelper.expectOk(client.call(List.of("SET", "vt:repl:" + i, "v", "PX", "1")));
+            TestHelper.expectInt(1, client.call(List.of("RPUSH", "vt:repl:list:" + i, "a")));
+            TestHelper.expectInt(1, client.call(List.of("DEL", "vt:repl:list:" + i)));
+        }
+        Thread.sleep(10);
+        TestHelper.expectNull(client.call(List.of("GET", "vt:repl:0"))); // expired, replicas would get a DEL
+        var info = client.sendArray(List.of("INFO", "replication"));
+        Assertions.assertTrue(info.contains("connected_slaves:0"), info);
+        Assertions.assertTrue(info.contains("repl_pending_commands:0"), info);
+    }
+
+    @Test
+    void concurrentReads_readsSeeEveryCompletedWrite() throws InterruptedException {
+        startServer("--server-mode", "virtual-threads", "--concurrent-reads", "yes");
+        var other = connect();
+        for (int i = 0; i < 50; i++) {
+            TestHelper.expectOk(client.sendArray(List.of("SET", "cr:" + i, "v" + i)));
+            TestHelper.expectBulkString("v" + i, other.sendArray(List.of("GET", "cr:" + i)));
+        }
+        TestHelper.expectInt(1, client.sendArray(List.of("DEL", "cr:0")));
+        TestHelper.expectNull(other.sendArray(List.of("GET", "cr:0")));
+        TestHelper.expectInt(3, client.sendArray(List.of("RPUSH", "cr:list", "a", "b", "c")));
+        TestHelper.expectInt(3, other.sendArray(List.of("LLEN", "cr:list")));
+        // the first LRANGE is run by the event loop, the second is answered from the captured elements
+        TestHelper.expectArray(List.of("b", "c"), other.sendArray(List.of("LRANGE", "cr:list", "1", "-1")));
+        TestHelper.expectArray(List.of("b", "c"), other.sendArray(List.of("LRANGE", "cr:list", "1", "-1")));
+        TestHelper.expectOk(other.sendArray(List.of("MULTI")));
+        TestHelper.expectQueued(other.sendArray(List.of("GET", "cr:1")));
+        TestHelper.expectArray(List.of("v1"), other.sendArray(List.of("EXEC")));
+        TestHelper.stopClient(other);
+        Assertions.assertTrue(client.sendArray(List.of("INFO", "stats")).contains("concurrent_reads_served:"));
+    }
+
+    @Test
+    void concurrentReads_virtualThreads_readersNeverSeeHalfAWrite() throws InterruptedException {
+        startServer("--server-mode", "virtual-threads", "--concurrent-reads", "yes");
+        assertReadersSeeWholeWrites();
+    }
+
+    @Test
+    void concurrentReads_ioThreads_readersNeverSeeHalfAWrite() throws InterruptedException {
+        startServer("--io-threads", "4", "--concurrent-reads", "yes");
+        assertReadersSeeWholeWrites();
+    }
+
+    /**
+     * Readers hammer EXISTS, LLEN and GET while writers run transactions and INCRs. Each transaction leaves exactly
+     * one of two keys and pushes two elements, so a reader seeing half of one would count 0 or 2 keys or an odd
+     * length. The counter only goes up, a reader must never see it go back.
+     */
+    private void assertReadersSeeWholeWrites() throws InterruptedException {
+        TestHelper.expectOk(client.sendArray(List.of("SET", "cr:tx:a", "1")));
+        var failures = new ConcurrentLinkedQueue<String>();
+        var writersDone = new AtomicBoolean();
+        var writers = new ArrayList<Thread>();
+        for (int w = 0; w < 2; w++) {
+            writers.add(Thread.ofPlatform().start(() -> runChecked(failures, writer -> {
+                for (int i = 0; i < 500; i++) {
+                    var set = i % 2 == 0 ? "cr:tx:b" : "cr:tx:a";
+                    var del = i % 2 == 0 ? "cr:tx:a" : "cr:tx:b";
+                    writer.call(List.of("MULTI"));
+                    writer.call(List.of("SET", set, "1"));
+                    writer.call(List.of("DEL", del));
+                    writer.call(List.of("RPUSH", "cr:tx:list", "x"));
+                    writer.call(List.of("RPUSH", "cr:tx:list", "x"));
+                    var exec = writer.call(List.of("EXEC"));
+                    if (!exec.startsWith("*4\r\n")) {
+                        failures.add("EXEC replied " + exec);
+                    }
+                }
+            })));
+        }
+        writers.add(Thread.ofPlatform().start(() -> runChecked(failures, counter -> {
+            for (int i = 0; i < 2000; i++) {
+                counter.call(List.of("INCR", "cr:tx:counter"));
+            }
+        })));
+        var readers = new ArrayList<Thread>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(Thread.ofPlatform().start(() -> runChecked(failures, reader -> {
+                long lastCounter = 0;
+                while (!writersDone.get()) {
+                    var exists = reader.call(List.of("EXISTS", "cr:tx:a", "cr:tx:b"));
+                    if (!exists.equals(":1\r\n")) {
+                        failures.add("EXISTS saw half a transaction: " + exists);
+                    }
+                    var length = Long.parseLong(reader.call(List.of("LLEN", "cr:tx:list")).trim().substring(1));
+                    if (length % 2 != 0) {
+                        failures.add("LLEN saw half a transaction: " + length);
+                    }
+                    var get = reader.call(List.of("GET", "cr:tx:counter"));
+                    var counter = get.startsWith("$-1") ? 0 : Long.parseLong(get.split("\r\n")[1]);
+                    if (counter < lastCounter) {
+                        failures.add("counter went back from " + lastCounter + " to " + counter);
+                    }
+                    lastCounter = counter;
+                }
+            })));
+        }
+        for (var writer : writers) {
+            writer.join();
+        }
+        writersDone.set(true);
+        for (var reader : readers) {
+            reader.join();
+        }
+
+        Assertions.assertTrue(failures.isEmpty(), String.join("\n", failures));
+        TestHelper.expectInt(2000, client.call(List.of("LLEN", "cr:tx:list")));
+        TestHelper.expectBulkString("2000", client.call(List.of("GET", "cr:tx:counter")));
+        var served = client.sendArray(List.of("INFO", "stats")).lines()
+                .filter(line -> line.startsWith("concurrent_reads_served:")).findFirst().orElseThrow();
+        Assertions.assertTrue(Long.parseLong(served.substring("concurrent_reads_served:".length())) > 0, served);
+        TestHelper.expectInt(3, client.call(List.of("DEL", "cr:tx:a", "cr:tx:b", "cr:tx:list", "cr:tx:counter")));
+    }
+
+    /**
+     * Runs the task on a client of its own, anything it throws is a failure.
+     */
+    private void runChecked(ConcurrentLinkedQueue<String> failures, Consumer<Client> task) {
+        try {
+            var taskClient = connect();
+            try {
+                task.accept(taskClient);
+            } finally {
+                TestHelper.stopClient(taskClient);
+            }
+        } catch (RuntimeException | AssertionError e) {
+            failures.add(e.toString());
+        }
+    }
+
+    @Test
+    void keys_overSeveralSlices_repliesOnceDone() throws InterruptedException {
+        // a budget of 1us ends every slice after one step, shards make the cursor go from shard to shard
+        startServer("--client-time-budget-us", "1", "--shards", "2");
+        var sets = new ArrayList<List<String>>();
+        for (int i = 0; i < 100; i++) {
+            sets.add(List.of("SET", "keys:" + i, "v"));
+        }
+        client.pipeline(sets).forEach(TestHelper::expectOk);
+        Assertions.assertTrue(client.call(List.of("KEYS", "keys:*")).startsWith("*100\r\n"));
+        TestHelper.expectArray(List.of("keys:99"), client.call(List.of("KEYS", "keys:99")));
+        // the second shard starts at 1 << 32, there is no third
+        Assertions.assertTrue(client.call(List.of("SCAN", "4294967296")).startsWith("*2\r\n"));
+        TestHelper.expectError("invalid cursor", client.call(List.of("SCAN", "8589934592")));
+        TestHelper.expectSimpleString("PONG", client.sendString("PING"));
+    }
+}
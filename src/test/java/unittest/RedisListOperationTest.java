@@ -110,6 +110,18 @@ class RedisListOperationTest {
         TestHelper.expectArray(List.of("test_blpop", "b"), taskClient3.get());
     }
 
+    @Test
+    void testServer_blpopInvalidArguments_errorAndConnectionKept() {
+        TestHelper.expectError("wrong number of arguments for 'blpop' command",
+                client.sendArray(List.of("BLPOP", "test_blpop_a", "test_blpop_b", "0")));
+        TestHelper.expectError("timeout is not a float or out of range",
+                client.sendArray(List.of("BLPOP", "test_blpop_a", "abc")));
+        TestHelper.expectError("timeout is negative", client.sendArray(List.of("BLPOP", "test_blpop_a", "-1")));
+        Assertions.assertTrue(client.sendArray(List.of("COMMAND", "INFO", "blpop"))
+                .startsWith("*1\r\n*7\r\n$5\r\nblpop\r\n:3\r\n"));
+        TestHelper.expectSimpleString("PONG", client.sendString("PING"));
+    }
+
     @Test
     void testServer_blpopWithTimeout() throws ExecutionException, InterruptedException {
         TestHelper.expectNull(client.sendArray(List.of("BLPOP", "test_blpop_timeout", "0.1")));
@@ -12,6 +12,7 @@ import java.util.List;
 class RedisReplicationTest {
     private RedisServer redisServer;
     private Client client;
+    private Process master;
 
     @AfterEach
     void tearDown() {
@@ -21,6 +22,9 @@ class RedisReplicationTest {
         if (redisServer != null) {
             redisServer.stopServer();
         }
+        if (master != null) {
+            master.destroy();
+        }
     }
 
     @Test
@@ -44,4 +48,35 @@ class RedisReplicationTest {
         var message = client.sendArray(List.of("INFO", "replication"));
         Assertions.assertTrue(message.contains("role:slave"));
     }
+
+    @Test
+    void replicaOverUnixSocket_masterWrites_replicated() throws InterruptedException {
+        var masterSocket = System.getProperty("java.io.tmpdir") + "/redis-java-master-" + ProcessHandle.current().pid() + ".sock";
+        var masterPort = TestHelper.freePort();
+        master = TestHelper.startServerProcess(masterPort, "--unixsocket", masterSocket);
+        var replicaPort = TestHelper.freePort();
+        redisServer = RedisServer.init(new String[]{"--port", String.valueOf(replicaPort), "--replicaof", masterSocket});
+        redisServer.startServer();
+
+        var masterClient = TestHelper.startClient(RedisServer.DEFAULT_HOSTNAME, masterPort);
+        try {
+            // the replica retries its link every 2s
+            var deadline = System.currentTimeMillis() + 10_000;
+            while (!masterClient.sendArray(List.of("INFO", "replication")).contains("connected_slaves:1")) {
+                Assertions.assertTrue(System.currentTimeMillis() < deadline, "the replica never linked to the master");
+                Thread.sleep(200);
+            }
+            TestHelper.expectOk(masterClient.sendArray(List.of("SET", "repl:unix", "v")));
+        } finally {
+            TestHelper.stopClient(masterClient);
+        }
+
+        client = TestHelper.startClient(RedisServer.DEFAULT_HOSTNAME, replicaPort);
+        Assertions.assertTrue(client.sendArray(List.of("INFO", "replication")).contains("role:slave"));
+        var deadline = System.currentTimeMillis() + 5_000;
+        while (!client.sendArray(List.of("GET", "repl:unix")).equals("$1\r\nv\r\n")) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "the SET never reached the replica");
+            Thread.sleep(100);
+        }
+    }
 }
@@ -3,6 +3,11 @@ package utils;
 import client.Client;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
@@ -50,6 +55,48 @@ public class TestHelper {
         assertEquals(sb.toString(), message);
     }
 
+    /**
+     * A port nothing listens on right now, for a test server of its own.
+     */
+    public static int freePort() {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Starts a server in a JVM of its own, for tests that need two servers: the configuration of a server is global
+     * to its JVM. Returns once the server accepts connections on the port.
+     */
+    public static Process startServerProcess(int port, String... flags) {
+        var command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+            command.add("--enable-preview");
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "Main", "--port", String.valueOf(port)));
+        command.addAll(List.of(flags));
+        try {
+            var process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            var deadline = System.currentTimeMillis() + 10_000;
+            while (true) {
+                try (var socket = new Socket(REDIS_HOSTNAME, port)) {
+                    return process;
+                } catch (IOException e) {
+                    if (!process.isAlive() || System.currentTimeMillis() > deadline) {
+                        process.destroyForcibly();
+                        throw new RuntimeException("Server process did not start on port " + port, e);
+                    }
+                    Thread.sleep(100);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static Client startClient(String hostName, int port) {
         Client client = new Client();
         try {
@@ -61,6 +108,17 @@ public class TestHelper {
         return client;
     }
 
+    public static Client startUnixClient(String unixSocketPath) {
+        Client client = new Client();
+        try {
+            client.connect(unixSocketPath);
+            Thread.sleep(100);
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return client;
+    }
+
     public static void stopClient(Client client) {
         try {
             client.disconnect();